@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.gcm.server;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A fixed set of HTTP/2 clients, each of which carries at most a fixed number of concurrent requests (streams). New
+ * requests go to the client with the fewest requests in flight; requests made while every client is at its limit wait
+ * in order and are started as earlier requests complete.
+ */
+class HttpClientPool {
+
+  private final HttpClient[] clients;
+  private final int[]        inFlightRequests;
+  private final int          maxConcurrentStreamsPerClient;
+
+  private final Queue<PendingRequest> pendingRequests = new ArrayDeque<>();
+
+  private static class PendingRequest {
+
+    private final HttpRequest                             request;
+    private final CompletableFuture<HttpResponse<byte[]>> future;
+
+    private PendingRequest(HttpRequest request, CompletableFuture<HttpResponse<byte[]>> future) {
+      this.request = request;
+      this.future  = future;
+    }
+  }
+
+  HttpClientPool(int clientCount, int maxConcurrentStreamsPerClient) {
+    this(buildClients(clientCount), maxConcurrentStreamsPerClient);
+  }
+
+  @VisibleForTesting
+  HttpClientPool(HttpClient[] clients, int maxConcurrentStreamsPerClient) {
+    this.clients                       = clients;
+    this.inFlightRequests              = new int[clients.length];
+    this.maxConcurrentStreamsPerClient = maxConcurrentStreamsPerClient;
+  }
+
+  private static HttpClient[] buildClients(int clientCount) {
+    HttpClient[] clients = new HttpClient[clientCount];
+
+    for (int i=0;i<clients.length;i++) {
+      clients[i] = HttpClient.newBuilder()
+                             .version(HttpClient.Version.HTTP_2)
+                             .connectTimeout(Duration.ofSeconds(10))
+                             .build();
+    }
+
+    return clients;
+  }
+
+  CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+    CompletableFuture<HttpResponse<byte[]>> future = new CompletableFuture<>();
+    int                                     client;
+
+    synchronized (this) {
+      client = getLeastLoadedClient();
+
+      if (inFlightRequests[client] >= maxConcurrentStreamsPerClient) {
+        pendingRequests.add(new PendingRequest(request, future));
+        return future;
+      }
+
+      inFlightRequests[client]++;
+    }
+
+    send(client, request, future);
+    return future;
+  }
+
+  private void send(int client, HttpRequest request, CompletableFuture<HttpResponse<byte[]>> future) {
+    clients[client].sendAsync(request, BodyHandlers.ofByteArray()).whenComplete((response, cause) -> {
+      if (cause != null) {
+        future.completeExceptionally(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+      } else {
+        future.complete(response);
+      }
+
+      PendingRequest next;
+
+      synchronized (this) {
+        next = pendingRequests.poll();
+
+        // Hand the stream straight to the next waiting request, if there is one
+        if (next == null) {
+          inFlightRequests[client]--;
+        }
+      }
+
+      if (next != null) {
+        send(client, next.request, next.future);
+      }
+    });
+  }
+
+  private int getLeastLoadedClient() {
+    int leastLoadedClient = 0;
+
+    for (int i=1;i<clients.length;i++) {
+      if (inFlightRequests[i] < inFlightRequests[leastLoadedClient]) {
+        leastLoadedClient = i;
+      }
+    }
+
+    return leastLoadedClient;
+  }
+
+  @VisibleForTesting
+  synchronized int getInFlightRequests() {
+    int total = 0;
+
+    for (int inFlight : inFlightRequests) {
+      total += inFlight;
+    }
+
+    return total;
+  }
+
+  @VisibleForTesting
+  synchronized int getPendingRequests() {
+    return pendingRequests.size();
+  }
+}
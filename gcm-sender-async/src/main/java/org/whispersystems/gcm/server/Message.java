@@ -6,41 +6,78 @@ package org.whispersystems.gcm.server;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.whispersystems.gcm.server.internal.GcmRequestEntity;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 
 public class Message {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
-  private final String              collapseKey;
-  private final Long                ttl;
-  private final Boolean             delayWhileIdle;
-  private final Map<String, String> data;
-  private final List<String>        registrationIds;
-  private final String              priority;
-
-  private Message(String collapseKey, Long ttl, Boolean delayWhileIdle,
-                  Map<String, String> data, List<String> registrationIds,
-                  String priority)
-  {
-    this.collapseKey     = collapseKey;
-    this.ttl             = ttl;
-    this.delayWhileIdle  = delayWhileIdle;
-    this.data            = data;
+  // Most messages share one of a handful of payloads (e.g. the "new message" notification), so keep the serialized
+  // form of recently-seen payloads around and only serialize the destinations for each request
+  private static final Cache<Payload, String> serializedPayloads = CacheBuilder.newBuilder()
+                                                                              .maximumSize(1024)
+                                                                              .build();
+
+  private final Payload      payload;
+  private final List<String> registrationIds;
+
+  private Message(Payload payload, List<String> registrationIds) {
+    this.payload         = payload;
     this.registrationIds = registrationIds;
-    this.priority        = priority;
   }
 
   public String serialize() throws JsonProcessingException {
-    GcmRequestEntity requestEntity = new GcmRequestEntity(collapseKey, ttl, delayWhileIdle,
-                                                          data, registrationIds, priority);
+    return serialize(payload, registrationIds);
+  }
+
+  Payload getPayload() {
+    return payload;
+  }
+
+  List<String> getRegistrationIds() {
+    return registrationIds;
+  }
+
+  /**
+   * Serializes a request that delivers the given payload to all of the given destinations.
+   */
+  static String serialize(Payload payload, List<String> registrationIds) throws JsonProcessingException {
+    String serializedPayload;
+
+    try {
+      serializedPayload = serializedPayloads.get(payload, () -> objectMapper.writeValueAsString(payload.toRequestEntity()));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof JsonProcessingException) {
+        throw (JsonProcessingException) e.getCause();
+      }
+
+      throw new IllegalStateException(e.getCause());
+    }
+
+    // The serialized payload omits destinations, so it's always a JSON object; splice the destinations in at the end
+    StringBuilder request = new StringBuilder(serializedPayload.length() + 32)
+        .append(serializedPayload, 0, serializedPayload.length() - 1);
+
+    if (serializedPayload.length() > 2) {
+      request.append(',');
+    }
+
+    request.append("\"registration_ids\":")
+           .append(objectMapper.writeValueAsString(registrationIds))
+           .append('}');
 
-    return objectMapper.writeValueAsString(requestEntity);
+    return request.toString();
   }
 
   /**
@@ -136,7 +173,52 @@ public class Message {
         throw new IllegalArgumentException("You must specify a destination!");
       }
 
-      return new Message(collapseKey, ttl, delayWhileIdle, data, registrationIds, priority);
+      return new Message(new Payload(collapseKey, ttl, delayWhileIdle, data == null ? null : Collections.unmodifiableMap(new HashMap<>(data)), priority),
+                         Collections.unmodifiableList(new LinkedList<>(registrationIds)));
+    }
+  }
+
+  /**
+   * Everything about a message except its destinations. Messages with equal payloads may be delivered with a single
+   * request.
+   */
+  static class Payload {
+
+    private final String              collapseKey;
+    private final Long                ttl;
+    private final Boolean             delayWhileIdle;
+    private final Map<String, String> data;
+    private final String              priority;
+
+    private Payload(String collapseKey, Long ttl, Boolean delayWhileIdle, Map<String, String> data, String priority) {
+      this.collapseKey    = collapseKey;
+      this.ttl            = ttl;
+      this.delayWhileIdle = delayWhileIdle;
+      this.data           = data;
+      this.priority       = priority;
+    }
+
+    private GcmRequestEntity toRequestEntity() {
+      return new GcmRequestEntity(collapseKey, ttl, delayWhileIdle, data, null, priority);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Payload that = (Payload) o;
+
+      return Objects.equals(collapseKey, that.collapseKey) &&
+             Objects.equals(ttl, that.ttl) &&
+             Objects.equals(delayWhileIdle, that.delayWhileIdle) &&
+             Objects.equals(data, that.data) &&
+             Objects.equals(priority, that.priority);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(collapseKey, ttl, delayWhileIdle, data, priority);
     }
   }
 
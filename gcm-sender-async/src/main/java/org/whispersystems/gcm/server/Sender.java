@@ -15,20 +15,25 @@ import org.whispersystems.gcm.server.internal.GcmResponseListEntity;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * The main interface to sending GCM messages.  Thread safe.
+ * <p>
+ * Senders may optionally coalesce messages: messages with identical payloads sent within a short window of one another
+ * are delivered with a single multicast request, and each message's future completes with its own entry from the
+ * combined response.
  *
  * @author Moxie Marlinspike
  */
@@ -36,14 +41,35 @@ public class Sender {
 
   private static final String PRODUCTION_URL = "https://fcm.googleapis.com/fcm/send";
 
+  /**
+   * The largest number of destinations FCM accepts in a single request.
+   */
+  public static final int MAX_BATCH_SIZE = 1000;
+
+  private static final int CLIENT_COUNT                      = 10;
+  private static final int MAX_CONCURRENT_STREAMS_PER_CLIENT = 100;
+
   private final String                   authorizationHeader;
   private final URI                      uri;
   private final Retry                    retry;
   private final ObjectMapper             mapper;
   private final ScheduledExecutorService executorService;
+  private final HttpClientPool           clientPool;
+  private final int                      maxBatchSize;
+  private final Duration                 batchWindow;
 
-  private final HttpClient[] clients = new HttpClient[10];
-  private final SecureRandom random  = new SecureRandom();
+  private final Map<Message.Payload, PendingBatch> pendingBatches = new HashMap<>();
+
+  private static class PendingBatch {
+
+    private final Message.Payload                 payload;
+    private final List<String>                    registrationIds = new ArrayList<>();
+    private final List<CompletableFuture<Result>> futures         = new ArrayList<>();
+
+    private PendingBatch(Message.Payload payload) {
+      this.payload = payload;
+    }
+  }
 
   /**
    * Construct a Sender instance.
@@ -64,24 +90,41 @@ public class Sender {
     this(apiKey, mapper, retryCount, PRODUCTION_URL);
   }
 
+  /**
+   * Construct a Sender instance that coalesces messages with identical payloads.
+   *
+   * @param apiKey Your application's GCM API key.
+   * @param retryCount The number of retries to attempt on a network error or 500 response.
+   * @param maxBatchSize The maximum number of messages to deliver with a single request; a value of 1 disables batching.
+   * @param batchWindow The longest a message may wait for other messages with the same payload.
+   */
+  public Sender(String apiKey, ObjectMapper mapper, int retryCount, int maxBatchSize, Duration batchWindow) {
+    this(apiKey, mapper, retryCount, PRODUCTION_URL, maxBatchSize, batchWindow);
+  }
+
   @VisibleForTesting
   public Sender(String apiKey, ObjectMapper mapper, int retryCount, String url) {
+    this(apiKey, mapper, retryCount, url, 1, Duration.ZERO);
+  }
+
+  @VisibleForTesting
+  public Sender(String apiKey, ObjectMapper mapper, int retryCount, String url, int maxBatchSize, Duration batchWindow) {
+    if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+    }
+
     this.mapper              = mapper;
     this.executorService     = Executors.newSingleThreadScheduledExecutor();
     this.uri                 = URI.create(url);
     this.authorizationHeader = String.format("key=%s", apiKey);
+    this.clientPool          = new HttpClientPool(CLIENT_COUNT, MAX_CONCURRENT_STREAMS_PER_CLIENT);
+    this.maxBatchSize        = maxBatchSize;
+    this.batchWindow         = batchWindow;
     this.retry               = Retry.of("fcm-sender", RetryConfig.custom()
                                                                        .maxAttempts(retryCount)
                                                                        .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(100), 2.0))
                                                                        .retryOnException(this::isRetryableException)
                                                                        .build());
-
-    for (int i=0;i<clients.length;i++) {
-      this.clients[i] = HttpClient.newBuilder()
-                                  .version(HttpClient.Version.HTTP_2)
-                                  .connectTimeout(Duration.ofSeconds(10))
-                                  .build();
-    }
   }
 
   private boolean isRetryableException(Throwable throwable) {
@@ -101,17 +144,83 @@ public class Sender {
    * @return A future.
    */
   public CompletableFuture<Result> send(Message message) {
+    if (maxBatchSize == 1) {
+      return send(message.getPayload(), message.getRegistrationIds()).thenApply(results -> results.get(0));
+    }
+
+    CompletableFuture<Result> future         = new CompletableFuture<>();
+    String                    registrationId = message.getRegistrationIds().get(0);
+    List<PendingBatch>        readyBatches   = new ArrayList<>(2);
+
+    synchronized (pendingBatches) {
+      PendingBatch batch = pendingBatches.get(message.getPayload());
+
+      // A destination may only appear once per request, so a repeated destination starts a new batch
+      if (batch != null && batch.registrationIds.contains(registrationId)) {
+        pendingBatches.remove(message.getPayload());
+        readyBatches.add(batch);
+
+        batch = null;
+      }
+
+      if (batch == null) {
+        PendingBatch newBatch = new PendingBatch(message.getPayload());
+
+        pendingBatches.put(message.getPayload(), newBatch);
+        executorService.schedule(() -> flush(newBatch), batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+
+        batch = newBatch;
+      }
+
+      batch.registrationIds.add(registrationId);
+      batch.futures.add(future);
+
+      if (batch.registrationIds.size() >= maxBatchSize) {
+        pendingBatches.remove(message.getPayload());
+        readyBatches.add(batch);
+      }
+    }
+
+    readyBatches.forEach(this::send);
+
+    return future;
+  }
+
+  private void flush(PendingBatch batch) {
+    synchronized (pendingBatches) {
+      // The batch may already have been sent because it filled up
+      if (!pendingBatches.remove(batch.payload, batch)) {
+        return;
+      }
+    }
+
+    send(batch);
+  }
+
+  private void send(PendingBatch batch) {
+    send(batch.payload, batch.registrationIds).whenComplete((results, throwable) -> {
+      for (int i = 0; i < batch.futures.size(); i++) {
+        if (throwable != null) {
+          batch.futures.get(i).completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+        } else {
+          batch.futures.get(i).complete(results.get(i));
+        }
+      }
+    });
+  }
+
+  private CompletableFuture<List<Result>> send(Message.Payload payload, List<String> registrationIds) {
     try {
       HttpRequest request = HttpRequest.newBuilder()
                                        .uri(uri)
                                        .header("Authorization", authorizationHeader)
                                        .header("Content-Type", "application/json")
-                                       .POST(HttpRequest.BodyPublishers.ofString(message.serialize()))
+                                       .POST(HttpRequest.BodyPublishers.ofString(Message.serialize(payload, registrationIds)))
                                        .timeout(Duration.ofSeconds(10))
                                        .build();
 
       return retry.executeCompletionStage(executorService,
-                                          () -> getClient().sendAsync(request, BodyHandlers.ofByteArray())
+                                          () -> clientPool.sendAsync(request)
                                                       .thenApply(response -> {
                                                         switch (response.statusCode()) {
                                                           case 400: throw new CompletionException(new InvalidRequestException());
@@ -129,11 +238,19 @@ public class Sender {
                                                             throw new CompletionException(new IOException("Empty response list!"));
                                                           }
 
-                                                          GcmResponseEntity responseEntity = responseList.get(0);
+                                                          if (responseList.size() != registrationIds.size()) {
+                                                            throw new CompletionException(new IOException("Expected " + registrationIds.size() + " results, got " + responseList.size()));
+                                                          }
+
+                                                          List<Result> results = new ArrayList<>(responseList.size());
+
+                                                          for (GcmResponseEntity responseEntity : responseList) {
+                                                            results.add(new Result(responseEntity.getCanonicalRegistrationId(),
+                                                                                   responseEntity.getMessageId(),
+                                                                                   responseEntity.getError()));
+                                                          }
 
-                                                          return new Result(responseEntity.getCanonicalRegistrationId(),
-                                                                            responseEntity.getMessageId(),
-                                                                            responseEntity.getError());
+                                                          return results;
                                                         } catch (IOException e) {
                                                           throw new CompletionException(e);
                                                         }
@@ -147,8 +264,4 @@ public class Sender {
     return retry;
   }
 
-  private HttpClient getClient() {
-    return clients[random.nextInt(clients.length)];
-  }
-
 }
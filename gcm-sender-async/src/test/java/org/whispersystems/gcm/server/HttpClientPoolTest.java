@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.gcm.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientPoolTest {
+
+  private HttpClient                                    firstClient;
+  private HttpClient                                    secondClient;
+  private List<CompletableFuture<HttpResponse<byte[]>>> firstClientResponses;
+  private List<CompletableFuture<HttpResponse<byte[]>>> secondClientResponses;
+  private HttpRequest                                   request;
+
+  @Before
+  public void setUp() {
+    firstClient           = mock(HttpClient.class);
+    secondClient          = mock(HttpClient.class);
+    firstClientResponses  = new ArrayList<>();
+    secondClientResponses = new ArrayList<>();
+    request               = HttpRequest.newBuilder(URI.create("http://localhost/gcm/send")).build();
+
+    stubClient(firstClient, firstClientResponses);
+    stubClient(secondClient, secondClientResponses);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void stubClient(HttpClient client, List<CompletableFuture<HttpResponse<byte[]>>> responses) {
+    when(client.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenAnswer(invocation -> {
+      CompletableFuture<HttpResponse<byte[]>> response = new CompletableFuture<>();
+      responses.add(response);
+
+      return response;
+    });
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testLeastLoadedClient() {
+    HttpClientPool pool = new HttpClientPool(new HttpClient[] { firstClient, secondClient }, 10);
+
+    for (int i = 0; i < 4; i++) {
+      pool.sendAsync(request);
+    }
+
+    verify(firstClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    verify(secondClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    assertEquals(4, pool.getInFlightRequests());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStreamLimit() throws ExecutionException, InterruptedException {
+    HttpClientPool pool = new HttpClientPool(new HttpClient[] { firstClient }, 2);
+
+    CompletableFuture<HttpResponse<byte[]>> firstFuture  = pool.sendAsync(request);
+    CompletableFuture<HttpResponse<byte[]>> secondFuture = pool.sendAsync(request);
+    CompletableFuture<HttpResponse<byte[]>> thirdFuture  = pool.sendAsync(request);
+
+    verify(firstClient, times(2)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    assertEquals(2, pool.getInFlightRequests());
+    assertEquals(1, pool.getPendingRequests());
+
+    HttpResponse<byte[]> response = mock(HttpResponse.class);
+    firstClientResponses.get(0).complete(response);
+
+    assertSame(response, firstFuture.get());
+    verify(firstClient, times(3)).sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    assertEquals(2, pool.getInFlightRequests());
+    assertEquals(0, pool.getPendingRequests());
+
+    firstClientResponses.get(1).completeExceptionally(new IOException());
+    firstClientResponses.get(2).complete(response);
+
+    assertTrue(secondFuture.isCompletedExceptionally());
+    assertSame(response, thirdFuture.get());
+    assertFalse(thirdFuture.isCompletedExceptionally());
+    assertEquals(0, pool.getInFlightRequests());
+  }
+}
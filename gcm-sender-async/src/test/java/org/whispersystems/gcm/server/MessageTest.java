@@ -7,6 +7,7 @@ package org.whispersystems.gcm.server;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.whispersystems.gcm.server.util.JsonHelpers.jsonFixture;
@@ -46,4 +47,21 @@ public class MessageTest {
     assertEquals(message.serialize(), jsonFixture("fixtures/message-data.json"));
   }
 
+  @Test
+  public void testMultipleDestinations() throws IOException {
+    Message message = Message.newBuilder()
+                             .withDestination("1")
+                             .withCollapseKey("collapse")
+                             .withDelayWhileIdle(true)
+                             .withTtl(10)
+                             .withPriority("high")
+                             .build();
+
+    assertEquals(Message.serialize(message.getPayload(), List.of("1", "2")),
+                 jsonFixture("fixtures/message-complete.json").replace("[\"1\"]", "[\"1\",\"2\"]"));
+
+    // Serializing again reuses the cached payload
+    assertEquals(message.serialize(), jsonFixture("fixtures/message-complete.json"));
+  }
+
 }
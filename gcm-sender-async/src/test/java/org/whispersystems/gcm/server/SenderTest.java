@@ -9,6 +9,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.any;
 import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
@@ -28,6 +29,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.client.CountMatchingStrategy;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -197,4 +199,82 @@ public class SenderTest {
     assertFalse(result.isThrottled());
     assertEquals(result.getError(), "NotRegistered");
   }
+
+  @Test
+  public void testBatchedSuccess() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+    wireMock.stubFor(any(anyUrl())
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody(fixture("fixtures/response-batch.json"))));
+
+    Sender                    sender       = new Sender("foobarbaz", mapper, 10, "http://localhost:" + wireMock.port() + "/gcm/send", 2, Duration.ofSeconds(10));
+    CompletableFuture<Result> firstFuture  = sender.send(Message.newBuilder().withDestination("1").withDataPart("notification", "").withPriority("high").build());
+    CompletableFuture<Result> secondFuture = sender.send(Message.newBuilder().withDestination("2").withDataPart("notification", "").withPriority("high").build());
+
+    Result firstResult  = firstFuture.get(10, TimeUnit.SECONDS);
+    Result secondResult = secondFuture.get(10, TimeUnit.SECONDS);
+
+    assertTrue(firstResult.isSuccess());
+    assertEquals(firstResult.getMessageId(), "1:08");
+
+    assertFalse(secondResult.isSuccess());
+    assertTrue(secondResult.isUnregistered());
+
+    verify(1, postRequestedFor(urlEqualTo("/gcm/send"))
+        .withRequestBody(equalToJson(fixture("fixtures/message-batch.json"))));
+  }
+
+  @Test
+  public void testBatchWindow() throws InterruptedException, ExecutionException, TimeoutException, IOException {
+    wireMock.stubFor(any(anyUrl())
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody(fixture("fixtures/response-success.json"))));
+
+    Sender                    sender = new Sender("foobarbaz", mapper, 10, "http://localhost:" + wireMock.port() + "/gcm/send", 100, Duration.ofMillis(50));
+    CompletableFuture<Result> future = sender.send(Message.newBuilder().withDestination("1").build());
+
+    assertTrue(future.get(10, TimeUnit.SECONDS).isSuccess());
+
+    verify(1, postRequestedFor(urlEqualTo("/gcm/send"))
+        .withRequestBody(equalTo(jsonFixture("fixtures/message-minimal.json"))));
+  }
+
+  @Test
+  public void testBatchedDifferentPayloads() throws InterruptedException, ExecutionException, TimeoutException {
+    wireMock.stubFor(any(anyUrl())
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody(fixture("fixtures/response-success.json"))));
+
+    Sender                    sender       = new Sender("foobarbaz", mapper, 10, "http://localhost:" + wireMock.port() + "/gcm/send", 100, Duration.ofMillis(50));
+    CompletableFuture<Result> firstFuture  = sender.send(Message.newBuilder().withDestination("1").withDataPart("challenge", "a").build());
+    CompletableFuture<Result> secondFuture = sender.send(Message.newBuilder().withDestination("1").withDataPart("challenge", "b").build());
+
+    assertTrue(firstFuture.get(10, TimeUnit.SECONDS).isSuccess());
+    assertTrue(secondFuture.get(10, TimeUnit.SECONDS).isSuccess());
+
+    verify(2, anyRequestedFor(anyUrl()));
+  }
+
+  @Test
+  public void testBatchedResultCountMismatch() throws InterruptedException, TimeoutException {
+    wireMock.stubFor(any(anyUrl())
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody(fixture("fixtures/response-success.json"))));
+
+    Sender                    sender       = new Sender("foobarbaz", mapper, 1, "http://localhost:" + wireMock.port() + "/gcm/send", 2, Duration.ofSeconds(10));
+    CompletableFuture<Result> firstFuture  = sender.send(Message.newBuilder().withDestination("1").build());
+    CompletableFuture<Result> secondFuture = sender.send(Message.newBuilder().withDestination("2").build());
+
+    for (CompletableFuture<Result> future : new CompletableFuture[] { firstFuture, secondFuture }) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        throw new AssertionError();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs dispatch callbacks on a fixed number of threads. Callbacks for the same channel run one at a time, in the order
+ * they were submitted; callbacks for different channels may run concurrently. The total number of callbacks waiting to
+ * run is bounded, and callbacks submitted while the bound is reached are handled according to the configured
+ * {@link OverflowPolicy}. The number of callbacks waiting to run for any single channel is bounded, too; callbacks for a
+ * channel that has reached that bound are always discarded so that one slow channel can't stall delivery to all the
+ * others.
+ */
+public class DispatchExecutor {
+
+  public enum OverflowPolicy {
+    /**
+     * Block the submitting thread (the pubsub reader) until there's room for the callback. No callbacks are lost, but
+     * reading from the pubsub connection stalls until consumers catch up.
+     */
+    BLOCK,
+
+    /**
+     * Discard the callback. Reading from the pubsub connection never stalls, but consumers miss events.
+     */
+    DISCARD
+  }
+
+  public static final int            DEFAULT_THREAD_COUNT     = 8;
+  public static final int            DEFAULT_MAX_QUEUED_TASKS             = 10_000;
+  public static final int            DEFAULT_MAX_QUEUED_TASKS_PER_CHANNEL = 1_000;
+  public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY              = OverflowPolicy.BLOCK;
+
+  // The most callbacks a worker runs for one channel before yielding to other channels
+  private static final int MAX_TASKS_PER_TURN = 16;
+
+  private static final String  QUEUED_TASKS_GAUGE_NAME  = name("queuedTasks");
+  private static final Counter REJECTED_COUNTER         = Metrics.counter(name("rejected"), "cause", "queueFull");
+  private static final Counter CHANNEL_REJECTED_COUNTER = Metrics.counter(name("rejected"), "cause", "channelQueueFull");
+  private static final Timer   DISPATCH_LATENCY_TIMER   = Timer.builder(name("dispatchLatency"))
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .register(Metrics.globalRegistry);
+
+  private final Logger logger = LoggerFactory.getLogger(DispatchExecutor.class);
+
+  private final ExecutorService           executor;
+  private final int                       maxQueuedTasks;
+  private final int                       maxQueuedTasksPerChannel;
+  private final OverflowPolicy            overflowPolicy;
+  private final Map<String, ChannelQueue> channelQueues = new HashMap<>();
+
+  private int queuedTasks;
+
+  private static class QueuedTask {
+
+    private final Runnable task;
+    private final long     queuedAtNanos;
+
+    private QueuedTask(Runnable task) {
+      this.task          = task;
+      this.queuedAtNanos = System.nanoTime();
+    }
+  }
+
+  private static class ChannelQueue {
+
+    private final Queue<QueuedTask> tasks = new ArrayDeque<>();
+
+    private boolean scheduled;
+  }
+
+  public DispatchExecutor() {
+    this(DEFAULT_THREAD_COUNT, DEFAULT_MAX_QUEUED_TASKS, DEFAULT_MAX_QUEUED_TASKS_PER_CHANNEL, DEFAULT_OVERFLOW_POLICY);
+  }
+
+  public DispatchExecutor(int threadCount, int maxQueuedTasks, int maxQueuedTasksPerChannel, OverflowPolicy overflowPolicy) {
+    AtomicInteger threadId = new AtomicInteger();
+
+    this.executor                 = Executors.newFixedThreadPool(threadCount, runnable -> {
+      Thread thread = new Thread(runnable, "dispatch-" + threadId.incrementAndGet());
+      thread.setDaemon(true);
+
+      return thread;
+    });
+    this.maxQueuedTasks           = maxQueuedTasks;
+    this.maxQueuedTasksPerChannel = maxQueuedTasksPerChannel;
+    this.overflowPolicy           = overflowPolicy;
+
+    Metrics.gauge(QUEUED_TASKS_GAUGE_NAME, this, DispatchExecutor::getQueuedTasks);
+  }
+
+  /**
+   * Submits a callback for the given channel, applying this executor's overflow policy if too many callbacks are
+   * already waiting to run. The callback is discarded regardless of the overflow policy if too many callbacks are
+   * already waiting to run for the given channel.
+   *
+   * @return {@code true} if the callback was accepted, or {@code false} if it was discarded
+   */
+  public boolean execute(String channel, Runnable task) {
+    synchronized (this) {
+      while (!executor.isShutdown()) {
+        if (getQueuedTasks(channel) >= maxQueuedTasksPerChannel) {
+          CHANNEL_REJECTED_COUNTER.increment();
+          return false;
+        }
+
+        if (queuedTasks < maxQueuedTasks) {
+          break;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DISCARD) {
+          REJECTED_COUNTER.increment();
+          return false;
+        }
+
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          REJECTED_COUNTER.increment();
+          return false;
+        }
+      }
+
+      return enqueue(channel, task);
+    }
+  }
+
+  /**
+   * Submits a callback for the given channel regardless of how many callbacks are already waiting to run. This is
+   * intended for callbacks submitted by threads that must neither block nor lose the callback, e.g. because they hold
+   * locks that dispatch callbacks may also need.
+   *
+   * @return {@code true} if the callback was accepted, or {@code false} if this executor has been shut down
+   */
+  public synchronized boolean executeUnbounded(String channel, Runnable task) {
+    return enqueue(channel, task);
+  }
+
+  private synchronized boolean enqueue(String channel, Runnable task) {
+    if (executor.isShutdown()) {
+      return false;
+    }
+
+    ChannelQueue channelQueue = channelQueues.computeIfAbsent(channel, ignored -> new ChannelQueue());
+    channelQueue.tasks.add(new QueuedTask(task));
+    queuedTasks++;
+
+    // If a worker is already draining this channel, it will pick up the new task in order
+    if (!channelQueue.scheduled) {
+      channelQueue.scheduled = true;
+      executor.execute(() -> drain(channel, channelQueue));
+    }
+
+    return true;
+  }
+
+  private void drain(String channel, ChannelQueue channelQueue) {
+    for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+      QueuedTask queuedTask;
+
+      synchronized (this) {
+        queuedTask = channelQueue.tasks.poll();
+
+        if (queuedTask == null) {
+          channelQueue.scheduled = false;
+          channelQueues.remove(channel);
+          return;
+        }
+
+        queuedTasks--;
+        notifyAll();
+      }
+
+      DISPATCH_LATENCY_TIMER.record(System.nanoTime() - queuedTask.queuedAtNanos, TimeUnit.NANOSECONDS);
+
+      try {
+        queuedTask.task.run();
+      } catch (RuntimeException e) {
+        logger.warn("Dispatch callback for channel {} failed", channel, e);
+      }
+    }
+
+    try {
+      // Let other channels have a turn before continuing with this one
+      executor.execute(() -> drain(channel, channelQueue));
+    } catch (RejectedExecutionException e) {
+      logger.debug("Dispatch executor shut down with callbacks pending for channel {}", channel);
+    }
+  }
+
+  public synchronized int getQueuedTasks() {
+    return queuedTasks;
+  }
+
+  private synchronized int getQueuedTasks(String channel) {
+    ChannelQueue channelQueue = channelQueues.get(channel);
+    return channelQueue != null ? channelQueue.tasks.size() : 0;
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+
+  private static String name(String name) {
+    return DispatchExecutor.class.getName() + "." + name;
+  }
+}
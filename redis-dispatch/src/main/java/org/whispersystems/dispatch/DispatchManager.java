@@ -14,27 +14,36 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 public class DispatchManager extends Thread {
 
   private final Logger                       logger        = LoggerFactory.getLogger(DispatchManager.class);
-  private final Executor                     executor      = Executors.newCachedThreadPool();
   private final Map<String, DispatchChannel> subscriptions = new ConcurrentHashMap<>();
 
   private final Optional<DispatchChannel>    deadLetterChannel;
   private final RedisPubSubConnectionFactory redisPubSubConnectionFactory;
+  private final DispatchExecutor             executor;
+  private final ExecutorService              resubscriptionExecutor = Executors.newSingleThreadExecutor();
 
   private          PubSubConnection pubSubConnection;
   private volatile boolean          running;
 
   public DispatchManager(RedisPubSubConnectionFactory redisPubSubConnectionFactory,
                          Optional<DispatchChannel> deadLetterChannel)
+  {
+    this(redisPubSubConnectionFactory, deadLetterChannel, new DispatchExecutor());
+  }
+
+  public DispatchManager(RedisPubSubConnectionFactory redisPubSubConnectionFactory,
+                         Optional<DispatchChannel> deadLetterChannel,
+                         DispatchExecutor executor)
   {
     this.redisPubSubConnectionFactory = redisPubSubConnectionFactory;
     this.deadLetterChannel            = deadLetterChannel;
+    this.executor                     = executor;
   }
 
   @Override
@@ -47,6 +56,8 @@ public class DispatchManager extends Thread {
   public void shutdown() {
     this.running = false;
     this.pubSubConnection.close();
+    this.resubscriptionExecutor.shutdown();
+    this.executor.shutdown();
   }
 
   public synchronized void subscribe(String name, DispatchChannel dispatchChannel) {
@@ -130,7 +141,7 @@ public class DispatchManager extends Thread {
   }
 
   private void resubscribeAll() {
-    new Thread(() -> {
+    resubscriptionExecutor.execute(() -> {
       synchronized (DispatchManager.this) {
         try {
           for (String name : subscriptions.keySet()) {
@@ -140,18 +151,21 @@ public class DispatchManager extends Thread {
           logger.warn("***** RESUBSCRIPTION ERROR *****", e);
         }
       }
-    }).start();
+    });
   }
 
   private void dispatchMessage(final String name, final DispatchChannel channel, final byte[] message) {
-    executor.execute(() -> channel.onDispatchMessage(name, message));
+    executor.execute(name, () -> channel.onDispatchMessage(name, message));
   }
 
   private void dispatchSubscription(final String name, final DispatchChannel channel) {
-    executor.execute(() -> channel.onDispatchSubscribed(name));
+    // Subscribers may wait for confirmation that they're subscribed before doing anything else, so subscription events
+    // must never be discarded
+    executor.executeUnbounded(name, () -> channel.onDispatchSubscribed(name));
   }
 
   private void dispatchUnsubscription(final String name, final DispatchChannel channel) {
-    executor.execute(() -> channel.onDispatchUnsubscribed(name));
+    // Unsubscriptions are dispatched while holding this manager's lock, so they must not wait for room in the executor
+    executor.executeUnbounded(name, () -> channel.onDispatchUnsubscribed(name));
   }
 }
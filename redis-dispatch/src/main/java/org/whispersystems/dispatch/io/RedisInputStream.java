@@ -4,65 +4,247 @@
  */
 package org.whispersystems.dispatch.io;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Decodes RESP replies from an input stream. Reads are made into a single reusable buffer and reply headers are parsed
+ * in place, so the only per-reply allocations are the bulk string payloads handed back to callers. Short bulk strings
+ * that repeat often (reply types and channel names) can be read through {@link #readCachedBulkString()}, which returns
+ * a previously-decoded {@code String} instead of allocating a new one.
+ */
 public class RedisInputStream {
 
   private static final byte CR = 0x0D;
   private static final byte LF = 0x0A;
 
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
   private final InputStream inputStream;
+  private final byte[]      buffer;
+  private final StringCache stringCache;
+
+  private int position;
+  private int limit;
 
   public RedisInputStream(InputStream inputStream) {
+    this(inputStream, DEFAULT_BUFFER_SIZE);
+  }
+
+  RedisInputStream(InputStream inputStream, int bufferSize) {
     this.inputStream = inputStream;
+    this.buffer      = new byte[bufferSize];
+    this.stringCache = new StringCache();
   }
 
-  public String readLine() throws IOException {
-    ByteArrayOutputStream boas = new ByteArrayOutputStream();
+  public byte[] readFully(int size) throws IOException {
+    byte[] result = new byte[size];
+    int    offset = 0;
 
-    boolean foundCr = false;
+    while (offset < size) {
+      if (position == limit) fill();
 
-    while (true) {
-      int character = inputStream.read();
+      int amount = Math.min(limit - position, size - offset);
+      System.arraycopy(buffer, position, result, offset, amount);
 
-      if (character == -1) {
-        throw new IOException("Stream closed!");
+      position += amount;
+      offset   += amount;
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads an array reply header ({@code *<count>\r\n}) and returns the number of elements in the array.
+   */
+  public int readArrayHeader() throws IOException {
+    return readHeader('*');
+  }
+
+  /**
+   * Reads an integer reply ({@code :<value>\r\n}).
+   */
+  public int readInteger() throws IOException {
+    return readHeader(':');
+  }
+
+  /**
+   * Reads a bulk string reply ({@code $<length>\r\n<data>\r\n}) and returns its contents.
+   */
+  public byte[] readBulkString() throws IOException {
+    byte[] data = readFully(readBulkStringLength());
+    readCrlf();
+
+    return data;
+  }
+
+  /**
+   * Reads a bulk string reply and returns its contents as a string. If the same bytes were recently decoded, the
+   * previously-returned instance is returned again.
+   */
+  public String readCachedBulkString() throws IOException {
+    int length = readBulkStringLength();
+
+    if (length > buffer.length) {
+      String value = new String(readFully(length), StandardCharsets.UTF_8);
+      readCrlf();
+
+      return value;
+    }
+
+    ensureAvailable(length);
+
+    String value = stringCache.get(buffer, position, length);
+    position += length;
+    readCrlf();
+
+    return value;
+  }
+
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  private int readBulkStringLength() throws IOException {
+    int length = readHeader('$');
+
+    if (length < 0) {
+      throw new IOException("Unexpected null bulk string");
+    }
+
+    return length;
+  }
+
+  private int readHeader(char type) throws IOException {
+    int first = read();
+
+    if (first != type) {
+      throw new IOException("Expected '" + type + "' reply, got: " + (char) first);
+    }
+
+    boolean negative = false;
+    long    value    = 0;
+    int     digits   = 0;
+    int     next     = read();
+
+    if (next == '-') {
+      negative = true;
+      next     = read();
+    }
+
+    while (next != CR) {
+      if (next < '0' || next > '9' || ++digits > 10) {
+        throw new IOException("Invalid '" + type + "' reply value");
       }
 
-      boas.write(character);
+      value = value * 10 + (next - '0');
+      next  = read();
+    }
 
-      if      (foundCr && character == LF) break;
-      else if (character == CR)            foundCr = true;
-      else if (foundCr)                    foundCr = false;
+    if (digits == 0 || read() != LF || value > Integer.MAX_VALUE) {
+      throw new IOException("Invalid '" + type + "' reply value");
     }
 
-    byte[] data = boas.toByteArray();
-    return new String(data, 0, data.length-2);
+    return (int) (negative ? -value : value);
   }
 
-  public byte[] readFully(int size) throws IOException {
-    byte[] result    = new byte[size];
-    int    offset    = 0;
-    int    remaining = result.length;
+  private void readCrlf() throws IOException {
+    if (read() != CR || read() != LF) {
+      throw new IOException("Expected CRLF");
+    }
+  }
+
+  private int read() throws IOException {
+    if (position == limit) fill();
+
+    return buffer[position++] & 0xFF;
+  }
+
+  /**
+   * Makes sure at least the given number of bytes are buffered, compacting the buffer if necessary. The given length
+   * must not exceed the size of the buffer.
+   */
+  private void ensureAvailable(int length) throws IOException {
+    if (limit - position >= length) {
+      return;
+    }
+
+    if (buffer.length - position < length) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit   -= position;
+      position = 0;
+    }
 
-    while (remaining > 0) {
-      int read = inputStream.read(result, offset, remaining);
+    while (limit - position < length) {
+      int read = inputStream.read(buffer, limit, buffer.length - limit);
 
       if (read < 0) {
         throw new IOException("Stream closed!");
       }
 
-      offset    += read;
-      remaining -= read;
+      limit += read;
     }
-
-    return result;
   }
 
-  public void close() throws IOException {
-    inputStream.close();
+  private void fill() throws IOException {
+    int read;
+
+    do {
+      read = inputStream.read(buffer, 0, buffer.length);
+    } while (read == 0);
+
+    if (read < 0) {
+      throw new IOException("Stream closed!");
+    }
+
+    position = 0;
+    limit    = read;
   }
 
+  /**
+   * A small, fixed-size, direct-mapped cache of strings keyed by their encoded bytes. Lookups hash and compare the
+   * bytes in place, so a hit doesn't allocate. Colliding entries simply replace one another, which keeps the cache
+   * bounded no matter how many distinct strings pass through it. Not thread-safe; each connection has its own.
+   */
+  static class StringCache {
+
+    private static final int SIZE = 1024;
+
+    private final byte[][] keys   = new byte[SIZE][];
+    private final String[] values = new String[SIZE];
+
+    String get(byte[] data, int offset, int length) {
+      int hash = 1;
+
+      for (int i = offset; i < offset + length; i++) {
+        hash = 31 * hash + data[i];
+      }
+
+      int    slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+      byte[] key  = keys[slot];
+
+      if (key != null && key.length == length && regionMatches(key, data, offset)) {
+        return values[slot];
+      }
+
+      byte[] copy = new byte[length];
+      System.arraycopy(data, offset, copy, 0, length);
+
+      String value = new String(copy, StandardCharsets.UTF_8);
+
+      keys[slot]   = copy;
+      values[slot] = value;
+
+      return value;
+    }
+
+    private static boolean regionMatches(byte[] key, byte[] data, int offset) {
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != data[offset + i]) return false;
+      }
+
+      return true;
+    }
+  }
 }
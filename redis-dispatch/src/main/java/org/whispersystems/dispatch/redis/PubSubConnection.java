@@ -7,16 +7,11 @@ package org.whispersystems.dispatch.redis;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.dispatch.io.RedisInputStream;
-import org.whispersystems.dispatch.redis.protocol.ArrayReplyHeader;
-import org.whispersystems.dispatch.redis.protocol.IntReply;
-import org.whispersystems.dispatch.redis.protocol.StringReplyHeader;
 import org.whispersystems.dispatch.util.Util;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Arrays;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -24,9 +19,9 @@ public class PubSubConnection {
 
   private final Logger logger = LoggerFactory.getLogger(PubSubConnection.class);
 
-  private static final byte[] UNSUBSCRIBE_TYPE    = {'u', 'n', 's', 'u', 'b', 's', 'c', 'r', 'i', 'b', 'e'     };
-  private static final byte[] SUBSCRIBE_TYPE      = {'s', 'u', 'b', 's', 'c', 'r', 'i', 'b', 'e'               };
-  private static final byte[] MESSAGE_TYPE        = {'m', 'e', 's', 's', 'a', 'g', 'e'                         };
+  private static final String UNSUBSCRIBE_TYPE = "unsubscribe";
+  private static final String SUBSCRIBE_TYPE   = "subscribe";
+  private static final String MESSAGE_TYPE     = "message";
 
   private static final byte[] SUBSCRIBE_COMMAND   = {'S', 'U', 'B', 'S', 'C', 'R', 'I', 'B', 'E', ' '          };
   private static final byte[] UNSUBSCRIBE_COMMAND = {'U', 'N', 'S', 'U', 'B', 'S', 'C', 'R', 'I', 'B', 'E', ' '};
@@ -40,7 +35,7 @@ public class PubSubConnection {
   public PubSubConnection(Socket socket) throws IOException {
     this.socket       = socket;
     this.outputStream = socket.getOutputStream();
-    this.inputStream  = new RedisInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.inputStream  = new RedisInputStream(socket.getInputStream());
     this.closed       = new AtomicBoolean(false);
   }
 
@@ -61,20 +56,22 @@ public class PubSubConnection {
   public PubSubReply read() throws IOException {
     if (closed.get()) throw new IOException("Connection closed!");
 
-    ArrayReplyHeader replyHeader = new ArrayReplyHeader(inputStream.readLine());
+    int elementCount = inputStream.readArrayHeader();
 
-    if (replyHeader.getElementCount() != 3) {
-      throw new IOException("Received array reply header with strange count: " + replyHeader.getElementCount());
+    if (elementCount != 3) {
+      throw new IOException("Received array reply header with strange count: " + elementCount);
     }
 
-    StringReplyHeader replyTypeHeader = new StringReplyHeader(inputStream.readLine());
-    byte[]            replyType       = inputStream.readFully(replyTypeHeader.getStringLength());
-    inputStream.readLine();
+    // Reply types and channel names repeat constantly, so read them through the decoder's string cache rather than
+    // allocating a new string for every reply
+    String replyType = inputStream.readCachedBulkString();
 
-    if      (Arrays.equals(SUBSCRIBE_TYPE, replyType))   return readSubscribeReply();
-    else if (Arrays.equals(UNSUBSCRIBE_TYPE, replyType)) return readUnsubscribeReply();
-    else if (Arrays.equals(MESSAGE_TYPE, replyType))     return readMessageReply();
-    else throw new IOException("Unknown reply type: " + new String(replyType));
+    switch (replyType) {
+      case SUBSCRIBE_TYPE:   return readSubscribeReply();
+      case UNSUBSCRIBE_TYPE: return readUnsubscribeReply();
+      case MESSAGE_TYPE:     return readMessageReply();
+      default:               throw new IOException("Unknown reply type: " + replyType);
+    }
   }
 
   public void close() {
@@ -89,15 +86,10 @@ public class PubSubConnection {
   }
 
   private PubSubReply readMessageReply() throws IOException {
-    StringReplyHeader channelNameHeader = new StringReplyHeader(inputStream.readLine());
-    byte[]            channelName       = inputStream.readFully(channelNameHeader.getStringLength());
-    inputStream.readLine();
-
-    StringReplyHeader messageHeader = new StringReplyHeader(inputStream.readLine());
-    byte[]            message       = inputStream.readFully(messageHeader.getStringLength());
-    inputStream.readLine();
+    String channelName = inputStream.readCachedBulkString();
+    byte[] message     = inputStream.readBulkString();
 
-    return new PubSubReply(PubSubReply.Type.MESSAGE, new String(channelName), Optional.of(message));
+    return new PubSubReply(PubSubReply.Type.MESSAGE, channelName, Optional.of(message));
   }
 
   private PubSubReply readUnsubscribeReply() throws IOException {
@@ -111,13 +103,10 @@ public class PubSubConnection {
   }
 
   private String readSubscriptionReply() throws IOException {
-    StringReplyHeader channelNameHeader = new StringReplyHeader(inputStream.readLine());
-    byte[]            channelName       = inputStream.readFully(channelNameHeader.getStringLength());
-    inputStream.readLine();
-
-    IntReply subscriptionCount = new IntReply(inputStream.readLine());
+    String channelName = inputStream.readCachedBulkString();
+    inputStream.readInteger();
 
-    return new String(channelName);
+    return channelName;
   }
 
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.dispatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchExecutorTest {
+
+  private DispatchExecutor executor;
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testPerChannelOrdering() throws InterruptedException {
+    executor = new DispatchExecutor(4, 1000, 1000, DispatchExecutor.OverflowPolicy.BLOCK);
+
+    final List<Integer>  fooEvents = Collections.synchronizedList(new ArrayList<>());
+    final List<Integer>  barEvents = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch latch     = new CountDownLatch(200);
+
+    for (int i = 0; i < 100; i++) {
+      final int event = i;
+
+      executor.execute("foo", () -> { fooEvents.add(event); latch.countDown(); });
+      executor.execute("bar", () -> { barEvents.add(event); latch.countDown(); });
+    }
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, (int) fooEvents.get(i));
+      assertEquals(i, (int) barEvents.get(i));
+    }
+  }
+
+  @Test
+  public void testDiscard() throws InterruptedException {
+    executor = new DispatchExecutor(1, 2, 2, DispatchExecutor.OverflowPolicy.DISCARD);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    assertTrue(executor.execute("foo", () -> {
+      started.countDown();
+      awaitUninterruptibly(release);
+    }));
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertTrue(executor.execute("foo", () -> {}));
+    assertTrue(executor.execute("bar", () -> {}));
+    assertFalse(executor.execute("baz", () -> {}));
+    assertEquals(2, executor.getQueuedTasks());
+
+    // Callbacks that must not be lost are accepted even when the executor is full
+    assertTrue(executor.executeUnbounded("baz", () -> {}));
+    assertEquals(3, executor.getQueuedTasks());
+
+    release.countDown();
+  }
+
+  @Test
+  public void testBlock() throws InterruptedException {
+    executor = new DispatchExecutor(1, 1, 1, DispatchExecutor.OverflowPolicy.BLOCK);
+
+    final CountDownLatch started   = new CountDownLatch(1);
+    final CountDownLatch release   = new CountDownLatch(1);
+    final CountDownLatch submitted = new CountDownLatch(1);
+    final AtomicBoolean  accepted  = new AtomicBoolean();
+
+    executor.execute("foo", () -> {
+      started.countDown();
+      awaitUninterruptibly(release);
+    });
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    executor.execute("foo", () -> {});
+
+    final Thread submitter = new Thread(() -> {
+      accepted.set(executor.execute("bar", () -> {}));
+      submitted.countDown();
+    });
+
+    submitter.start();
+
+    assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+
+    assertTrue(submitted.await(5, TimeUnit.SECONDS));
+    assertTrue(accepted.get());
+  }
+
+  @Test
+  public void testChannelLimit() throws InterruptedException {
+    executor = new DispatchExecutor(1, 10, 1, DispatchExecutor.OverflowPolicy.BLOCK);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    assertTrue(executor.execute("foo", () -> {
+      started.countDown();
+      awaitUninterruptibly(release);
+    }));
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // A channel that has fallen behind has its own events discarded without blocking the submitter or other channels
+    assertTrue(executor.execute("foo", () -> {}));
+    assertFalse(executor.execute("foo", () -> {}));
+    assertTrue(executor.execute("bar", () -> {}));
+    assertEquals(2, executor.getQueuedTasks());
+
+    release.countDown();
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.dispatch.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RedisInputStreamTest {
+
+  @Test
+  public void testReadHeaders() throws IOException {
+    RedisInputStream inputStream = inputStreamFor("*3\r\n:-12\r\n:2147483647\r\n", 4);
+
+    assertEquals(3, inputStream.readArrayHeader());
+    assertEquals(-12, inputStream.readInteger());
+    assertEquals(Integer.MAX_VALUE, inputStream.readInteger());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadWrongHeaderType() throws IOException {
+    inputStreamFor("$3\r\n", 16).readArrayHeader();
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadBadNumber() throws IOException {
+    inputStreamFor(":1A\r\n", 16).readInteger();
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadOverflow() throws IOException {
+    inputStreamFor(":2147483648\r\n", 16).readInteger();
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadNullBulkString() throws IOException {
+    inputStreamFor("$-1\r\n", 16).readBulkString();
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadTruncated() throws IOException {
+    inputStreamFor("$10\r\n12345", 16).readBulkString();
+  }
+
+  @Test
+  public void testReadBulkStringLargerThanBuffer() throws IOException {
+    byte[] data = new byte[100];
+    Arrays.fill(data, (byte) 'x');
+
+    RedisInputStream inputStream = inputStreamFor("$100\r\n" + new String(data) + "\r\n$100\r\n" + new String(data) + "\r\n", 16);
+
+    assertArrayEquals(data, inputStream.readBulkString());
+    assertEquals(new String(data), inputStream.readCachedBulkString());
+  }
+
+  @Test
+  public void testReadCachedBulkString() throws IOException {
+    // The small buffer forces the later strings to straddle buffer boundaries
+    RedisInputStream inputStream = inputStreamFor("$5\r\nabcde\r\n$5\r\nfghij\r\n$5\r\nabcde\r\n$4\r\nabcd\r\n", 8);
+
+    String first = inputStream.readCachedBulkString();
+
+    assertEquals("abcde", first);
+    assertEquals("fghij", inputStream.readCachedBulkString());
+    assertSame(first, inputStream.readCachedBulkString());
+
+    String prefix = inputStream.readCachedBulkString();
+
+    assertEquals("abcd", prefix);
+    assertNotSame(first, prefix);
+  }
+
+  private static RedisInputStream inputStreamFor(String data, int bufferSize) {
+    return new RedisInputStream(new ByteArrayInputStream(data.getBytes()), bufferSize);
+  }
+}
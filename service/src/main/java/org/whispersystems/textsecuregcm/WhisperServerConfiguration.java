@@ -14,6 +14,7 @@ import java.util.Map;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.whispersystems.textsecuregcm.configuration.AccountDatabaseCrawlerConfiguration;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.AccountsDatabaseConfiguration;
 import org.whispersystems.textsecuregcm.configuration.AccountsDynamoDbConfiguration;
 import org.whispersystems.textsecuregcm.configuration.ApnConfiguration;
@@ -23,6 +24,7 @@ import org.whispersystems.textsecuregcm.configuration.CdnConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DatabaseConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DatadogConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DirectoryConfiguration;
+import org.whispersystems.textsecuregcm.configuration.DispatchConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DonationConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DynamoDbConfiguration;
 import org.whispersystems.textsecuregcm.configuration.GcmConfiguration;
@@ -30,6 +32,7 @@ import org.whispersystems.textsecuregcm.configuration.GcpAttachmentsConfiguratio
 import org.whispersystems.textsecuregcm.configuration.MaxDeviceConfiguration;
 import org.whispersystems.textsecuregcm.configuration.MessageCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.MessageDynamoDbConfiguration;
+import org.whispersystems.textsecuregcm.configuration.MultiRecipientMessageConfiguration;
 import org.whispersystems.textsecuregcm.configuration.WavefrontConfiguration;
 import org.whispersystems.textsecuregcm.configuration.PaymentsServiceConfiguration;
 import org.whispersystems.textsecuregcm.configuration.PushConfiguration;
@@ -192,6 +195,21 @@ public class WhisperServerConfiguration extends Configuration {
   @JsonProperty
   private RateLimitsConfiguration limits = new RateLimitsConfiguration();
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private AccountNearCacheConfiguration accountNearCache = new AccountNearCacheConfiguration();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private DispatchConfiguration dispatch = new DispatchConfiguration();
+
+  @Valid
+  @NotNull
+  @JsonProperty
+  private MultiRecipientMessageConfiguration multiRecipientMessage = new MultiRecipientMessageConfiguration();
+
   @Valid
   @NotNull
   @JsonProperty
@@ -383,6 +401,18 @@ public class WhisperServerConfiguration extends Configuration {
     return limits;
   }
 
+  public AccountNearCacheConfiguration getAccountNearCacheConfiguration() {
+    return accountNearCache;
+  }
+
+  public DispatchConfiguration getDispatchConfiguration() {
+    return dispatch;
+  }
+
+  public MultiRecipientMessageConfiguration getMultiRecipientMessageConfiguration() {
+    return multiRecipientMessage;
+  }
+
   public TurnConfiguration getTurnConfiguration() {
     return turn;
   }
@@ -9,6 +9,10 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import io.dropwizard.auth.basic.BasicCredentials;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
@@ -20,10 +24,15 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.Util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -37,6 +46,7 @@ public class BaseAccountAuthenticator {
   private final Meter          accountDisabledMeter         = metricRegistry.meter(name(getClass(), "authentication", "accountDisabled"));
   private final Meter          deviceDisabledMeter          = metricRegistry.meter(name(getClass(), "authentication", "deviceDisabled" ));
   private final Meter          invalidAuthHeaderMeter       = metricRegistry.meter(name(getClass(), "authentication", "invalidHeader"  ));
+  private final Meter          verifiedCredentialHitMeter   = metricRegistry.meter(name(getClass(), "authentication", "verifiedCredentialCacheHit"));
 
   private final String daysSinceLastSeenDistributionName = name(getClass(), "authentication", "daysSinceLastSeen");
 
@@ -44,9 +54,53 @@ public class BaseAccountAuthenticator {
 
   private final Logger logger = LoggerFactory.getLogger(BaseAccountAuthenticator.class);
 
+  private static final long     VERIFIED_CREDENTIAL_CACHE_SIZE = 100_000;
+  private static final Duration VERIFIED_CREDENTIAL_CACHE_TTL  = Duration.ofMinutes(5);
+
   private final AccountsManager accountsManager;
   private final Clock           clock;
 
+  // Maps a device and a keyed hash of a password that has been successfully verified for that device to the stored
+  // credential it was verified against. Entries only match while the device's stored credential is unchanged.
+  private final Cache<VerifiedCredentialKey, String> verifiedCredentials = CacheBuilder.newBuilder()
+      .maximumSize(VERIFIED_CREDENTIAL_CACHE_SIZE)
+      .expireAfterWrite(VERIFIED_CREDENTIAL_CACHE_TTL.toMillis(), TimeUnit.MILLISECONDS)
+      .build();
+
+  // Keyed with a random, per-instance key so that cache keys reveal nothing about presented passwords and collisions
+  // can't be searched for offline
+  private final HashFunction credentialHashFunction;
+
+  private static class VerifiedCredentialKey {
+
+    private final UUID accountUuid;
+    private final long deviceId;
+    private final long credentialHash;
+
+    private VerifiedCredentialKey(final UUID accountUuid, final long deviceId, final long credentialHash) {
+      this.accountUuid    = accountUuid;
+      this.deviceId       = deviceId;
+      this.credentialHash = credentialHash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final VerifiedCredentialKey that = (VerifiedCredentialKey) o;
+      return deviceId == that.deviceId && credentialHash == that.credentialHash && accountUuid.equals(that.accountUuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(accountUuid, deviceId, credentialHash);
+    }
+  }
+
   public BaseAccountAuthenticator(AccountsManager accountsManager) {
     this(accountsManager, Clock.systemUTC());
   }
@@ -55,6 +109,9 @@ public class BaseAccountAuthenticator {
   public BaseAccountAuthenticator(AccountsManager accountsManager, Clock clock) {
     this.accountsManager = accountsManager;
     this.clock           = clock;
+
+    final SecureRandom secureRandom = new SecureRandom();
+    this.credentialHashFunction = Hashing.sipHash24(secureRandom.nextLong(), secureRandom.nextLong());
   }
 
   public Optional<Account> authenticate(BasicCredentials basicCredentials, boolean enabledRequired) {
@@ -86,7 +143,7 @@ public class BaseAccountAuthenticator {
         }
       }
 
-      if (device.get().getAuthenticationCredentials().verify(basicCredentials.getPassword())) {
+      if (verifyCredentials(account.get(), device.get(), basicCredentials.getPassword())) {
         authenticationSucceededMeter.mark();
         account.get().setAuthenticatedDevice(device.get());
         updateLastSeen(account.get(), device.get());
@@ -101,6 +158,29 @@ public class BaseAccountAuthenticator {
     }
   }
 
+  private boolean verifyCredentials(final Account account, final Device device, final String password) {
+    final AuthenticationCredentials storedCredentials = device.getAuthenticationCredentials();
+    final VerifiedCredentialKey     key               = new VerifiedCredentialKey(account.getUuid(), device.getId(),
+        credentialHashFunction.hashString(password, StandardCharsets.UTF_8).asLong());
+
+    final String verifiedAgainst = verifiedCredentials.getIfPresent(key);
+
+    if (verifiedAgainst != null && verifiedAgainst.equals(storedCredentials.getHashedAuthenticationToken())) {
+      verifiedCredentialHitMeter.mark();
+      return true;
+    }
+
+    if (storedCredentials.verify(password)) {
+      if (storedCredentials.getHashedAuthenticationToken() != null) {
+        verifiedCredentials.put(key, storedCredentials.getHashedAuthenticationToken());
+      }
+
+      return true;
+    }
+
+    return false;
+  }
+
   @VisibleForTesting
   public void updateLastSeen(Account account, Device device) {
     final long lastSeenOffsetSeconds   = Math.abs(account.getUuid().getLeastSignificantBits()) % ChronoUnit.DAYS.getDuration().toSeconds();
@@ -5,8 +5,12 @@
 
 package org.whispersystems.textsecuregcm.auth;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.whispersystems.textsecuregcm.crypto.Curve;
 import org.whispersystems.textsecuregcm.crypto.ECPrivateKey;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.SenderCertificate;
@@ -16,24 +20,95 @@ import org.whispersystems.textsecuregcm.storage.Device;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 public class CertificateGenerator {
 
   private final ECPrivateKey      privateKey;
   private final int               expiresDays;
   private final ServerCertificate serverCertificate;
 
+  // Signing a certificate is expensive, but a certificate's contents depend only on the sender and its expiration, so
+  // we hand out the same certificate to repeated requests for a short while. Certificates are never reused for more than
+  // a small fraction of their validity period, so clients always receive certificates with nearly their full lifetime
+  // remaining.
+  private final Cache<CertificateKey, byte[]> certificateCache;
+
+  private static final long     MAX_CACHED_CERTIFICATES = 100_000;
+  private static final Duration MAX_CERTIFICATE_REUSE   = Duration.ofHours(1);
+
+  private static final Counter SIGNATURE_CALCULATED_COUNTER = Metrics.counter(name(CertificateGenerator.class, "signatureCalculated"));
+  private static final Counter SIGNATURE_SAVED_COUNTER      = Metrics.counter(name(CertificateGenerator.class, "signatureSaved"));
+
+  private static class CertificateKey {
+
+    private final UUID   uuid;
+    private final long   deviceId;
+    private final String identityKey;
+    private final String e164;
+
+    private CertificateKey(final UUID uuid, final long deviceId, final String identityKey, final String e164) {
+      this.uuid        = uuid;
+      this.deviceId    = deviceId;
+      this.identityKey = identityKey;
+      this.e164        = e164;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final CertificateKey that = (CertificateKey) o;
+      return deviceId == that.deviceId && uuid.equals(that.uuid) && Objects.equals(identityKey, that.identityKey) && Objects.equals(e164, that.e164);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(uuid, deviceId, identityKey, e164);
+    }
+  }
+
   public CertificateGenerator(byte[] serverCertificate, ECPrivateKey privateKey, int expiresDays)
       throws InvalidProtocolBufferException
   {
     this.privateKey        = privateKey;
     this.expiresDays       = expiresDays;
     this.serverCertificate = ServerCertificate.parseFrom(serverCertificate);
+
+    final long reuseMillis = Math.min(MAX_CERTIFICATE_REUSE.toMillis(), TimeUnit.DAYS.toMillis(expiresDays) / 24);
+
+    this.certificateCache = CacheBuilder.newBuilder()
+                                        .maximumSize(MAX_CACHED_CERTIFICATES)
+                                        .expireAfterWrite(reuseMillis, TimeUnit.MILLISECONDS)
+                                        .build();
   }
 
   public byte[] createFor(Account account, Device device, boolean includeE164) throws IOException, InvalidKeyException {
+    final CertificateKey certificateKey    = new CertificateKey(account.getUuid(), device.getId(), account.getIdentityKey(), includeE164 ? account.getNumber() : null);
+    final byte[]         cachedCertificate = certificateCache.getIfPresent(certificateKey);
+
+    if (cachedCertificate != null) {
+      SIGNATURE_SAVED_COUNTER.increment();
+      return cachedCertificate.clone();
+    }
+
+    final byte[] certificate = generateCertificate(account, device, includeE164);
+    certificateCache.put(certificateKey, certificate);
+
+    return certificate.clone();
+  }
+
+  private byte[] generateCertificate(Account account, Device device, boolean includeE164) throws InvalidKeyException {
     SenderCertificate.Certificate.Builder builder = SenderCertificate.Certificate.newBuilder()
                                                                                  .setSenderDevice(Math.toIntExact(device.getId()))
                                                                                  .setExpires(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(expiresDays))
@@ -48,6 +123,8 @@ public class CertificateGenerator {
     byte[] certificate = builder.build().toByteArray();
     byte[] signature   = Curve.calculateSignature(privateKey, certificate);
 
+    SIGNATURE_CALCULATED_COUNTER.increment();
+
     return SenderCertificate.newBuilder()
                             .setCertificate(ByteString.copyFrom(certificate))
                             .setSignature(ByteString.copyFrom(signature))
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class AccountNearCacheConfiguration {
+
+  /**
+   * The approximate maximum size, in bytes of serialized account data, of the in-process account cache. A size of zero
+   * disables the near cache.
+   */
+  @JsonProperty
+  @Min(0)
+  private long maxSize = 32 * 1024 * 1024;
+
+  /**
+   * The maximum amount of time an account may be served from the in-process cache. Invalidations are delivered via
+   * Redis pub/sub on a best-effort basis, so this also bounds how long an entry may remain stale if an invalidation is
+   * missed.
+   */
+  @JsonProperty
+  @NotNull
+  private Duration ttl = Duration.ofMinutes(1);
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.whispersystems.dispatch.DispatchExecutor;
+
+public class DispatchConfiguration {
+
+  /**
+   * The number of threads used to run pubsub dispatch callbacks.
+   */
+  @JsonProperty
+  @Min(1)
+  private int threads = DispatchExecutor.DEFAULT_THREAD_COUNT;
+
+  /**
+   * The maximum number of dispatch callbacks that may be waiting to run before the overflow policy applies.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxQueuedTasks = DispatchExecutor.DEFAULT_MAX_QUEUED_TASKS;
+
+  /**
+   * The maximum number of dispatch callbacks that may be waiting to run for a single channel; events for a channel that
+   * has reached this limit are dropped regardless of the overflow policy.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxQueuedTasksPerChannel = DispatchExecutor.DEFAULT_MAX_QUEUED_TASKS_PER_CHANNEL;
+
+  /**
+   * What to do with pubsub events that arrive while too many callbacks are waiting to run: {@code BLOCK} stops reading
+   * from the pubsub connection until there's room, and {@code DISCARD} drops the event.
+   */
+  @JsonProperty
+  @NotNull
+  private DispatchExecutor.OverflowPolicy overflowPolicy = DispatchExecutor.DEFAULT_OVERFLOW_POLICY;
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getMaxQueuedTasks() {
+    return maxQueuedTasks;
+  }
+
+  public int getMaxQueuedTasksPerChannel() {
+    return maxQueuedTasksPerChannel;
+  }
+
+  public DispatchExecutor.OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+}
@@ -5,8 +5,12 @@
 package org.whispersystems.textsecuregcm.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import org.whispersystems.gcm.server.Sender;
 
 public class GcmConfiguration {
 
@@ -18,6 +22,22 @@ public class GcmConfiguration {
   @JsonProperty
   private String apiKey;
 
+  /**
+   * The maximum number of notifications with identical payloads to deliver in a single FCM request; a value of 1
+   * disables batching.
+   */
+  @JsonProperty
+  @Min(1)
+  @Max(Sender.MAX_BATCH_SIZE)
+  private int maxBatchSize = 1;
+
+  /**
+   * The longest a notification may wait for others with the same payload before it's sent.
+   */
+  @JsonProperty
+  @NotNull
+  private Duration batchWindow = Duration.ofMillis(10);
+
   public String getApiKey() {
     return apiKey;
   }
@@ -26,4 +46,12 @@ public class GcmConfiguration {
     return senderId;
   }
 
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public Duration getBatchWindow() {
+    return batchWindow;
+  }
+
 }
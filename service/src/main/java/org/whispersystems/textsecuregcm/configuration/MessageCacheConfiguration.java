@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class MessageCacheConfiguration {
@@ -20,6 +21,18 @@ public class MessageCacheConfiguration {
   @JsonProperty
   private int persistDelayMinutes = 10;
 
+  @JsonProperty
+  @Min(1)
+  private int persistQueueConcurrency = 1;
+
+  /**
+   * If {@code true}, each server receives keyspace notifications for every message queue through a fixed set of pattern
+   * subscriptions; if {@code false}, each server subscribes to notifications only for the queues of its connected
+   * devices.
+   */
+  @JsonProperty
+  private boolean usePatternSubscriptions = false;
+
   public RedisClusterConfiguration getRedisClusterConfiguration() {
     return cluster;
   }
@@ -28,4 +41,12 @@ public class MessageCacheConfiguration {
     return persistDelayMinutes;
   }
 
+  public int getPersistQueueConcurrency() {
+    return persistQueueConcurrency;
+  }
+
+  public boolean isUsePatternSubscriptions() {
+    return usePatternSubscriptions;
+  }
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+
+public class MultiRecipientMessageConfiguration {
+
+  /**
+   * The number of threads shared by all requests for delivering multi-recipient messages.
+   */
+  @JsonProperty
+  @Min(1)
+  private int threads = 16;
+
+  /**
+   * The maximum number of delivery batches that may wait for a delivery thread. Once the queue is full, request threads
+   * deliver their own batches.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxQueuedBatches = 1_000;
+
+  /**
+   * The maximum number of delivery batches a single multi-recipient request may have in flight at once.
+   */
+  @JsonProperty
+  @Min(1)
+  private int maxConcurrentBatchesPerRequest = 4;
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getMaxQueuedBatches() {
+    return maxQueuedBatches;
+  }
+
+  public int getMaxConcurrentBatchesPerRequest() {
+    return maxConcurrentBatchesPerRequest;
+  }
+}
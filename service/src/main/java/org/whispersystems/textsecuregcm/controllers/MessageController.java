@@ -28,6 +28,7 @@ import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,10 +36,14 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.validation.Valid;
@@ -87,6 +92,7 @@ import org.whispersystems.textsecuregcm.metrics.UserAgentTagUtil;
 import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
 import org.whispersystems.textsecuregcm.push.ApnFallbackManager;
 import org.whispersystems.textsecuregcm.push.MessageSender;
+import org.whispersystems.textsecuregcm.push.MessageSender.Delivery;
 import org.whispersystems.textsecuregcm.push.NotPushRegisteredException;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
@@ -130,6 +136,8 @@ public class MessageController {
   private final RateLimitChallengeManager   rateLimitChallengeManager;
   private final ReportMessageManager        reportMessageManager;
   private final ScheduledExecutorService    receiptExecutorService;
+  private final ExecutorService             multiRecipientMessageExecutor;
+  private final int                         maxConcurrentMultiRecipientBatches;
 
   private final Random random = new Random();
 
@@ -150,6 +158,10 @@ public class MessageController {
 
   private static final long MAX_MESSAGE_SIZE = DataSize.kibibytes(256).toBytes();
 
+  private static final int MULTI_RECIPIENT_DELIVERY_BATCH_SIZE = 64;
+
+  private static final ByteString MULTI_RECIPIENT_VERSION = ByteString.copyFrom(new byte[]{MultiRecipientMessageProvider.VERSION});
+
   public MessageController(RateLimiters rateLimiters,
       MessageSender messageSender,
       ReceiptSender receiptSender,
@@ -161,7 +173,9 @@ public class MessageController {
       RateLimitChallengeManager rateLimitChallengeManager,
       ReportMessageManager reportMessageManager,
       FaultTolerantRedisCluster metricsCluster,
-      ScheduledExecutorService receiptExecutorService)
+      ScheduledExecutorService receiptExecutorService,
+      ExecutorService multiRecipientMessageExecutor,
+      int maxConcurrentMultiRecipientBatches)
   {
     this.rateLimiters                = rateLimiters;
     this.messageSender               = messageSender;
@@ -174,6 +188,8 @@ public class MessageController {
     this.rateLimitChallengeManager   = rateLimitChallengeManager;
     this.reportMessageManager        = reportMessageManager;
     this.receiptExecutorService      = receiptExecutorService;
+    this.multiRecipientMessageExecutor = multiRecipientMessageExecutor;
+    this.maxConcurrentMultiRecipientBatches = maxConcurrentMultiRecipientBatches;
 
     try {
       recordInternationalUnsealedSenderMetricsScript = ClusterLuaScript.fromResource(metricsCluster, "lua/record_international_unsealed_sender_metrics.lua", ScriptOutputType.MULTI);
@@ -346,16 +362,14 @@ public class MessageController {
 
     unidentifiedMeter.mark(multiRecipientMessage.getRecipients().length);
 
-    Map<UUID, Account> uuidToAccountMap = Arrays.stream(multiRecipientMessage.getRecipients())
+    final Set<UUID> recipientUuids = Arrays.stream(multiRecipientMessage.getRecipients())
         .map(Recipient::getUuid)
-        .distinct()
-        .collect(Collectors.toMap(Function.identity(), uuid -> {
-          Optional<Account> account = accountsManager.get(uuid);
-          if (account.isEmpty()) {
-            throw new WebApplicationException(Status.NOT_FOUND);
-          }
-          return account.get();
-        }));
+        .collect(Collectors.toSet());
+
+    Map<UUID, Account> uuidToAccountMap = accountsManager.getByUuids(recipientUuids);
+    if (uuidToAccountMap.size() != recipientUuids.size()) {
+      throw new WebApplicationException(Status.NOT_FOUND);
+    }
     checkAccessKeys(accessKeys, uuidToAccountMap);
 
     final Map<Account, HashSet<Pair<Long, Integer>>> accountToDeviceIdAndRegistrationIdMap =
@@ -405,22 +419,63 @@ public class MessageController {
         UserAgentTagUtil.getPlatformTag(userAgent),
         Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
         Tag.of(SENDER_TYPE_TAG_NAME, "unidentified"));
-    List<UUID> uuids404 = new ArrayList<>();
+    // Deliver in batches, with a bounded number of batches in flight for each request so a large group doesn't crowd
+    // out other requests on the shared executor. All of an account's devices go in the same batch so that no account is
+    // handled by more than one thread at a time.
+    final Map<UUID, List<Recipient>> recipientsByUuid = new LinkedHashMap<>();
     for (Recipient recipient : multiRecipientMessage.getRecipients()) {
+      recipientsByUuid.computeIfAbsent(recipient.getUuid(), ignored -> new ArrayList<>()).add(recipient);
+    }
 
-      Account destinationAccount = uuidToAccountMap.get(recipient.getUuid());
-      // we asserted this must be true in validateCompleteDeviceList
-      //noinspection OptionalGetWithoutIsPresent
-      Device destinationDevice = destinationAccount.getDevice(recipient.getDeviceId()).get();
-      Metrics.counter(SENT_MESSAGE_COUNTER_NAME, tags).increment();
-      try {
-        sendMessage(destinationAccount, destinationDevice, timestamp, online, recipient,
-            multiRecipientMessage.getCommonPayload());
-      } catch (NoSuchUserException e) {
-        uuids404.add(destinationAccount.getUuid());
+    final List<List<Delivery>> batches = new ArrayList<>();
+    List<Delivery> batch = new ArrayList<>(MULTI_RECIPIENT_DELIVERY_BATCH_SIZE);
+
+    for (Map.Entry<UUID, List<Recipient>> uuidAndRecipients : recipientsByUuid.entrySet()) {
+      Account destinationAccount = uuidToAccountMap.get(uuidAndRecipients.getKey());
+
+      if (!batch.isEmpty() && batch.size() + uuidAndRecipients.getValue().size() > MULTI_RECIPIENT_DELIVERY_BATCH_SIZE) {
+        batches.add(batch);
+        batch = new ArrayList<>(MULTI_RECIPIENT_DELIVERY_BATCH_SIZE);
+      }
+
+      for (Recipient recipient : uuidAndRecipients.getValue()) {
+        // we asserted this must be true in validateCompleteDeviceList
+        //noinspection OptionalGetWithoutIsPresent
+        Device destinationDevice = destinationAccount.getDevice(recipient.getDeviceId()).get();
+        Metrics.counter(SENT_MESSAGE_COUNTER_NAME, tags).increment();
+        batch.add(new Delivery(destinationAccount, destinationDevice,
+            buildMultiRecipientEnvelope(timestamp, recipient, multiRecipientMessage.getCommonPayload())));
       }
     }
-    return Response.ok(new SendMultiRecipientMessageResponse(uuids404)).build();
+
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+
+    final Collection<UUID> uuids404 = new ConcurrentLinkedQueue<>();
+    final Semaphore batchesInFlight = new Semaphore(maxConcurrentMultiRecipientBatches);
+    final CompletableFuture<?>[] sendFutures = new CompletableFuture[batches.size()];
+
+    for (int i = 0; i < batches.size(); i++) {
+      final List<Delivery> deliveries = batches.get(i);
+
+      // If the executor is saturated, it runs the batch on this thread instead of queueing it
+      batchesInFlight.acquireUninterruptibly();
+      sendFutures[i] = CompletableFuture.runAsync(() -> sendMultiRecipientDeliveries(deliveries, online, uuids404), multiRecipientMessageExecutor)
+          .whenComplete((ignored, throwable) -> batchesInFlight.release());
+    }
+
+    try {
+      CompletableFuture.allOf(sendFutures).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    }
+
+    return Response.ok(new SendMultiRecipientMessageResponse(new ArrayList<>(uuids404))).build();
   }
 
   private void checkAccessKeys(CombinedUnidentifiedSenderAccessKeys accessKeys, Map<UUID, Account> uuidToAccountMap) {
@@ -632,34 +687,38 @@ public class MessageController {
     }
   }
 
-  private void sendMessage(Account destinationAccount, Device destinationDevice, long timestamp, boolean online,
-      Recipient recipient, byte[] commonPayload) throws NoSuchUserException {
-    try (final Timer.Context ignored = sendCommonMessageInternalTimer.time()) {
-      Envelope.Builder messageBuilder = Envelope.newBuilder();
-      long serverTimestamp = System.currentTimeMillis();
-      byte[] recipientKeyMaterial = recipient.getPerRecipientKeyMaterial();
+  private void sendMultiRecipientDeliveries(List<Delivery> deliveries, boolean online, Collection<UUID> uuids404) {
+    final List<Delivery> impossibleDeliveries;
 
-      byte[] payload = new byte[1 + recipientKeyMaterial.length + commonPayload.length];
-      payload[0] = MultiRecipientMessageProvider.VERSION;
-      System.arraycopy(recipientKeyMaterial, 0, payload, 1, recipientKeyMaterial.length);
-      System.arraycopy(commonPayload, 0, payload, 1 + recipientKeyMaterial.length, commonPayload.length);
-
-      messageBuilder
-          .setType(Type.UNIDENTIFIED_SENDER)
-          .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
-          .setServerTimestamp(serverTimestamp)
-          .setContent(ByteString.copyFrom(payload));
+    try (final Timer.Context ignored = sendCommonMessageInternalTimer.time()) {
+      impossibleDeliveries = messageSender.sendMessages(deliveries, online);
+    }
 
-      messageSender.sendMessage(destinationAccount, destinationDevice, messageBuilder.build(), online);
-    } catch (NotPushRegisteredException e) {
-      if (destinationDevice.isMaster()) {
-        throw new NoSuchUserException(e);
+    for (Delivery delivery : impossibleDeliveries) {
+      if (delivery.getDevice().isMaster()) {
+        uuids404.add(delivery.getAccount().getUuid());
       } else {
-        logger.debug("Not registered", e);
+        logger.debug("Not registered");
       }
     }
   }
 
+  private static Envelope buildMultiRecipientEnvelope(long timestamp, Recipient recipient, ByteString commonPayload) {
+    long serverTimestamp = System.currentTimeMillis();
+
+    // Concatenating byte strings shares the common payload with every other recipient's envelope instead of copying it
+    ByteString payload = MULTI_RECIPIENT_VERSION
+        .concat(recipient.getPerRecipientKeyMaterial())
+        .concat(commonPayload);
+
+    return Envelope.newBuilder()
+        .setType(Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
+        .setServerTimestamp(serverTimestamp)
+        .setContent(payload)
+        .build();
+  }
+
   @VisibleForTesting
   public static void validateRegistrationIds(Account account, List<IncomingMessage> messages)
       throws StaleDevicesException {
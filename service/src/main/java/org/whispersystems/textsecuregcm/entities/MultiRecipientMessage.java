@@ -5,6 +5,7 @@
 
 package org.whispersystems.textsecuregcm.entities;
 
+import com.google.protobuf.ByteString;
 import java.util.UUID;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
@@ -13,6 +14,10 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
 
+/**
+ * A message addressed to many recipients at once. Key material and the common payload are views into the request body
+ * read by {@link MultiRecipientMessageProvider} rather than copies of it; their lengths are enforced by the provider.
+ */
 public class MultiRecipientMessage {
 
   public static class Recipient {
@@ -27,11 +32,10 @@ public class MultiRecipientMessage {
     @Max(65535)
     private final int registrationId;
 
-    @Size(min = 48, max = 48)
     @NotNull
-    private final byte[] perRecipientKeyMaterial;
+    private final ByteString perRecipientKeyMaterial;
 
-    public Recipient(UUID uuid, long deviceId, int registrationId, byte[] perRecipientKeyMaterial) {
+    public Recipient(UUID uuid, long deviceId, int registrationId, ByteString perRecipientKeyMaterial) {
       this.uuid = uuid;
       this.deviceId = deviceId;
       this.registrationId = registrationId;
@@ -50,7 +54,7 @@ public class MultiRecipientMessage {
       return registrationId;
     }
 
-    public byte[] getPerRecipientKeyMaterial() {
+    public ByteString getPerRecipientKeyMaterial() {
       return perRecipientKeyMaterial;
     }
   }
@@ -61,10 +65,9 @@ public class MultiRecipientMessage {
   private final Recipient[] recipients;
 
   @NotNull
-  @Size(min = 32)
-  private final byte[] commonPayload;
+  private final ByteString commonPayload;
 
-  public MultiRecipientMessage(Recipient[] recipients, byte[] commonPayload) {
+  public MultiRecipientMessage(Recipient[] recipients, ByteString commonPayload) {
     this.recipients = recipients;
     this.commonPayload = commonPayload;
   }
@@ -73,7 +76,7 @@ public class MultiRecipientMessage {
     return recipients;
   }
 
-  public byte[] getCommonPayload() {
+  public ByteString getCommonPayload() {
     return commonPayload;
   }
 }
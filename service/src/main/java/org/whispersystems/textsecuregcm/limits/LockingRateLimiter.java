@@ -13,6 +13,7 @@ import com.codahale.metrics.SharedMetricRegistries;
 import io.lettuce.core.SetArgs;
 import java.time.Duration;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.util.Constants;
 
@@ -20,8 +21,8 @@ public class LockingRateLimiter extends RateLimiter {
 
   private final Meter meter;
 
-  public LockingRateLimiter(FaultTolerantRedisCluster cacheCluster, String name, int bucketSize, double leakRatePerMinute) {
-    super(cacheCluster, name, bucketSize, leakRatePerMinute);
+  public LockingRateLimiter(FaultTolerantRedisCluster cacheCluster, ClusterLuaScript validateScript, String name, int bucketSize, double leakRatePerMinute) {
+    super(cacheCluster, validateScript, name, bucketSize, leakRatePerMinute);
 
     MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
     this.meter = metricRegistry.meter(name(getClass(), name, "locked"));
@@ -10,23 +10,16 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
 import java.time.Duration;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.List;
 import org.whispersystems.textsecuregcm.configuration.RateLimitsConfiguration.RateLimitConfiguration;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.util.Constants;
-import org.whispersystems.textsecuregcm.util.SystemMapper;
 
 public class RateLimiter {
 
-  private final Logger       logger = LoggerFactory.getLogger(RateLimiter.class);
-  private final ObjectMapper mapper = SystemMapper.getMapper();
-
   private   final Meter                     meter;
   private   final Timer                     validateTimer;
   protected final FaultTolerantRedisCluster cacheCluster;
@@ -34,8 +27,10 @@ public class RateLimiter {
   private   final int                       bucketSize;
   private   final double                    leakRatePerMinute;
   private   final double                    leakRatePerMillis;
+  private   final int                       bucketTtlSeconds;
+  private   final ClusterLuaScript          validateScript;
 
-  public RateLimiter(FaultTolerantRedisCluster cacheCluster, String name, int bucketSize, double leakRatePerMinute)
+  public RateLimiter(FaultTolerantRedisCluster cacheCluster, ClusterLuaScript validateScript, String name, int bucketSize, double leakRatePerMinute)
   {
     MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
 
@@ -46,17 +41,17 @@ public class RateLimiter {
     this.bucketSize             = bucketSize;
     this.leakRatePerMinute      = leakRatePerMinute;
     this.leakRatePerMillis      = leakRatePerMinute / (60.0 * 1000.0);
+    this.bucketTtlSeconds       = (int) Math.ceil((bucketSize / leakRatePerMillis) / 1000);
+    this.validateScript         = validateScript;
   }
 
   public void validate(String key, int amount) throws RateLimitExceededException {
     try (final Timer.Context ignored = validateTimer.time()) {
-      LeakyBucket bucket = getBucket(key);
+      final Duration timeUntilSpaceAvailable = checkBucket(key, amount, true);
 
-      if (bucket.add(amount)) {
-        setBucket(key, bucket);
-      } else {
+      if (!timeUntilSpaceAvailable.isZero()) {
         meter.mark();
-        throw new RateLimitExceededException(key + " , " + amount, bucket.getTimeUntilSpaceAvailable(amount));
+        throw new RateLimitExceededException(key + " , " + amount, timeUntilSpaceAvailable);
       }
     }
   }
@@ -66,7 +61,7 @@ public class RateLimiter {
   }
 
   public boolean hasAvailablePermits(final String key, final int permits) {
-    return getBucket(key).getTimeUntilSpaceAvailable(permits).equals(Duration.ZERO);
+    return checkBucket(key, permits, false).isZero();
   }
 
   public void clear(String key) {
@@ -81,29 +76,27 @@ public class RateLimiter {
     return leakRatePerMinute;
   }
 
-  private void setBucket(String key, LeakyBucket bucket) {
-
-    try {
-      final String serialized = bucket.serialize(mapper);
-
-      cacheCluster.useCluster(connection -> connection.sync().setex(getBucketName(key), (int) Math.ceil((bucketSize / leakRatePerMillis) / 1000), serialized));
-    } catch (JsonProcessingException e) {
-      throw new IllegalArgumentException(e);
+  /**
+   * Atomically checks whether the given number of permits is available in the named bucket and, if {@code consume} is
+   * set and the permits are available, removes them from the bucket.
+   *
+   * @return the time until the requested permits will be available, or {@link Duration#ZERO} if they are available now
+   */
+  private Duration checkBucket(final String key, final int amount, final boolean consume) {
+    if (amount > bucketSize) {
+      // This shouldn't happen today but if so we should bubble this to the clients somehow
+      throw new IllegalArgumentException("Requested permits exceed maximum bucket size");
     }
-  }
 
-  private LeakyBucket getBucket(String key) {
-    try {
-      final String serialized = cacheCluster.withCluster(connection -> connection.sync().get(getBucketName(key)));
-
-      if (serialized != null) {
-        return LeakyBucket.fromSerialized(mapper, serialized);
-      }
-    } catch (IOException e) {
-      logger.warn("Deserialization error", e);
-    }
+    final Long millisUntilSpaceAvailable = (Long) validateScript.execute(List.of(getBucketName(key)),
+        List.of(String.valueOf(bucketSize),
+            String.valueOf(leakRatePerMillis),
+            String.valueOf(amount),
+            String.valueOf(System.currentTimeMillis()),
+            String.valueOf(bucketTtlSeconds),
+            String.valueOf(consume)));
 
-    return new LeakyBucket(bucketSize, leakRatePerMillis);
+    return millisUntilSpaceAvailable == null ? Duration.ZERO : Duration.ofMillis(millisUntilSpaceAvailable);
   }
 
   private String getBucketName(String key) {
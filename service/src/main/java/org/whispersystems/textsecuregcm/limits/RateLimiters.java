@@ -4,12 +4,14 @@
  */
 package org.whispersystems.textsecuregcm.limits;
 
-
+import io.lettuce.core.ScriptOutputType;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import org.whispersystems.textsecuregcm.configuration.RateLimitsConfiguration;
 import org.whispersystems.textsecuregcm.configuration.RateLimitsConfiguration.CardinalityRateLimitConfiguration;
 import org.whispersystems.textsecuregcm.configuration.RateLimitsConfiguration.RateLimitConfiguration;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 
@@ -48,81 +50,91 @@ public class RateLimiters {
   private final AtomicReference<RateLimiter> dailyPreKeysLimiter;
 
   private final FaultTolerantRedisCluster   cacheCluster;
+  private final ClusterLuaScript            validateScript;
   private final DynamicConfigurationManager dynamicConfig;
 
   public RateLimiters(RateLimitsConfiguration config, DynamicConfigurationManager dynamicConfig, FaultTolerantRedisCluster cacheCluster) {
     this.cacheCluster  = cacheCluster;
     this.dynamicConfig = dynamicConfig;
 
-    this.smsDestinationLimiter = new RateLimiter(cacheCluster, "smsDestination",
+    try {
+      // All limiters share one copy of the script, so it's only loaded once rather than once per limiter (and again
+      // whenever a dynamically-configured limiter is replaced)
+      this.validateScript = ClusterLuaScript.fromResource(cacheCluster, "lua/validate_rate_limit.lua", ScriptOutputType.INTEGER);
+    } catch (IOException e) {
+      // This should never happen for a script included in our own resource bundle
+      throw new AssertionError("Failed to load script", e);
+    }
+
+    this.smsDestinationLimiter = new RateLimiter(cacheCluster, validateScript, "smsDestination",
                                                  config.getSmsDestination().getBucketSize(),
                                                  config.getSmsDestination().getLeakRatePerMinute());
 
-    this.voiceDestinationLimiter = new RateLimiter(cacheCluster, "voxDestination",
+    this.voiceDestinationLimiter = new RateLimiter(cacheCluster, validateScript, "voxDestination",
                                                    config.getVoiceDestination().getBucketSize(),
                                                    config.getVoiceDestination().getLeakRatePerMinute());
 
-    this.voiceDestinationDailyLimiter = new RateLimiter(cacheCluster, "voxDestinationDaily",
+    this.voiceDestinationDailyLimiter = new RateLimiter(cacheCluster, validateScript, "voxDestinationDaily",
                                                         config.getVoiceDestinationDaily().getBucketSize(),
                                                         config.getVoiceDestinationDaily().getLeakRatePerMinute());
 
-    this.smsVoiceIpLimiter = new RateLimiter(cacheCluster, "smsVoiceIp",
+    this.smsVoiceIpLimiter = new RateLimiter(cacheCluster, validateScript, "smsVoiceIp",
                                              config.getSmsVoiceIp().getBucketSize(),
                                              config.getSmsVoiceIp().getLeakRatePerMinute());
 
-    this.smsVoicePrefixLimiter = new RateLimiter(cacheCluster, "smsVoicePrefix",
+    this.smsVoicePrefixLimiter = new RateLimiter(cacheCluster, validateScript, "smsVoicePrefix",
                                                  config.getSmsVoicePrefix().getBucketSize(),
                                                  config.getSmsVoicePrefix().getLeakRatePerMinute());
 
-    this.autoBlockLimiter = new RateLimiter(cacheCluster, "autoBlock",
+    this.autoBlockLimiter = new RateLimiter(cacheCluster, validateScript, "autoBlock",
                                             config.getAutoBlock().getBucketSize(),
                                             config.getAutoBlock().getLeakRatePerMinute());
 
-    this.verifyLimiter = new LockingRateLimiter(cacheCluster, "verify",
+    this.verifyLimiter = new LockingRateLimiter(cacheCluster, validateScript, "verify",
                                                 config.getVerifyNumber().getBucketSize(),
                                                 config.getVerifyNumber().getLeakRatePerMinute());
 
-    this.pinLimiter = new LockingRateLimiter(cacheCluster, "pin",
+    this.pinLimiter = new LockingRateLimiter(cacheCluster, validateScript, "pin",
                                              config.getVerifyPin().getBucketSize(),
                                              config.getVerifyPin().getLeakRatePerMinute());
 
-    this.attachmentLimiter = new RateLimiter(cacheCluster, "attachmentCreate",
+    this.attachmentLimiter = new RateLimiter(cacheCluster, validateScript, "attachmentCreate",
                                              config.getAttachments().getBucketSize(),
                                              config.getAttachments().getLeakRatePerMinute());
 
-    this.preKeysLimiter = new RateLimiter(cacheCluster, "prekeys",
+    this.preKeysLimiter = new RateLimiter(cacheCluster, validateScript, "prekeys",
                                           config.getPreKeys().getBucketSize(),
                                           config.getPreKeys().getLeakRatePerMinute());
 
-    this.messagesLimiter = new RateLimiter(cacheCluster, "messages",
+    this.messagesLimiter = new RateLimiter(cacheCluster, validateScript, "messages",
                                            config.getMessages().getBucketSize(),
                                            config.getMessages().getLeakRatePerMinute());
 
-    this.allocateDeviceLimiter = new RateLimiter(cacheCluster, "allocateDevice",
+    this.allocateDeviceLimiter = new RateLimiter(cacheCluster, validateScript, "allocateDevice",
                                                  config.getAllocateDevice().getBucketSize(),
                                                  config.getAllocateDevice().getLeakRatePerMinute());
 
-    this.verifyDeviceLimiter = new RateLimiter(cacheCluster, "verifyDevice",
+    this.verifyDeviceLimiter = new RateLimiter(cacheCluster, validateScript, "verifyDevice",
                                                config.getVerifyDevice().getBucketSize(),
                                                config.getVerifyDevice().getLeakRatePerMinute());
 
-    this.turnLimiter = new RateLimiter(cacheCluster, "turnAllocate",
+    this.turnLimiter = new RateLimiter(cacheCluster, validateScript, "turnAllocate",
                                        config.getTurnAllocations().getBucketSize(),
                                        config.getTurnAllocations().getLeakRatePerMinute());
 
-    this.profileLimiter = new RateLimiter(cacheCluster, "profile",
+    this.profileLimiter = new RateLimiter(cacheCluster, validateScript, "profile",
                                           config.getProfile().getBucketSize(),
                                           config.getProfile().getLeakRatePerMinute());
 
-    this.stickerPackLimiter = new RateLimiter(cacheCluster, "stickerPack",
+    this.stickerPackLimiter = new RateLimiter(cacheCluster, validateScript, "stickerPack",
                                               config.getStickerPack().getBucketSize(),
                                               config.getStickerPack().getLeakRatePerMinute());
 
-    this.usernameLookupLimiter = new RateLimiter(cacheCluster, "usernameLookup",
+    this.usernameLookupLimiter = new RateLimiter(cacheCluster, validateScript, "usernameLookup",
                                                  config.getUsernameLookup().getBucketSize(),
                                                  config.getUsernameLookup().getLeakRatePerMinute());
 
-    this.usernameSetLimiter = new RateLimiter(cacheCluster, "usernameSet",
+    this.usernameSetLimiter = new RateLimiter(cacheCluster, validateScript, "usernameSet",
                                               config.getUsernameSet().getBucketSize(),
                                               config.getUsernameSet().getLeakRatePerMinute());
 
@@ -320,7 +332,7 @@ public class RateLimiters {
   }
 
   private RateLimiter createLimiter(FaultTolerantRedisCluster cacheCluster, RateLimitConfiguration configuration, String name) {
-    return new RateLimiter(cacheCluster, name,
+    return new RateLimiter(cacheCluster, validateScript, name,
                            configuration.getBucketSize(),
                            configuration.getLeakRatePerMinute());
   }
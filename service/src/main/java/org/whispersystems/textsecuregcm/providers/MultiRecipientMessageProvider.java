@@ -6,11 +6,14 @@
 package org.whispersystems.textsecuregcm.providers;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.dropwizard.util.DataSizeUnit;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
@@ -31,6 +34,13 @@ public class MultiRecipientMessageProvider implements MessageBodyReader<MultiRec
   public static final int MAX_MESSAGE_SIZE = Math.toIntExact(32 + DataSizeUnit.KIBIBYTES.toBytes(256));
   public static final byte VERSION = 0x22;
 
+  private static final int KEY_MATERIAL_SIZE = 48;
+
+  // version, recipient count, and for each recipient a UUID, device ID, registration ID, and key material
+  private static final int MAX_HEADER_SIZE = 1 + 10 + MAX_RECIPIENT_COUNT * (16 + 10 + 2 + KEY_MATERIAL_SIZE);
+  @VisibleForTesting
+  static final int MAX_BODY_SIZE = MAX_HEADER_SIZE + MAX_MESSAGE_SIZE;
+
   @Override
   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
     return MEDIA_TYPE.equals(mediaType.toString()) && MultiRecipientMessage.class.isAssignableFrom(type);
@@ -40,90 +50,98 @@ public class MultiRecipientMessageProvider implements MessageBodyReader<MultiRec
   public MultiRecipientMessage readFrom(Class<MultiRecipientMessage> type, Type genericType, Annotation[] annotations,
       MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
       throws IOException, WebApplicationException {
-    int versionByte = entityStream.read();
-    if (versionByte == -1) {
+    // Read the body once; recipients' key material and the common payload are exposed as views into this buffer so the
+    // (potentially large) common payload is never copied per recipient. The buffer must not be modified after parsing.
+    // We read one byte past the largest body we'd accept so that an oversized body is rejected rather than truncated.
+    final byte[] body = entityStream.readNBytes(MAX_BODY_SIZE + 1);
+
+    if (body.length > MAX_BODY_SIZE) {
+      throw new BadRequestException("Maximum message size exceeded");
+    }
+
+    return parse(ByteBuffer.wrap(body));
+  }
+
+  @VisibleForTesting
+  static MultiRecipientMessage parse(ByteBuffer body) throws IOException, WebApplicationException {
+    if (!body.hasRemaining()) {
       throw new NoContentException("Empty body not allowed");
     }
-    if (versionByte != VERSION) {
+    if (body.get() != VERSION) {
       throw new BadRequestException("Unsupported version");
     }
-    long count = readVarint(entityStream);
+    long count = readVarint(body);
     if (count > MAX_RECIPIENT_COUNT) {
       throw new BadRequestException("Maximum recipient count exceeded");
     }
     MultiRecipientMessage.Recipient[] recipients = new MultiRecipientMessage.Recipient[Math.toIntExact(count)];
     for (int i = 0; i < Math.toIntExact(count); i++) {
-      UUID uuid = readUuid(entityStream);
-      long deviceId = readVarint(entityStream);
-      int registrationId = readU16(entityStream);
-      byte[] perRecipientKeyMaterial = entityStream.readNBytes(48);
-      if (perRecipientKeyMaterial.length != 48) {
-        throw new IOException("Failed to read expected number of key material bytes for a recipient");
-      }
+      UUID uuid = readUuid(body);
+      long deviceId = readVarint(body);
+      int registrationId = readU16(body);
+      ByteString perRecipientKeyMaterial = readView(body, KEY_MATERIAL_SIZE,
+          "Failed to read expected number of key material bytes for a recipient");
       recipients[i] = new MultiRecipientMessage.Recipient(uuid, deviceId, registrationId, perRecipientKeyMaterial);
     }
 
-    // caller is responsible for checking that the entity stream is at EOF when we return; if there are more bytes than
-    // this it'll return an error back. We just need to limit how many we'll accept here.
-    byte[] commonPayload = entityStream.readNBytes(MAX_MESSAGE_SIZE);
-    if (commonPayload.length < 32) {
+    // Everything after the recipients is the common payload; the body as a whole has already been limited to
+    // MAX_BODY_SIZE, but the payload itself must also fit within MAX_MESSAGE_SIZE.
+    if (body.remaining() < 32) {
       throw new IOException("Failed to read expected number of common key material bytes");
     }
+    if (body.remaining() > MAX_MESSAGE_SIZE) {
+      throw new BadRequestException("Maximum message size exceeded");
+    }
+    ByteString commonPayload = readView(body, body.remaining(), null);
     return new MultiRecipientMessage(recipients, commonPayload);
   }
 
   /**
-   * Reads a UUID in network byte order and converts to a UUID object.
+   * Returns a view of the next {@code length} bytes of the buffer without copying them, and advances past them.
    */
-  private UUID readUuid(InputStream stream) throws IOException {
-    byte[] buffer = new byte[8];
-
-    int read = stream.read(buffer);
-    if (read != 8) {
-      throw new IOException("Insufficient bytes for UUID");
-    }
-    long msb = convertNetworkByteOrderToLong(buffer);
-
-    read = stream.read(buffer);
-    if (read != 8) {
-      throw new IOException("Insufficient bytes for UUID");
+  private static ByteString readView(ByteBuffer buffer, int length, String insufficientBytesMessage) throws IOException {
+    if (buffer.remaining() < length) {
+      throw new IOException(insufficientBytesMessage);
     }
-    long lsb = convertNetworkByteOrderToLong(buffer);
-
-    return new UUID(msb, lsb);
+    ByteString view = UnsafeByteOperations.unsafeWrap(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+    buffer.position(buffer.position() + length);
+    return view;
   }
 
-  private long convertNetworkByteOrderToLong(byte[] buffer) {
-    long result = 0;
-    for (int i = 0; i < 8; i++) {
-      result = (result << 8) | (buffer[i] & 0xFFL);
+  /**
+   * Reads a UUID in network byte order and converts to a UUID object.
+   */
+  private static UUID readUuid(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < 16) {
+      throw new IOException("Insufficient bytes for UUID");
     }
-    return result;
+    // ByteBuffers are big-endian (network byte order) by default
+    return new UUID(buffer.getLong(), buffer.getLong());
   }
 
   /**
    * Reads a varint. A varint larger than 64 bits is rejected with a {@code WebApplicationException}. An
-   * {@code IOException} is thrown if the stream ends before we finish reading the varint.
+   * {@code IOException} is thrown if the buffer ends before we finish reading the varint.
    *
    * @return the varint value
    */
-  private long readVarint(InputStream stream) throws IOException, WebApplicationException {
+  private static long readVarint(ByteBuffer buffer) throws IOException, WebApplicationException {
     boolean hasMore = true;
     int currentOffset = 0;
-    int result = 0;
+    long result = 0;
     while (hasMore) {
       if (currentOffset >= 64) {
         throw new BadRequestException("varint is too large");
       }
-      int b = stream.read();
-      if (b == -1) {
+      if (!buffer.hasRemaining()) {
         throw new IOException("Missing byte " + (currentOffset / 7) + " of varint");
       }
+      int b = buffer.get() & 0xFF;
       if (currentOffset == 63 && (b & 0xFE) != 0) {
         throw new BadRequestException("varint is too large");
       }
       hasMore = (b & 0x80) != 0;
-      result |= (b & 0x7F) << currentOffset;
+      result |= (long) (b & 0x7F) << currentOffset;
       currentOffset += 7;
     }
     return result;
@@ -134,15 +152,15 @@ public class MultiRecipientMessageProvider implements MessageBodyReader<MultiRec
    * {@code [0, 65535]}.
    */
   @VisibleForTesting
-  static int readU16(InputStream stream) throws IOException {
-    int b1 = stream.read();
-    if (b1 == -1) {
+  static int readU16(ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
       throw new IOException("Missing byte 1 of U16");
     }
-    int b2 = stream.read();
-    if (b2 == -1) {
+    int b1 = buffer.get() & 0xFF;
+    if (!buffer.hasRemaining()) {
       throw new IOException("Missing byte 2 of U16");
     }
+    int b2 = buffer.get() & 0xFF;
     return (b1 << 8) | b2;
   }
 }
@@ -13,6 +13,8 @@ import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.cluster.SlotHash;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.push.ApnMessage.Type;
@@ -25,15 +27,20 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.RedisClusterUtil;
+import org.whispersystems.textsecuregcm.util.TimerWheel;
 import org.whispersystems.textsecuregcm.util.Util;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -50,6 +57,10 @@ public class ApnFallbackManager implements Managed {
   private static final Meter          retry                 = metricRegistry.meter(name(ApnFallbackManager.class, "voip_retry"));
   private static final Meter          evicted               = metricRegistry.meter(name(ApnFallbackManager.class, "voip_evicted"));
 
+  private static final Timer FIRE_LATENESS_TIMER = Timer.builder(name(ApnFallbackManager.class, "fireLateness"))
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .register(Metrics.globalRegistry);
+
   static {
     metricRegistry.register(name(ApnFallbackManager.class, "voip_ratio"), new VoipRatioGauge(delivered, sent));
   }
@@ -61,10 +72,41 @@ public class ApnFallbackManager implements Managed {
   private final ClusterLuaScript getScript;
   private final ClusterLuaScript insertScript;
   private final ClusterLuaScript removeScript;
+  private final ClusterLuaScript claimScript;
 
   private final Thread[] workerThreads = new Thread[WORKER_THREAD_COUNT];
+  private final Thread   localTimerThread;
+
+  // Retries for notifications scheduled by this process fire from this wheel rather than waiting for a worker to poll
+  // the notification's slot; Redis remains the durable record, and workers pick up anything this process doesn't
+  private final TimerWheel<PendingNotification> localTimers = new TimerWheel<>(LOCAL_TIMER_TICK_MILLIS, System.currentTimeMillis());
+
+  private static final int  WORKER_THREAD_COUNT     = 4;
+  private static final long LOCAL_TIMER_TICK_MILLIS = 100;
+
+  private static class PendingNotification {
+
+    private final String endpoint;
+    private final UUID   accountUuid;
+    private final long   deviceId;
 
-  private static final int WORKER_THREAD_COUNT = 4;
+    private PendingNotification(final String endpoint, final UUID accountUuid, final long deviceId) {
+      this.endpoint    = endpoint;
+      this.accountUuid = accountUuid;
+      this.deviceId    = deviceId;
+    }
+
+    // Pending notifications are identified by their endpoint alone
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof PendingNotification && endpoint.equals(((PendingNotification) o).endpoint);
+    }
+
+    @Override
+    public int hashCode() {
+      return endpoint.hashCode();
+    }
+  }
 
   private final AtomicBoolean running = new AtomicBoolean(false);
 
@@ -95,28 +137,44 @@ public class ApnFallbackManager implements Managed {
         pendingDestinations = getPendingDestinations(slot, 100);
         entriesProcessed += pendingDestinations.size();
 
+        final List<PendingNotification> pendingNotifications = new ArrayList<>(pendingDestinations.size());
+
         for (final String uuidAndDevice : pendingDestinations) {
           final Optional<Pair<String, Long>> separated = getSeparated(uuidAndDevice);
 
-          final Optional<Account> maybeAccount = separated.map(Pair::first)
-                                                          .map(UUID::fromString)
-                                                          .flatMap(accountsManager::get);
-
-          final Optional<Device> maybeDevice = separated.map(Pair::second)
-                                                        .flatMap(deviceId -> maybeAccount.flatMap(account -> account.getDevice(deviceId)));
+          if (separated.isPresent()) {
+            final UUID accountUuid = UUID.fromString(separated.get().first());
+            final long deviceId    = separated.get().second();
 
-          if (maybeAccount.isPresent() && maybeDevice.isPresent()) {
-            sendNotification(maybeAccount.get(), maybeDevice.get());
+            pendingNotifications.add(new PendingNotification(getEndpointKey(accountUuid, deviceId), accountUuid, deviceId));
           } else {
             remove(uuidAndDevice);
           }
         }
+
+        sendNotifications(pendingNotifications);
       } while (!pendingDestinations.isEmpty());
 
       return entriesProcessed;
     }
   }
 
+  class LocalTimerWorker implements Runnable {
+
+    @Override
+    public void run() {
+      while (running.get()) {
+        try {
+          processLocalTimers(System.currentTimeMillis());
+        } catch (Exception e) {
+          logger.warn("Exception while processing local timers", e);
+        }
+
+        Util.sleep(LOCAL_TIMER_TICK_MILLIS);
+      }
+    }
+  }
+
   public ApnFallbackManager(FaultTolerantRedisCluster cluster,
                             APNSender apnSender,
                             AccountsManager accountsManager)
@@ -129,10 +187,15 @@ public class ApnFallbackManager implements Managed {
     this.getScript = ClusterLuaScript.fromResource(cluster, "lua/apn/get.lua", ScriptOutputType.MULTI);
     this.insertScript = ClusterLuaScript.fromResource(cluster, "lua/apn/insert.lua", ScriptOutputType.VALUE);
     this.removeScript = ClusterLuaScript.fromResource(cluster, "lua/apn/remove.lua", ScriptOutputType.INTEGER);
+    this.claimScript = ClusterLuaScript.fromResource(cluster, "lua/apn/claim.lua", ScriptOutputType.MULTI);
 
     for (int i = 0; i < this.workerThreads.length; i++) {
       this.workerThreads[i] = new Thread(new NotificationWorker(), "ApnFallbackManagerWorker-" + i);
     }
+
+    this.localTimerThread = new Thread(new LocalTimerWorker(), "ApnFallbackManagerLocalTimer");
+
+    Metrics.gauge(name(ApnFallbackManager.class, "localTimers"), localTimers, TimerWheel::size);
   }
 
   public void schedule(Account account, Device device) throws RedisException {
@@ -144,6 +207,9 @@ public class ApnFallbackManager implements Managed {
     try {
       sent.mark();
       insert(account, device, timestamp + (15 * 1000), (15 * 1000));
+
+      localTimers.schedule(new PendingNotification(getEndpointKey(account, device), account.getUuid(), device.getId()),
+                           timestamp + (15 * 1000));
     } catch (io.lettuce.core.RedisException e) {
       throw new RedisException(e);
     }
@@ -166,6 +232,8 @@ public class ApnFallbackManager implements Managed {
     for (final Thread workerThread : workerThreads) {
       workerThread.start();
     }
+
+    localTimerThread.start();
   }
 
   @Override
@@ -175,6 +243,71 @@ public class ApnFallbackManager implements Managed {
     for (final Thread workerThread : workerThreads) {
       workerThread.join();
     }
+
+    localTimerThread.join();
+  }
+
+  /**
+   * Claims and sends the retries whose local timers have expired. A retry is only sent if its scheduled time in Redis
+   * has also passed; if another process already sent it, the local timer is moved to the next scheduled attempt.
+   *
+   * @return the number of local timers that expired
+   */
+  @VisibleForTesting
+  int processLocalTimers(final long now) {
+    final List<TimerWheel.Expiration<PendingNotification>> expirations = localTimers.advance(now);
+
+    if (expirations.isEmpty()) {
+      return 0;
+    }
+
+    final List<PendingNotification> claimedNotifications = new ArrayList<>(expirations.size());
+
+    for (final TimerWheel.Expiration<PendingNotification> expiration : expirations) {
+      final PendingNotification pendingNotification = expiration.getKey();
+
+      FIRE_LATENESS_TIMER.record(now - expiration.getDeadlineMillis(), TimeUnit.MILLISECONDS);
+
+      final List<?> claimResult = claim(pendingNotification.endpoint, now);
+
+      if (claimResult.isEmpty()) {
+        // The notification has been removed
+        continue;
+      }
+
+      localTimers.schedule(pendingNotification, (Long) claimResult.get(1));
+
+      if ((Long) claimResult.get(0) == 1) {
+        claimedNotifications.add(pendingNotification);
+      }
+    }
+
+    sendNotifications(claimedNotifications);
+
+    return expirations.size();
+  }
+
+  private void sendNotifications(final List<PendingNotification> pendingNotifications) {
+    if (pendingNotifications.isEmpty()) {
+      return;
+    }
+
+    final Set<UUID> accountUuids = pendingNotifications.stream()
+        .map(pendingNotification -> pendingNotification.accountUuid)
+        .collect(Collectors.toSet());
+
+    final Map<UUID, Account> accountsByUuid = accountsManager.getByUuids(accountUuids);
+
+    for (final PendingNotification pendingNotification : pendingNotifications) {
+      final Optional<Account> maybeAccount = Optional.ofNullable(accountsByUuid.get(pendingNotification.accountUuid));
+      final Optional<Device>  maybeDevice  = maybeAccount.flatMap(account -> account.getDevice(pendingNotification.deviceId));
+
+      if (maybeAccount.isPresent() && maybeDevice.isPresent()) {
+        sendNotification(maybeAccount.get(), maybeDevice.get());
+      } else {
+        remove(pendingNotification.endpoint);
+      }
+    }
   }
 
   private void sendNotification(final Account account, final Device device) {
@@ -221,6 +354,8 @@ public class ApnFallbackManager implements Managed {
   }
 
   private boolean remove(final String endpoint) {
+    localTimers.cancel(new PendingNotification(endpoint, null, 0));
+
     return (long)removeScript.execute(List.of(getPendingNotificationQueueKey(endpoint), endpoint),
                                       Collections.emptyList()) > 0;
   }
@@ -232,6 +367,11 @@ public class ApnFallbackManager implements Managed {
                                            List.of(String.valueOf(System.currentTimeMillis()), String.valueOf(limit)));
   }
 
+  private List<?> claim(final String endpoint, final long now) {
+    return (List<?>)claimScript.execute(List.of(getPendingNotificationQueueKey(endpoint), endpoint),
+                                        List.of(String.valueOf(now)));
+  }
+
   private void insert(final Account account, final Device device, final long timestamp, final long interval) {
     final String endpoint = getEndpointKey(account, device);
 
@@ -244,7 +384,11 @@ public class ApnFallbackManager implements Managed {
 
   @VisibleForTesting
   String getEndpointKey(final Account account, final Device device) {
-    return "apn_device::{" + account.getUuid() + "::" + device.getId() + "}";
+    return getEndpointKey(account.getUuid(), device.getId());
+  }
+
+  private String getEndpointKey(final UUID accountUuid, final long deviceId) {
+    return "apn_device::{" + accountUuid + "::" + deviceId + "}";
   }
 
   private String getPendingNotificationQueueKey(final String endpoint) {
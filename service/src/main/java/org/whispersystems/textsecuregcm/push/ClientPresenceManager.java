@@ -21,6 +21,7 @@ import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -31,12 +32,14 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 /**
  * The client presence manager keeps track of which clients are actively connected and "present" to receive messages.
@@ -63,6 +66,7 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     private final Map<String, DisplacedPresenceListener> displacementListenersByPresenceKey = new ConcurrentHashMap<>();
 
     private final Timer checkPresenceTimer;
+    private final Timer checkPresenceBatchTimer;
     private final Timer setPresenceTimer;
     private final Timer clearPresenceTimer;
     private final Timer prunePeersTimer;
@@ -87,6 +91,7 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
         metricRegistry.gauge(name(getClass(), "localClientCount"), () -> displacementListenersByPresenceKey::size);
 
         this.checkPresenceTimer      = metricRegistry.timer(name(getClass(), "checkPresence"));
+        this.checkPresenceBatchTimer = metricRegistry.timer(name(getClass(), "checkPresenceBatch"));
         this.setPresenceTimer        = metricRegistry.timer(name(getClass(), "setPresence"));
         this.clearPresenceTimer      = metricRegistry.timer(name(getClass(), "clearPresence"));
         this.prunePeersTimer         = metricRegistry.timer(name(getClass(), "prunePeers"));
@@ -180,6 +185,25 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
         }
     }
 
+    /**
+     * Checks whether clients are present for many account/device pairs at once. The presence checks are pipelined, so
+     * the whole batch costs about one round trip rather than one round trip per device.
+     *
+     * @param accountDevices the account/device pairs for which to check presence
+     *
+     * @return a list of presence flags in the same order as the given account/device pairs
+     */
+    public List<Boolean> isPresent(final List<Pair<UUID, Long>> accountDevices) {
+        try (final Timer.Context ignored = checkPresenceBatchTimer.time()) {
+            return presenceCluster.withClusterPipeline(connection -> accountDevices.stream()
+                    .map(accountDevice -> connection.async().exists(getPresenceKey(accountDevice.first(), accountDevice.second())).toCompletableFuture())
+                    .collect(Collectors.toList()))
+                    .stream()
+                    .map(count -> count == 1)
+                    .collect(Collectors.toList());
+        }
+    }
+
     public boolean isLocallyPresent(final UUID accountUuid, final long deviceId) {
         return displacementListenersByPresenceKey.containsKey(getPresenceKey(accountUuid, deviceId));
     }
@@ -11,22 +11,29 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.gcm.server.Message;
 import org.whispersystems.gcm.server.Result;
 import org.whispersystems.gcm.server.Sender;
+import org.whispersystems.textsecuregcm.configuration.GcmConfiguration;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.CircuitBreakerUtil;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.SystemMapper;
 import org.whispersystems.textsecuregcm.util.Util;
 
@@ -39,6 +46,8 @@ public class GCMSender {
   private final Meter          failure        = metricRegistry.meter(name(getClass(), "sent", "failure"));
   private final Meter          unregistered   = metricRegistry.meter(name(getClass(), "sent", "unregistered"));
   private final Meter          canonical      = metricRegistry.meter(name(getClass(), "sent", "canonical"));
+  private final Meter          coalesced      = metricRegistry.meter(name(getClass(), "feedback", "coalesced"));
+  private final Meter          rejected       = metricRegistry.meter(name(getClass(), "feedback", "rejected"));
 
   private final Map<String, Meter> outboundMeters = new HashMap<>() {{
     put("receipt", metricRegistry.meter(name(getClass(), "outbound", "receipt")));
@@ -51,8 +60,23 @@ public class GCMSender {
   private final Sender            signalSender;
   private final ExecutorService   executor;
 
-  public GCMSender(ExecutorService executor, AccountsManager accountsManager, String signalKey) {
-    this(executor, accountsManager, new Sender(signalKey, SystemMapper.getMapper(), 6));
+  private enum FeedbackType {
+    BAD_REGISTRATION,
+    CANONICAL_REGISTRATION_ID,
+    GENERIC_ERROR
+  }
+
+  // Registration IDs and kinds of feedback waiting to be processed; a dead token that receives many notifications before
+  // its feedback is processed only needs to be handled once, but feedback of one kind must not hide feedback of another
+  // (e.g. a pending generic error must not swallow a later unregistration)
+  private final Set<Pair<String, FeedbackType>> pendingFeedback = ConcurrentHashMap.newKeySet();
+
+  // Feedback is processed on several threads; don't let two threads update the same account at once
+  private final Striped<Lock> accountLocks = Striped.lock(64);
+
+  public GCMSender(ExecutorService executor, AccountsManager accountsManager, GcmConfiguration configuration) {
+    this(executor, accountsManager, new Sender(configuration.getApiKey(), SystemMapper.getMapper(), 6,
+                                               configuration.getMaxBatchSize(), configuration.getBatchWindow()));
 
     CircuitBreakerUtil.registerMetrics(metricRegistry, signalSender.getRetry(), Sender.class);
   }
@@ -62,6 +86,8 @@ public class GCMSender {
     this.accountsManager = accountsManager;
     this.signalSender    = sender;
     this.executor        = executor;
+
+    metricRegistry.gauge(name(getClass(), "feedback", "pending"), () -> pendingFeedback::size);
   }
 
   public void sendMessage(GcmMessage message) {
@@ -86,11 +112,11 @@ public class GCMSender {
     future.handle((result, throwable) -> {
       if (result != null && message.getType() != GcmMessage.Type.CHALLENGE) {
         if (result.isUnregistered() || result.isInvalidRegistrationId()) {
-          executor.submit(() -> handleBadRegistration(message));
+          submitFeedback(message, FeedbackType.BAD_REGISTRATION, () -> handleBadRegistration(message));
         } else if (result.hasCanonicalRegistrationId()) {
-          executor.submit(() -> handleCanonicalRegistrationId(message, result));
+          submitFeedback(message, FeedbackType.CANONICAL_REGISTRATION_ID, () -> handleCanonicalRegistrationId(message, result));
         } else if (!result.isSuccess()) {
-          executor.submit(() -> handleGenericError(message, result));
+          submitFeedback(message, FeedbackType.GENERIC_ERROR, () -> handleGenericError(message, result));
         } else {
           success.mark();
         }
@@ -102,6 +128,33 @@ public class GCMSender {
     });
   }
 
+  private void submitFeedback(GcmMessage message, FeedbackType feedbackType, Runnable handler) {
+    Pair<String, FeedbackType> feedbackKey = new Pair<>(message.getGcmId(), feedbackType);
+
+    if (!pendingFeedback.add(feedbackKey)) {
+      coalesced.mark();
+      return;
+    }
+
+    try {
+      executor.submit(() -> {
+        Lock accountLock = accountLocks.get(message.getNumber());
+        accountLock.lock();
+
+        try {
+          handler.run();
+        } finally {
+          accountLock.unlock();
+          pendingFeedback.remove(feedbackKey);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // The feedback executor's queue is unbounded, so this only happens once it's been shut down
+      pendingFeedback.remove(feedbackKey);
+      rejected.mark();
+    }
+  }
+
   private void handleBadRegistration(GcmMessage message) {
     Optional<Account> account = getAccountForEvent(message);
 
@@ -12,11 +12,16 @@ import org.whispersystems.textsecuregcm.push.ApnMessage.Type;
 import org.whispersystems.textsecuregcm.redis.RedisOperation;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesCache;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.Util;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
@@ -66,22 +71,7 @@ public class MessageSender implements Managed {
   public void sendMessage(final Account account, final Device device, final Envelope message, boolean online)
       throws NotPushRegisteredException
   {
-    if (device.getGcmId() == null && device.getApnId() == null && !device.getFetchesMessages()) {
-      throw new NotPushRegisteredException("No delivery possible!");
-    }
-
-    final String channel;
-
-    if (device.getGcmId() != null) {
-      channel = "gcm";
-    } else if (device.getApnId() != null) {
-      channel = "apn";
-    } else if (device.getFetchesMessages()) {
-      channel = "websocket";
-    } else {
-      throw new AssertionError();
-    }
-
+    final String channel = getChannel(device);
     final boolean clientPresent;
 
     if (online) {
@@ -103,6 +93,84 @@ public class MessageSender implements Managed {
       }
     }
 
+    incrementSendCounter(channel, online, clientPresent);
+  }
+
+  /**
+   * Sends messages to many destination devices at once. This behaves like calling
+   * {@link #sendMessage(Account, Device, Envelope, boolean)} for each delivery, except that messages are inserted and
+   * client presence is checked in pipelined batches rather than with separate round trips for every device.
+   *
+   * @param deliveries the messages to send and the devices to which to send them
+   * @param online whether the messages are "online" (ephemeral) messages
+   *
+   * @return the deliveries that could not be made because their destination device has no way to receive messages
+   */
+  public List<Delivery> sendMessages(final List<Delivery> deliveries, final boolean online) {
+    final List<Delivery> possibleDeliveries = new ArrayList<>(deliveries.size());
+    final List<String> channels = new ArrayList<>(deliveries.size());
+    final List<Delivery> impossibleDeliveries = new ArrayList<>();
+
+    for (final Delivery delivery : deliveries) {
+      try {
+        channels.add(getChannel(delivery.getDevice()));
+        possibleDeliveries.add(delivery);
+      } catch (final NotPushRegisteredException e) {
+        impossibleDeliveries.add(delivery);
+      }
+    }
+
+    final List<Pair<UUID, Long>> accountDevices = possibleDeliveries.stream()
+        .map(delivery -> new Pair<>(delivery.getAccount().getUuid(), delivery.getDevice().getId()))
+        .collect(Collectors.toList());
+
+    final List<Boolean> clientsPresent;
+
+    if (online) {
+      clientsPresent = clientPresenceManager.isPresent(accountDevices);
+
+      for (int i = 0; i < possibleDeliveries.size(); i++) {
+        if (clientsPresent.get(i)) {
+          final Delivery delivery = possibleDeliveries.get(i);
+          messagesManager.insertEphemeral(delivery.getAccount().getUuid(), delivery.getDevice().getId(), delivery.getMessage());
+        }
+      }
+    } else {
+      messagesManager.insert(possibleDeliveries.stream()
+          .map(delivery -> new MessagesCache.Insertion(UUID.randomUUID(), delivery.getAccount().getUuid(), delivery.getDevice().getId(), delivery.getMessage()))
+          .collect(Collectors.toList()));
+
+      // As with single messages, check for presence only after all messages have been inserted
+      clientsPresent = clientPresenceManager.isPresent(accountDevices);
+
+      for (int i = 0; i < possibleDeliveries.size(); i++) {
+        if (!clientsPresent.get(i)) {
+          final Delivery delivery = possibleDeliveries.get(i);
+          sendNewMessageNotification(delivery.getAccount(), delivery.getDevice());
+        }
+      }
+    }
+
+    for (int i = 0; i < possibleDeliveries.size(); i++) {
+      incrementSendCounter(channels.get(i), online, clientsPresent.get(i));
+    }
+
+    return impossibleDeliveries;
+  }
+
+  private static String getChannel(final Device device) throws NotPushRegisteredException {
+    if (device.getGcmId() != null) {
+      return "gcm";
+    } else if (device.getApnId() != null) {
+      return "apn";
+    } else if (device.getFetchesMessages()) {
+      return "websocket";
+    } else {
+      throw new NotPushRegisteredException("No delivery possible!");
+    }
+  }
+
+  private static void incrementSendCounter(final String channel, final boolean online, final boolean clientPresent) {
     final List<Tag> tags = List.of(
             Tag.of(CHANNEL_TAG_NAME, channel),
             Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
@@ -152,4 +220,29 @@ public class MessageSender implements Managed {
   public void stop() {
     apnSender.stop();
   }
+
+  public static class Delivery {
+
+    private final Account  account;
+    private final Device   device;
+    private final Envelope message;
+
+    public Delivery(final Account account, final Device device, final Envelope message) {
+      this.account = account;
+      this.device  = device;
+      this.message = message;
+    }
+
+    public Account getAccount() {
+      return account;
+    }
+
+    public Device getDevice() {
+      return device;
+    }
+
+    public Envelope getMessage() {
+      return message;
+    }
+  }
 }
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.redis;
 import com.google.common.annotations.VisibleForTesting;
 import io.lettuce.core.RedisNoScriptException;
 import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +16,9 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ClusterLuaScript {
 
@@ -88,6 +91,61 @@ public class ClusterLuaScript {
         });
     }
 
+    /**
+     * Executes this script once for each of the given key and argument lists, pipelining all of the invocations so the
+     * batch costs about one round trip rather than one per invocation. If a node doesn't have the script cached, the
+     * script is sent in full with {@code EVAL}, which also caches it on that node. The whole batch is subject to the
+     * cluster's circuit breaker and retry policy, and may be re-sent in full if it times out, so the script must be
+     * idempotent.
+     *
+     * @param keys the keys to pass to each invocation of the script
+     * @param args the arguments to pass to each invocation of the script; must be the same size as {@code keys}
+     *
+     * @return the result of each invocation, in the same order as the given keys and arguments
+     *
+     * @see FaultTolerantRedisCluster#withBinaryClusterPipeline(java.util.function.Function)
+     */
+    public List<Object> executeBinaryBatch(final List<List<byte[]>> keys, final List<List<byte[]>> args) {
+        if (keys.size() != args.size()) {
+            throw new IllegalArgumentException("Must provide the same number of key and argument lists");
+        }
+
+        return redisCluster.withBinaryClusterPipeline(connection -> {
+            final RedisAdvancedClusterAsyncCommands<byte[], byte[]> binaryCommands = connection.async();
+            final List<CompletableFuture<Object>> resultFutures = new ArrayList<>(keys.size());
+
+            for (int i = 0; i < keys.size(); i++) {
+                resultFutures.add(executeBinaryAsync(binaryCommands, keys.get(i).toArray(BYTE_ARRAY_ARRAY), args.get(i).toArray(BYTE_ARRAY_ARRAY)));
+            }
+
+            return resultFutures;
+        });
+    }
+
+    private CompletableFuture<Object> executeBinaryAsync(final RedisAdvancedClusterAsyncCommands<byte[], byte[]> binaryCommands, final byte[][] keys, final byte[][] args) {
+        final CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+
+        binaryCommands.evalsha(sha, scriptOutputType, keys, args).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                resultFuture.complete(result);
+            } else if (throwable instanceof RedisNoScriptException) {
+                binaryCommands.eval(script, scriptOutputType, keys, args).whenComplete((retryResult, retryThrowable) -> {
+                    if (retryThrowable == null) {
+                        resultFuture.complete(retryResult);
+                    } else {
+                        log.warn("Failed to execute script", retryThrowable);
+                        resultFuture.completeExceptionally(retryThrowable);
+                    }
+                });
+            } else {
+                log.warn("Failed to execute script", throwable);
+                resultFuture.completeExceptionally(throwable);
+            }
+        });
+
+        return resultFuture;
+    }
+
     private void reloadScript() {
         redisCluster.useCluster(connection -> connection.sync().upstream().commands().scriptLoad(script));
     }
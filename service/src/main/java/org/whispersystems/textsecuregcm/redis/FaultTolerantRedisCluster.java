@@ -25,6 +25,8 @@ import io.lettuce.core.resource.ClientResources;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -126,6 +128,54 @@ public class FaultTolerantRedisCluster {
         return withConnection(binaryConnection, function);
     }
 
+    /**
+     * Dispatches a batch of commands through the asynchronous API and waits for every reply, so the batch costs about
+     * one round trip instead of one round trip per command. The circuit breaker and retry policy treat the whole batch
+     * as one operation, the same way they treat a single synchronous operation. A batch that times out is dispatched
+     * again in full, so every command in the batch must be idempotent.
+     *
+     * @param function a function that issues commands on the given connection and returns a future for each reply
+     *
+     * @return the replies to the dispatched commands, in the same order as the returned futures
+     */
+    public <T> List<T> withClusterPipeline(final Function<StatefulRedisClusterConnection<String, String>, List<CompletableFuture<T>>> function) {
+        return withConnection(stringConnection, connection -> joinAll(function.apply(connection)));
+    }
+
+    /**
+     * Dispatches a batch of commands through the asynchronous binary API and waits for every reply.
+     *
+     * @param function a function that issues commands on the given connection and returns a future for each reply
+     *
+     * @return the replies to the dispatched commands, in the same order as the returned futures
+     *
+     * @see #withClusterPipeline(Function)
+     */
+    public <T> List<T> withBinaryClusterPipeline(final Function<StatefulRedisClusterConnection<byte[], byte[]>, List<CompletableFuture<T>>> function) {
+        return withConnection(binaryConnection, connection -> joinAll(function.apply(connection)));
+    }
+
+    private static <T> List<T> joinAll(final List<CompletableFuture<T>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (final CompletionException e) {
+            // Unwrap so that timeouts are recognized by the retry policy and the command timeout meter
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
+        }
+
+        final List<T> results = new ArrayList<>(futures.size());
+
+        for (final CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+
+        return results;
+    }
+
     private <K, V> void useConnection(final StatefulRedisClusterConnection<K, V> connection, final Consumer<StatefulRedisClusterConnection<K, V>> consumer) {
         try {
             circuitBreaker.executeCheckedRunnable(() -> retry.executeRunnable(() -> {
@@ -6,63 +6,140 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.util.Util;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static io.micrometer.core.instrument.Metrics.counter;
+import static io.micrometer.core.instrument.Metrics.summary;
 import static io.micrometer.core.instrument.Metrics.timer;
 
 public class AbstractDynamoDbStore {
 
-    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbClient        dynamoDbClient;
+    private final BatchWriteRetryPolicy batchWriteRetryPolicy;
 
-    private final Timer   batchWriteItemsFirstPass   = timer(name(getClass(), "batchWriteItems"), "firstAttempt", "true");
-    private final Timer   batchWriteItemsRetryPass   = timer(name(getClass(), "batchWriteItems"), "firstAttempt", "false");
-    private final Counter batchWriteItemsUnprocessed = counter(name(getClass(), "batchWriteItemsUnprocessed"));
+    private final Timer               batchWriteItemsFirstPass            = timer(name(getClass(), "batchWriteItems"), "firstAttempt", "true");
+    private final Timer               batchWriteItemsRetryPass            = timer(name(getClass(), "batchWriteItems"), "firstAttempt", "false");
+    private final DistributionSummary batchWriteItemsFirstPassUnprocessed = summary(name(getClass(), "batchWriteItemsUnprocessedRatio"), "firstAttempt", "true");
+    private final DistributionSummary batchWriteItemsRetryPassUnprocessed = summary(name(getClass(), "batchWriteItemsUnprocessedRatio"), "firstAttempt", "false");
+    private final Counter             batchWriteItemsRetriesAbandoned     = counter(name(getClass(), "batchWriteItemsRetriesAbandoned"));
+    private final Counter             batchWriteItemsUnprocessed          = counter(name(getClass(), "batchWriteItemsUnprocessed"));
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private static final int MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE = 25;  // This was arbitrarily chosen and may be entirely too high.
     public static final int DYNAMO_DB_MAX_BATCH_SIZE = 25;  // This limit comes from Amazon Dynamo DB itself. It will reject batch writes larger than this.
     public static final int RESULT_SET_CHUNK_SIZE = 100;
 
     public AbstractDynamoDbStore(final DynamoDbClient dynamoDbClient) {
-        this.dynamoDbClient = dynamoDbClient;
+        this(dynamoDbClient, new ExponentialBackoffBatchWriteRetryPolicy());
+    }
+
+    public AbstractDynamoDbStore(final DynamoDbClient dynamoDbClient, final BatchWriteRetryPolicy batchWriteRetryPolicy) {
+        this.dynamoDbClient        = dynamoDbClient;
+        this.batchWriteRetryPolicy = batchWriteRetryPolicy;
     }
 
     protected DynamoDbClient db() {
         return dynamoDbClient;
     }
 
+    /**
+     * Writes the given items, re-sending any items DynamoDB leaves unprocessed for as long as the batch write retry
+     * policy allows.
+     *
+     * @param items the items to write, keyed by table name
+     *
+     * @throws BatchWriteIncompleteException if the retry policy gave up before all items were written
+     */
     protected void executeTableWriteItemsUntilComplete(final Map<String,List<WriteRequest>> items) {
         AtomicReference<BatchWriteItemResponse> outcome = new AtomicReference<>();
         batchWriteItemsFirstPass.record(() -> outcome.set(dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(items).build())));
+        recordUnprocessedRatio(batchWriteItemsFirstPassUnprocessed, items, outcome.get().unprocessedItems());
+
+        // Only tables that needed no retries at all return tokens to the retry budget
+        for (final String tableName : items.keySet()) {
+            if (!outcome.get().unprocessedItems().containsKey(tableName)) {
+                batchWriteRetryPolicy.recordSuccess(tableName);
+            }
+        }
+
         int attemptCount = 0;
-        while (!outcome.get().unprocessedItems().isEmpty() && attemptCount < MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE) {
+        while (!outcome.get().unprocessedItems().isEmpty()) {
+            final Optional<Duration> maybeRetryDelay = getRetryDelay(outcome.get().unprocessedItems(), attemptCount + 1);
+
+            if (maybeRetryDelay.isEmpty()) {
+                batchWriteItemsRetriesAbandoned.increment();
+                break;
+            }
+
+            if (!maybeRetryDelay.get().isZero()) {
+                Util.sleep(maybeRetryDelay.get().toMillis());
+            }
+
+            final Map<String, List<WriteRequest>> retryItems = outcome.get().unprocessedItems();
+
             batchWriteItemsRetryPass.record(() -> outcome.set(dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
-                .requestItems(outcome.get().unprocessedItems())
+                .requestItems(retryItems)
                 .build())));
+            recordUnprocessedRatio(batchWriteItemsRetryPassUnprocessed, retryItems, outcome.get().unprocessedItems());
             ++attemptCount;
         }
+
         if (!outcome.get().unprocessedItems().isEmpty()) {
-          int totalItems = outcome.get().unprocessedItems().values().stream().mapToInt(List::size).sum();
-            logger.error("Attempt count ({}) reached max ({}}) before applying all batch writes to dynamo. {} unprocessed items remain.", attemptCount, MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE, totalItems);
+            int totalItems = countItems(outcome.get().unprocessedItems());
+            logger.error("Retry policy stopped after {} retries before applying all batch writes to dynamo. {} unprocessed items remain.", attemptCount, totalItems);
             batchWriteItemsUnprocessed.increment(totalItems);
+
+            throw new BatchWriteIncompleteException(totalItems, attemptCount);
         }
     }
 
+    private Optional<Duration> getRetryDelay(final Map<String, List<WriteRequest>> unprocessedItems, final int retryAttempt) {
+        Duration retryDelay = Duration.ZERO;
+
+        for (final String tableName : unprocessedItems.keySet()) {
+            final Optional<Duration> maybeTableRetryDelay = batchWriteRetryPolicy.getRetryDelay(tableName, retryAttempt);
+
+            if (maybeTableRetryDelay.isEmpty()) {
+                return Optional.empty();
+            }
+
+            if (maybeTableRetryDelay.get().compareTo(retryDelay) > 0) {
+                retryDelay = maybeTableRetryDelay.get();
+            }
+        }
+
+        return Optional.of(retryDelay);
+    }
+
+    private static void recordUnprocessedRatio(final DistributionSummary summary, final Map<String, List<WriteRequest>> submittedItems, final Map<String, List<WriteRequest>> unprocessedItems) {
+        final int submittedCount = countItems(submittedItems);
+
+        if (submittedCount > 0) {
+            summary.record((double) countItems(unprocessedItems) / submittedCount);
+        }
+    }
+
+    private static int countItems(final Map<String, List<WriteRequest>> items) {
+        return items.values().stream().mapToInt(List::size).sum();
+    }
+
     static <T> void writeInBatches(final Iterable<T> items, final Consumer<List<T>> action) {
         final List<T> batch = new ArrayList<>(DYNAMO_DB_MAX_BATCH_SIZE);
 
@@ -8,14 +8,30 @@ package org.whispersystems.textsecuregcm.storage;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.InetAddresses;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.storage.mappers.AbusiveHostRuleRowMapper;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.IpPrefixTrie;
+import org.whispersystems.textsecuregcm.util.Util;
 
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
-public class AbusiveHostRules {
+/**
+ * Abusive host rules are stored in the abuse database, which remains the source of truth, but lookups are served from
+ * an in-memory prefix trie of all rules. The trie is reloaded periodically and updated in place when this process
+ * blocks a host; until the first load completes, lookups go to the database.
+ */
+public class AbusiveHostRules implements Managed {
 
   public static final String ID      = "id";
   public static final String HOST    = "host";
@@ -26,15 +42,95 @@ public class AbusiveHostRules {
   private final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
   private final Timer          getTimer       = metricRegistry.timer(name(AbusiveHostRules.class, "get"));
   private final Timer          insertTimer    = metricRegistry.timer(name(AbusiveHostRules.class, "setBlockedHost"));
+  private final Timer          refreshTimer   = metricRegistry.timer(name(AbusiveHostRules.class, "refresh"));
+
+  private static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Logger logger = LoggerFactory.getLogger(AbusiveHostRules.class);
 
   private final FaultTolerantDatabase database;
 
+  private volatile RuleSnapshot snapshot;
+
+  private static class RuleSnapshot {
+
+    private final List<AbusiveHostRule>        rules;
+    private final IpPrefixTrie<AbusiveHostRule> trie;
+
+    private RuleSnapshot(final List<AbusiveHostRule> rules) {
+      final IpPrefixTrie.Builder<AbusiveHostRule> trieBuilder = IpPrefixTrie.builder();
+
+      for (final AbusiveHostRule rule : rules) {
+        final String[] networkAndPrefixLength = rule.getHost().split("/", 2);
+        final InetAddress network = InetAddresses.forString(networkAndPrefixLength[0]);
+        final int prefixLength = networkAndPrefixLength.length == 2 ? Integer.parseInt(networkAndPrefixLength[1]) : network.getAddress().length * 8;
+
+        trieBuilder.add(network, prefixLength, rule);
+      }
+
+      this.rules = rules;
+      this.trie  = trieBuilder.build();
+    }
+  }
+
   public AbusiveHostRules(FaultTolerantDatabase database) {
     this.database = database;
     this.database.getDatabase().registerRowMapper(new AbusiveHostRuleRowMapper());
   }
 
+  @Override
+  public void start() {
+    try {
+      refresh();
+    } catch (Exception e) {
+      logger.warn("Failed to load abusive host rules", e);
+    }
+
+    final Thread refreshThread = new Thread(() -> {
+      while (true) {
+        Util.sleep(REFRESH_INTERVAL_MILLIS);
+
+        try {
+          refresh();
+        } catch (Throwable t) {
+          logger.warn("Failed to refresh abusive host rules", t);
+        }
+      }
+    }, "AbusiveHostRulesRefresh");
+
+    refreshThread.setDaemon(true);
+    refreshThread.start();
+  }
+
+  @Override
+  public void stop() {
+  }
+
+  @VisibleForTesting
+  public synchronized void refresh() {
+    try (Timer.Context timer = refreshTimer.time()) {
+      snapshot = new RuleSnapshot(database.with(jdbi -> jdbi.withHandle(handle ->
+          handle.createQuery("SELECT * FROM abusive_host_rules")
+                .mapTo(AbusiveHostRule.class)
+                .list())));
+    }
+  }
+
   public List<AbusiveHostRule> getAbusiveHostRulesFor(String host) {
+    final RuleSnapshot currentSnapshot = snapshot;
+
+    if (currentSnapshot == null) {
+      return getAbusiveHostRulesFromDatabase(host);
+    }
+
+    try (Timer.Context timer = getTimer.time()) {
+      return currentSnapshot.trie.get(InetAddresses.forString(host));
+    } catch (IllegalArgumentException e) {
+      return Collections.emptyList();
+    }
+  }
+
+  private List<AbusiveHostRule> getAbusiveHostRulesFromDatabase(String host) {
     return database.with(jdbi -> jdbi.withHandle(handle -> {
       try (Timer.Context timer = getTimer.time()) {
         return handle.createQuery("SELECT * FROM abusive_host_rules WHERE :host::inet <<= " + HOST)
@@ -46,15 +142,28 @@ public class AbusiveHostRules {
   }
 
   public void setBlockedHost(String host, String notes) {
-    database.use(jdbi -> jdbi.useHandle(handle -> {
+    final int inserted = database.with(jdbi -> jdbi.withHandle(handle -> {
       try (Timer.Context timer = insertTimer.time()) {
-        handle.createUpdate("INSERT INTO abusive_host_rules(host, blocked, notes) VALUES(:host::inet, :blocked, :notes) ON CONFLICT DO NOTHING")
-              .bind("host", host)
-              .bind("blocked", 1)
-              .bind("notes", notes)
-              .execute();
+        return handle.createUpdate("INSERT INTO abusive_host_rules(host, blocked, notes) VALUES(:host::inet, :blocked, :notes) ON CONFLICT DO NOTHING")
+                     .bind("host", host)
+                     .bind("blocked", 1)
+                     .bind("notes", notes)
+                     .execute();
       }
     }));
+
+    if (inserted > 0) {
+      addToSnapshot(new AbusiveHostRule(host, true, Collections.emptyList()));
+    }
+  }
+
+  private synchronized void addToSnapshot(AbusiveHostRule rule) {
+    if (snapshot != null) {
+      final List<AbusiveHostRule> rules = new ArrayList<>(snapshot.rules);
+      rules.add(rule);
+
+      snapshot = new RuleSnapshot(rules);
+    }
   }
 
 }
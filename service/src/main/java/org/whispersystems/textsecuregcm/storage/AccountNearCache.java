@@ -0,0 +1,304 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+
+/**
+ * The account near cache is a bounded, in-process cache of serialized accounts that sits in front of the shared Redis
+ * account cache. Entries are keyed by account UUID and hold the account's JSON representation rather than an
+ * {@link Account} instance, since accounts are mutable and callers routinely modify the instances they receive.
+ * <p/>
+ * When an account changes, the process that changed it invalidates its own entry and publishes the account's UUID to
+ * an invalidation channel on the cache cluster; all other processes evict their copies when they receive the message.
+ * Because pub/sub delivery is best-effort, entries also expire after a configured time to live, which bounds staleness
+ * if an invalidation is lost.
+ */
+public class AccountNearCache extends RedisClusterPubSubAdapter<String, String> implements Managed {
+
+  private final String nearCacheId = UUID.randomUUID().toString();
+
+  private final FaultTolerantRedisCluster                     cacheCluster;
+  private final FaultTolerantPubSubConnection<String, String> pubSubConnection;
+  private final Cache<UUID, CachedAccount>                    cache;
+  private final Clock                                         clock;
+
+  // Incremented whenever an entry in the corresponding stripe is invalidated; loads that overlap with an invalidation
+  // must not populate the cache, since the loaded value may predate the change that triggered the invalidation.
+  private final AtomicLongArray invalidationCounters = new AtomicLongArray(INVALIDATION_COUNTER_STRIPES);
+
+  private static final int INVALIDATION_COUNTER_STRIPES = 256;
+
+  @VisibleForTesting
+  static final String INVALIDATION_CHANNEL = "account_near_cache::invalidations";
+
+  private static final Counter HIT_COUNTER = Metrics.counter(name(AccountNearCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(AccountNearCache.class, "miss"));
+  private static final Counter LOCAL_INVALIDATION_COUNTER = Metrics.counter(name(AccountNearCache.class, "invalidation"), "source", "local");
+  private static final Counter REMOTE_INVALIDATION_COUNTER = Metrics.counter(name(AccountNearCache.class, "invalidation"), "source", "remote");
+  private static final Counter PUBLISH_FAILURE_COUNTER = Metrics.counter(name(AccountNearCache.class, "publishFailure"));
+  private static final DistributionSummary HIT_AGE_DISTRIBUTION = DistributionSummary.builder(name(AccountNearCache.class, "hitAgeMillis"))
+      .publishPercentiles(0.5, 0.99)
+      .register(Metrics.globalRegistry);
+  private static final DistributionSummary INVALIDATION_LATENCY_DISTRIBUTION = DistributionSummary.builder(name(AccountNearCache.class, "invalidationLatencyMillis"))
+      .publishPercentiles(0.5, 0.99)
+      .register(Metrics.globalRegistry);
+
+  private static final Logger log = LoggerFactory.getLogger(AccountNearCache.class);
+
+  private static class CachedAccount {
+
+    private final String json;
+    private final long   cachedAtMillis;
+
+    private CachedAccount(final String json, final long cachedAtMillis) {
+      this.json           = json;
+      this.cachedAtMillis = cachedAtMillis;
+    }
+  }
+
+  public AccountNearCache(final FaultTolerantRedisCluster cacheCluster, final AccountNearCacheConfiguration configuration) {
+    this(cacheCluster, configuration, Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  AccountNearCache(final FaultTolerantRedisCluster cacheCluster, final AccountNearCacheConfiguration configuration, final Clock clock) {
+    this.cacheCluster     = cacheCluster;
+    this.pubSubConnection = cacheCluster.createPubSubConnection();
+    this.clock            = clock;
+
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(configuration.getMaxSize())
+        .<UUID, CachedAccount>weigher((uuid, cachedAccount) -> cachedAccount.json.length())
+        .expireAfterWrite(configuration.getTtl().toMillis(), TimeUnit.MILLISECONDS)
+        .build();
+
+    Metrics.gauge(name(AccountNearCache.class, "size"), cache, Cache::size);
+  }
+
+  @Override
+  public void start() {
+    pubSubConnection.usePubSubConnection(connection -> {
+      connection.addListener(this);
+      connection.getResources().eventBus().get()
+          .filter(event -> event instanceof ClusterTopologyChangedEvent)
+          .subscribe(event -> {
+            // We may have missed invalidations while the topology was changing
+            invalidateAllLocally();
+            subscribeForInvalidations();
+          });
+    });
+
+    subscribeForInvalidations();
+  }
+
+  @Override
+  public void stop() {
+    pubSubConnection.usePubSubConnection(connection -> {
+      connection.removeListener(this);
+      connection.sync().upstream().commands().unsubscribe(INVALIDATION_CHANNEL);
+    });
+  }
+
+  private void subscribeForInvalidations() {
+    final int slot = SlotHash.getSlot(INVALIDATION_CHANNEL);
+
+    pubSubConnection.usePubSubConnection(connection -> connection.sync()
+        .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+        .commands()
+        .subscribe(INVALIDATION_CHANNEL));
+  }
+
+  /**
+   * Returns the serialized account with the given UUID, loading it with the given loader and caching the result if it
+   * is not already present in the near cache.
+   *
+   * @param uuid the UUID of the account to retrieve
+   * @param loader a supplier that retrieves the serialized account from the shared cache; may return {@code null} if
+   * the account is not present in the shared cache
+   *
+   * @return the serialized account, or {@code null} if the account was not cached and the loader returned {@code null}
+   */
+  public String get(final UUID uuid, final Supplier<String> loader) {
+    final String cachedJson = getIfPresent(uuid);
+
+    if (cachedJson != null) {
+      return cachedJson;
+    }
+
+    final long   invalidationsAtStart = invalidationCounters.get(getStripe(uuid));
+    final String json                 = loader.get();
+
+    if (json != null) {
+      putIfNotInvalidated(uuid, json, invalidationsAtStart);
+    }
+
+    return json;
+  }
+
+  /**
+   * Returns the serialized accounts with the given UUIDs, loading any that are not present in the near cache with a
+   * single call to the given bulk loader and caching the results.
+   *
+   * @param uuids the UUIDs of the accounts to retrieve
+   * @param loader a function that retrieves serialized accounts from the shared cache; accounts not present in the
+   * shared cache should be absent from the returned map. The loader is not called if all accounts are cached.
+   *
+   * @return a map of UUIDs to serialized accounts; accounts that were not cached and not returned by the loader are
+   * absent
+   */
+  public Map<UUID, String> getAll(final Collection<UUID> uuids, final Function<List<UUID>, Map<UUID, String>> loader) {
+    final Map<UUID, String> jsonByUuid   = new HashMap<>(uuids.size());
+    final List<UUID>        missingUuids = new ArrayList<>();
+
+    for (final UUID uuid : uuids) {
+      final String cachedJson = getIfPresent(uuid);
+
+      if (cachedJson != null) {
+        jsonByUuid.put(uuid, cachedJson);
+      } else {
+        missingUuids.add(uuid);
+      }
+    }
+
+    if (!missingUuids.isEmpty()) {
+      final long[] invalidationsAtStart = new long[missingUuids.size()];
+
+      for (int i = 0; i < missingUuids.size(); i++) {
+        invalidationsAtStart[i] = invalidationCounters.get(getStripe(missingUuids.get(i)));
+      }
+
+      final Map<UUID, String> loadedJsonByUuid = loader.apply(missingUuids);
+
+      for (int i = 0; i < missingUuids.size(); i++) {
+        final UUID   uuid = missingUuids.get(i);
+        final String json = loadedJsonByUuid.get(uuid);
+
+        if (json != null) {
+          jsonByUuid.put(uuid, json);
+          putIfNotInvalidated(uuid, json, invalidationsAtStart[i]);
+        }
+      }
+    }
+
+    return jsonByUuid;
+  }
+
+  private String getIfPresent(final UUID uuid) {
+    final CachedAccount cachedAccount = cache.getIfPresent(uuid);
+
+    if (cachedAccount != null) {
+      HIT_COUNTER.increment();
+      HIT_AGE_DISTRIBUTION.record(clock.millis() - cachedAccount.cachedAtMillis);
+
+      return cachedAccount.json;
+    }
+
+    MISS_COUNTER.increment();
+    return null;
+  }
+
+  private void putIfNotInvalidated(final UUID uuid, final String json, final long invalidationsAtStart) {
+    final int stripe = getStripe(uuid);
+
+    if (invalidationCounters.get(stripe) == invalidationsAtStart) {
+      cache.put(uuid, new CachedAccount(json, clock.millis()));
+
+      // An invalidation may have arrived between the check above and the put; if so, discard what we just cached.
+      if (invalidationCounters.get(stripe) != invalidationsAtStart) {
+        cache.invalidate(uuid);
+      }
+    }
+  }
+
+  /**
+   * Evicts the given account from this process's near cache and notifies all other processes that they should do the
+   * same. Callers should invalidate accounts only after the shared cache has been updated.
+   *
+   * @param uuid the UUID of the account to invalidate
+   */
+  public void invalidate(final UUID uuid) {
+    invalidateLocally(uuid);
+    LOCAL_INVALIDATION_COUNTER.increment();
+
+    try {
+      cacheCluster.useCluster(connection ->
+          connection.sync().publish(INVALIDATION_CHANNEL, String.join(":", nearCacheId, uuid.toString(), String.valueOf(clock.millis()))));
+    } catch (final RedisException e) {
+      log.warn("Failed to publish account cache invalidation", e);
+      PUBLISH_FAILURE_COUNTER.increment();
+    }
+  }
+
+  private void invalidateLocally(final UUID uuid) {
+    invalidationCounters.incrementAndGet(getStripe(uuid));
+    cache.invalidate(uuid);
+  }
+
+  @VisibleForTesting
+  void invalidateAllLocally() {
+    // Advance every stripe so that loads already in progress don't repopulate the cache with values that may predate
+    // the invalidations we missed
+    for (int i = 0; i < INVALIDATION_COUNTER_STRIPES; i++) {
+      invalidationCounters.incrementAndGet(i);
+    }
+
+    cache.invalidateAll();
+  }
+
+  @Override
+  public void message(final RedisClusterNode node, final String channel, final String message) {
+    if (INVALIDATION_CHANNEL.equals(channel)) {
+      try {
+        final String[] pieces = message.split(":", 3);
+
+        if (nearCacheId.equals(pieces[0])) {
+          // We already invalidated our own entry before publishing
+          return;
+        }
+
+        invalidateLocally(UUID.fromString(pieces[1]));
+        REMOTE_INVALIDATION_COUNTER.increment();
+        INVALIDATION_LATENCY_DISTRIBUTION.record(clock.millis() - Long.parseLong(pieces[2]));
+      } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+        log.warn("Failed to parse account cache invalidation: {}", message, e);
+      }
+    }
+  }
+
+  private static int getStripe(final UUID uuid) {
+    return Math.floorMod(uuid.hashCode(), INVALIDATION_COUNTER_STRIPES);
+  }
+}
@@ -13,12 +13,15 @@ import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -50,11 +53,13 @@ public class AccountsManager {
   private static final Timer          updateTimer      = metricRegistry.timer(name(AccountsManager.class, "update"     ));
   private static final Timer          getByNumberTimer = metricRegistry.timer(name(AccountsManager.class, "getByNumber"));
   private static final Timer          getByUuidTimer   = metricRegistry.timer(name(AccountsManager.class, "getByUuid"  ));
+  private static final Timer          getByUuidsTimer  = metricRegistry.timer(name(AccountsManager.class, "getByUuids" ));
   private static final Timer          deleteTimer      = metricRegistry.timer(name(AccountsManager.class, "delete"));
 
   private static final Timer redisSetTimer       = metricRegistry.timer(name(AccountsManager.class, "redisSet"      ));
   private static final Timer redisNumberGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisNumberGet"));
   private static final Timer redisUuidGetTimer   = metricRegistry.timer(name(AccountsManager.class, "redisUuidGet"  ));
+  private static final Timer redisUuidsGetTimer  = metricRegistry.timer(name(AccountsManager.class, "redisUuidsGet" ));
   private static final Timer redisDeleteTimer    = metricRegistry.timer(name(AccountsManager.class, "redisDelete"   ));
 
   private static final String DELETE_COUNTER_NAME       = name(AccountsManager.class, "deleteCounter");
@@ -71,6 +76,7 @@ public class AccountsManager {
   private final Accounts                  accounts;
   private final AccountsDynamoDb          accountsDynamoDb;
   private final FaultTolerantRedisCluster cacheCluster;
+  private final AccountNearCache          accountNearCache;
   private final DirectoryQueue            directoryQueue;
   private final KeysDynamoDb              keysDynamoDb;
   private final MessagesManager           messagesManager;
@@ -97,7 +103,8 @@ public class AccountsManager {
     }
   }
 
-  public AccountsManager(Accounts accounts, AccountsDynamoDb accountsDynamoDb, FaultTolerantRedisCluster cacheCluster, final DirectoryQueue directoryQueue,
+  public AccountsManager(Accounts accounts, AccountsDynamoDb accountsDynamoDb, FaultTolerantRedisCluster cacheCluster,
+      final AccountNearCache accountNearCache, final DirectoryQueue directoryQueue,
       final KeysDynamoDb keysDynamoDb, final MessagesManager messagesManager, final UsernamesManager usernamesManager,
       final ProfilesManager profilesManager, final SecureStorageClient secureStorageClient,
       final SecureBackupClient secureBackupClient,
@@ -105,6 +112,7 @@ public class AccountsManager {
     this.accounts            = accounts;
     this.accountsDynamoDb    = accountsDynamoDb;
     this.cacheCluster        = cacheCluster;
+    this.accountNearCache    = accountNearCache;
     this.directoryQueue      = directoryQueue;
     this.keysDynamoDb        = keysDynamoDb;
     this.messagesManager     = messagesManager;
@@ -160,6 +168,7 @@ public class AccountsManager {
       }
 
       redisSet(account);
+      accountNearCache.invalidate(account.getUuid());
 
       return freshUser;
     }
@@ -169,6 +178,7 @@ public class AccountsManager {
     try (Timer.Context ignored = updateTimer.time()) {
       account.setDynamoDbMigrationVersion(account.getDynamoDbMigrationVersion() + 1);
       redisSet(account);
+      accountNearCache.invalidate(account.getUuid());
       databaseUpdate(account);
 
       if (dynamoWriteEnabled()) {
@@ -215,19 +225,46 @@ public class AccountsManager {
       Optional<Account> account = redisGet(uuid);
 
       if (!account.isPresent()) {
-        account = databaseGet(uuid);
-        account.ifPresent(value -> redisSet(value));
+        account = databaseGetAndCache(uuid);
+      }
 
-        if (dynamoReadEnabled()) {
-          runSafelyAndRecordMetrics(() -> dynamoGet(uuid), Optional.of(uuid), account, this::compareAccounts,
-              "getByUuid");
+      return account;
+    }
+  }
+
+  /**
+   * Retrieves the accounts with the given UUIDs, fetching all cached accounts in a single round of cache requests.
+   *
+   * @param uuids the UUIDs of the accounts to retrieve
+   *
+   * @return a map of UUIDs to accounts; UUIDs for which no account exists are absent from the map
+   */
+  public Map<UUID, Account> getByUuids(Collection<UUID> uuids) {
+    try (Timer.Context ignored = getByUuidsTimer.time()) {
+      final Map<UUID, Account> accountsByUuid = redisGet(uuids);
+
+      for (final UUID uuid : uuids) {
+        if (!accountsByUuid.containsKey(uuid)) {
+          databaseGetAndCache(uuid).ifPresent(account -> accountsByUuid.put(uuid, account));
         }
       }
 
-      return account;
+      return accountsByUuid;
     }
   }
 
+  private Optional<Account> databaseGetAndCache(UUID uuid) {
+    final Optional<Account> account = databaseGet(uuid);
+    account.ifPresent(value -> redisSet(value));
+
+    if (dynamoReadEnabled()) {
+      runSafelyAndRecordMetrics(() -> dynamoGet(uuid), Optional.of(uuid), account, this::compareAccounts,
+          "getByUuid");
+    }
+
+    return account;
+  }
+
 
   public List<Account> getAllFrom(int length) {
     return accounts.getAllFrom(length);
@@ -252,6 +289,7 @@ public class AccountsManager {
       deleteBackupServiceDataFuture.join();
 
       redisDelete(account);
+      accountNearCache.invalidate(account.getUuid());
       databaseDelete(account);
 
       if (dynamoDeleteEnabled()) {
@@ -319,7 +357,8 @@ public class AccountsManager {
 
   private Optional<Account> redisGet(UUID uuid) {
     try (Timer.Context ignored = redisUuidGetTimer.time()) {
-      final String json = cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid)));
+      final String json = accountNearCache.get(uuid,
+          () -> cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid))));
 
       if (json != null) {
         Account account = mapper.readValue(json, Account.class);
@@ -338,6 +377,43 @@ public class AccountsManager {
     }
   }
 
+  private Map<UUID, Account> redisGet(Collection<UUID> uuids) {
+    final Map<UUID, Account> accountsByUuid = new HashMap<>(uuids.size());
+
+    try (Timer.Context ignored = redisUuidsGetTimer.time()) {
+      final Map<UUID, String> jsonByUuid = accountNearCache.getAll(uuids, missingUuids -> {
+        final List<KeyValue<String, String>> values = cacheCluster.withCluster(connection ->
+            connection.sync().mget(missingUuids.stream().map(this::getAccountEntityKey).toArray(String[]::new)));
+
+        // Values are returned in the same order as the requested keys
+        final Map<UUID, String> loadedJsonByUuid = new HashMap<>(missingUuids.size());
+
+        for (int i = 0; i < missingUuids.size(); i++) {
+          if (values.get(i).hasValue()) {
+            loadedJsonByUuid.put(missingUuids.get(i), values.get(i).getValue());
+          }
+        }
+
+        return loadedJsonByUuid;
+      });
+
+      jsonByUuid.forEach((uuid, json) -> {
+        try {
+          Account account = mapper.readValue(json, Account.class);
+          account.setUuid(uuid);
+
+          accountsByUuid.put(uuid, account);
+        } catch (IOException e) {
+          logger.warn("Deserialization error", e);
+        }
+      });
+    } catch (RedisException e) {
+      logger.warn("Redis failure", e);
+    }
+
+    return accountsByUuid;
+  }
+
   private void redisDelete(final Account account) {
     try (final Timer.Context ignored = redisDeleteTimer.time()) {
       cacheCluster.useCluster(connection -> connection.sync().del(getAccountMapKey(account.getNumber()), getAccountEntityKey(account.getUuid())));
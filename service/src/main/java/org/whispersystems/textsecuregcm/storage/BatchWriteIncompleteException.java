@@ -0,0 +1,23 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.textsecuregcm.storage;
+
+/**
+ * Indicates that a batch write retry policy gave up before DynamoDB accepted every item in a batch write. Callers must
+ * assume that some or all of the items were not written.
+ */
+public class BatchWriteIncompleteException extends RuntimeException {
+
+  private final int unprocessedItemCount;
+
+  public BatchWriteIncompleteException(final int unprocessedItemCount, final int retryAttempts) {
+    super(unprocessedItemCount + " items remained unprocessed after " + retryAttempts + " retries");
+    this.unprocessedItemCount = unprocessedItemCount;
+  }
+
+  public int getUnprocessedItemCount() {
+    return unprocessedItemCount;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A batch write retry policy decides whether and when {@link AbstractDynamoDbStore} should re-send items that DynamoDB
+ * left unprocessed in response to a batch write request.
+ */
+public interface BatchWriteRetryPolicy {
+
+  /**
+   * Returns the delay to wait before re-sending unprocessed items to the given table, or empty if the unprocessed items
+   * should not be retried.
+   *
+   * @param tableName the name of the table with unprocessed items
+   * @param retryAttempt the number of the retry about to be attempted, starting at 1 for the first retry
+   *
+   * @return the delay before the next attempt, or empty if no further attempts should be made
+   */
+  Optional<Duration> getRetryDelay(String tableName, int retryAttempt);
+
+  /**
+   * Notifies this policy that a batch write to the given table completed on its first attempt without leaving any
+   * unprocessed items.
+   *
+   * @param tableName the name of the table to which all items were written
+   */
+  void recordSuccess(String tableName);
+}
@@ -12,6 +12,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,10 +23,14 @@ import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class DynamicConfigurationManager {
 
@@ -36,11 +41,12 @@ public class DynamicConfigurationManager {
   private final AmazonAppConfig appConfigClient;
 
   private final AtomicReference<DynamicConfiguration>   configuration    = new AtomicReference<>();
+  private final CountDownLatch                          initialized      = new CountDownLatch(1);
+  private final List<Consumer<DynamicConfiguration>>    listeners        = new CopyOnWriteArrayList<>();
+  private final Object                                  listenerLock     = new Object();
 
   private GetConfigurationResult lastConfigResult;
 
-  private boolean initialized = false;
-
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new YAMLFactory())
       .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
       .registerModule(new JavaTimeModule());
@@ -67,25 +73,50 @@ public class DynamicConfigurationManager {
   }
 
   public DynamicConfiguration getConfiguration() {
-    synchronized (this) {
-      while (!initialized) Util.wait(this);
+    final DynamicConfiguration currentConfiguration = configuration.get();
+
+    if (currentConfiguration != null) {
+      return currentConfiguration;
     }
 
+    Uninterruptibles.awaitUninterruptibly(initialized);
     return configuration.get();
   }
 
-  public void start() {
-    configuration.set(retrieveInitialDynamicConfiguration());
-
-    synchronized (this) {
-      this.initialized = true;
-      this.notifyAll();
+  /**
+   * Registers a listener to be notified whenever a new configuration is retrieved. If a configuration is already
+   * available, the listener is notified of it immediately on the calling thread; subsequent notifications happen on the
+   * worker thread that retrieves configuration updates, and so listeners should return quickly. Listeners always
+   * receive configurations in the order in which they were retrieved.
+   *
+   * @param listener the listener to notify of new configurations
+   */
+  public void addListener(final Consumer<DynamicConfiguration> listener) {
+    // Registration and the initial notification must not interleave with an update; otherwise, a new listener could
+    // be notified of the latest configuration by the worker thread and then of a stale one here.
+    synchronized (listenerLock) {
+      listeners.add(listener);
+
+      final DynamicConfiguration currentConfiguration = configuration.get();
+
+      if (currentConfiguration != null) {
+        notifyListener(listener, currentConfiguration);
+      }
     }
+  }
+
+  public void removeListener(final Consumer<DynamicConfiguration> listener) {
+    listeners.remove(listener);
+  }
+
+  public void start() {
+    setConfiguration(retrieveInitialDynamicConfiguration());
+    initialized.countDown();
 
     final Thread workerThread = new Thread(() -> {
       while (true) {
         try {
-          retrieveDynamicConfiguration().ifPresent(configuration::set);
+          retrieveDynamicConfiguration().ifPresent(this::setConfiguration);
         } catch (Throwable t) {
           logger.warn("Error retrieving dynamic configuration", t);
         }
@@ -98,6 +129,21 @@ public class DynamicConfigurationManager {
     workerThread.start();
   }
 
+  private void setConfiguration(final DynamicConfiguration dynamicConfiguration) {
+    synchronized (listenerLock) {
+      configuration.set(dynamicConfiguration);
+      listeners.forEach(listener -> notifyListener(listener, dynamicConfiguration));
+    }
+  }
+
+  private static void notifyListener(final Consumer<DynamicConfiguration> listener, final DynamicConfiguration dynamicConfiguration) {
+    try {
+      listener.accept(dynamicConfiguration);
+    } catch (final Exception e) {
+      logger.warn("Dynamic configuration listener failed", e);
+    }
+  }
+
   private Optional<DynamicConfiguration> retrieveDynamicConfiguration() throws JsonProcessingException {
     final String previousVersion = lastConfigResult != null ? lastConfigResult.getConfigurationVersion() : null;
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A batch write retry policy that waits for an exponentially-increasing, fully-jittered delay between attempts and
+ * limits the total number of retries that may be in flight for a table with a token budget. Each retry draws from the
+ * table's budget, and each batch write that completes on its first attempt returns a token to it. Once a table's
+ * budget is spent, writes to it still get a small minimum number of retries, but each waits for the full capped delay,
+ * so a table that is being persistently throttled sees far less retry traffic without writes being abandoned outright.
+ *
+ * @see <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/">Exponential Backoff And Jitter</a>
+ */
+public class ExponentialBackoffBatchWriteRetryPolicy implements BatchWriteRetryPolicy {
+
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final int minRetries;
+  private final int maxRetries;
+  private final int retryBudget;
+  private final int retryCost;
+
+  private final LongUnaryOperator jitter;
+
+  private final Map<String, AtomicInteger> retryTokensByTable = new ConcurrentHashMap<>();
+
+  static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(10);
+  static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(1);
+  static final int DEFAULT_MIN_RETRIES = 3;
+  static final int DEFAULT_MAX_RETRIES = 10;
+  static final int DEFAULT_RETRY_BUDGET = 500;
+  static final int DEFAULT_RETRY_COST = 5;
+
+  public ExponentialBackoffBatchWriteRetryPolicy() {
+    this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MIN_RETRIES, DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BUDGET, DEFAULT_RETRY_COST);
+  }
+
+  public ExponentialBackoffBatchWriteRetryPolicy(final Duration baseDelay, final Duration maxDelay, final int minRetries, final int maxRetries, final int retryBudget, final int retryCost) {
+    this(baseDelay, maxDelay, minRetries, maxRetries, retryBudget, retryCost, bound -> ThreadLocalRandom.current().nextLong(bound + 1));
+  }
+
+  @VisibleForTesting
+  ExponentialBackoffBatchWriteRetryPolicy(final Duration baseDelay, final Duration maxDelay, final int minRetries, final int maxRetries, final int retryBudget, final int retryCost, final LongUnaryOperator jitter) {
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.minRetries = Math.min(minRetries, maxRetries);
+    this.maxRetries = maxRetries;
+    this.retryBudget = retryBudget;
+    this.retryCost = retryCost;
+    this.jitter = jitter;
+  }
+
+  @Override
+  public Optional<Duration> getRetryDelay(final String tableName, final int retryAttempt) {
+    if (retryAttempt > maxRetries) {
+      return Optional.empty();
+    }
+
+    final AtomicInteger retryTokens = getRetryTokens(tableName);
+
+    int availableTokens;
+
+    do {
+      availableTokens = retryTokens.get();
+
+      if (availableTokens < retryCost) {
+        if (retryAttempt > minRetries) {
+          return Optional.empty();
+        }
+
+        // Out of budget, but still owed a minimum number of retries; wait at least half of the maximum delay (plus
+        // jitter) so these retries add as little load as possible to a table that's already being throttled
+        final long halfMaxDelayMillis = maxDelay.toMillis() / 2;
+        return Optional.of(Duration.ofMillis(maxDelay.toMillis() - halfMaxDelayMillis + jitter.applyAsLong(halfMaxDelayMillis)));
+      }
+    } while (!retryTokens.compareAndSet(availableTokens, availableTokens - retryCost));
+
+    // Full jitter: choose uniformly between zero and the capped exponential delay
+    final long exponentialDelayMillis = baseDelay.toMillis() << Math.min(retryAttempt - 1, 30);
+    final long cappedDelayMillis = exponentialDelayMillis > 0 ? Math.min(maxDelay.toMillis(), exponentialDelayMillis) : maxDelay.toMillis();
+
+    return Optional.of(Duration.ofMillis(jitter.applyAsLong(cappedDelayMillis)));
+  }
+
+  @Override
+  public void recordSuccess(final String tableName) {
+    getRetryTokens(tableName).updateAndGet(tokens -> Math.min(retryBudget, tokens + 1));
+  }
+
+  @VisibleForTesting
+  int getAvailableRetryTokens(final String tableName) {
+    return getRetryTokens(tableName).get();
+  }
+
+  private AtomicInteger getRetryTokens(final String tableName) {
+    return retryTokensByTable.computeIfAbsent(tableName, ignored -> new AtomicInteger(retryBudget));
+  }
+}
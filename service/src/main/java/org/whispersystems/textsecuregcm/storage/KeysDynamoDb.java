@@ -14,12 +14,16 @@ import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.whispersystems.textsecuregcm.entities.PreKey;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
@@ -34,6 +38,8 @@ import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 public class KeysDynamoDb extends AbstractDynamoDbStore {
 
+  private final DynamoDbAsyncClient asyncClient;
+  private final PreKeyCountCache preKeyCountCache;
   private final String tableName;
 
   static final String KEY_ACCOUNT_UUID = "U";
@@ -48,9 +54,14 @@ public class KeysDynamoDb extends AbstractDynamoDbStore {
   private static final Timer               DELETE_KEYS_FOR_ACCOUNT_TIMER = Metrics.timer(name(KeysDynamoDb.class, "deleteKeysForAccount"));
   private static final DistributionSummary CONTESTED_KEY_DISTRIBUTION    = Metrics.summary(name(KeysDynamoDb.class, "contestedKeys"));
   private static final DistributionSummary KEY_COUNT_DISTRIBUTION        = Metrics.summary(name(KeysDynamoDb.class, "keyCount"));
+  private static final Timer               RECONCILE_KEY_COUNT_TIMER     = Metrics.timer(name(KeysDynamoDb.class, "reconcileKeyCount"));
+  private static final DistributionSummary KEY_COUNT_DRIFT_DISTRIBUTION  = Metrics.summary(name(KeysDynamoDb.class, "keyCountDrift"));
 
-  public KeysDynamoDb(final DynamoDbClient dynamoDB, final String tableName) {
+  public KeysDynamoDb(final DynamoDbClient dynamoDB, final DynamoDbAsyncClient asyncClient,
+      final PreKeyCountCache preKeyCountCache, final String tableName) {
     super(dynamoDB);
+    this.asyncClient = asyncClient;
+    this.preKeyCountCache = preKeyCountCache;
     this.tableName = tableName;
   }
 
@@ -69,37 +80,23 @@ public class KeysDynamoDb extends AbstractDynamoDbStore {
         }
         executeTableWriteItemsUntilComplete(Map.of(tableName, items));
       });
+
+      preKeyCountCache.set(account.getUuid(), deviceId, (int) keys.stream().mapToLong(PreKey::getKeyId).distinct().count());
     });
   }
 
   public Optional<PreKey> take(final Account account, final long deviceId) {
     return TAKE_KEY_FOR_DEVICE_TIMER.record(() -> {
       final AttributeValue partitionKey = getPartitionKey(account.getUuid());
-      QueryRequest queryRequest = QueryRequest.builder()
-          .tableName(tableName)
-          .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
-          .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
-          .expressionAttributeValues(Map.of(
-              ":uuid", partitionKey,
-              ":sortprefix", getSortKeyPrefix(deviceId)))
-          .projectionExpression(KEY_DEVICE_ID_KEY_ID)
-          .consistentRead(false)
-          .build();
 
       int contestedKeys = 0;
 
       try {
-        QueryResponse response = db().query(queryRequest);
+        QueryResponse response = db().query(buildTakeCandidatesQuery(partitionKey, deviceId));
         for (Map<String, AttributeValue> candidate : response.items()) {
-          DeleteItemRequest deleteItemRequest = DeleteItemRequest.builder()
-              .tableName(tableName)
-              .key(Map.of(
-                  KEY_ACCOUNT_UUID, partitionKey,
-                  KEY_DEVICE_ID_KEY_ID, candidate.get(KEY_DEVICE_ID_KEY_ID)))
-              .returnValues(ReturnValue.ALL_OLD)
-              .build();
-          DeleteItemResponse deleteItemResponse = db().deleteItem(deleteItemRequest);
+          DeleteItemResponse deleteItemResponse = db().deleteItem(buildTakeCandidateDelete(partitionKey, candidate));
           if (deleteItemResponse.hasAttributes()) {
+            preKeyCountCache.decrement(account.getUuid(), deviceId);
             return Optional.of(getPreKeyFromItem(deleteItemResponse.attributes()));
           }
 
@@ -113,45 +110,150 @@ public class KeysDynamoDb extends AbstractDynamoDbStore {
     });
   }
 
+  /**
+   * Takes one pre-key for each of the given account's devices. Keys for all devices are claimed concurrently, so the
+   * latency of this operation is roughly that of taking a key for a single device rather than growing with the number
+   * of devices.
+   *
+   * @param account the account for which to take pre-keys
+   *
+   * @return a map of device IDs to pre-keys; devices with no remaining pre-keys are absent from the map
+   */
   public Map<Long, PreKey> take(final Account account) {
     return TAKE_KEYS_FOR_ACCOUNT_TIMER.record(() -> {
-      final Map<Long, PreKey> preKeysByDeviceId = new HashMap<>();
+      final AttributeValue partitionKey = getPartitionKey(account.getUuid());
+      final Map<Long, CompletableFuture<Optional<PreKey>>> takeFuturesByDeviceId = new HashMap<>();
 
       for (final Device device : account.getDevices()) {
-        take(account, device.getId()).ifPresent(preKey -> preKeysByDeviceId.put(device.getId(), preKey));
+        takeFuturesByDeviceId.put(device.getId(), takeAsync(partitionKey, device.getId()));
       }
 
+      try {
+        CompletableFuture.allOf(takeFuturesByDeviceId.values().toArray(new CompletableFuture[0])).join();
+      } catch (final CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+
+        throw e;
+      }
+
+      final Map<Long, PreKey> preKeysByDeviceId = new HashMap<>();
+
+      takeFuturesByDeviceId.forEach((deviceId, takeFuture) ->
+          takeFuture.join().ifPresent(preKey -> {
+            preKeysByDeviceId.put(deviceId, preKey);
+            preKeyCountCache.decrement(account.getUuid(), deviceId);
+          }));
+
       return preKeysByDeviceId;
     });
   }
 
+  private CompletableFuture<Optional<PreKey>> takeAsync(final AttributeValue partitionKey, final long deviceId) {
+    return asyncClient.query(buildTakeCandidatesQuery(partitionKey, deviceId))
+        .thenCompose(response -> takeFirstAvailableCandidate(partitionKey, response.items().iterator(), 0));
+  }
+
+  private CompletableFuture<Optional<PreKey>> takeFirstAvailableCandidate(final AttributeValue partitionKey,
+      final Iterator<Map<String, AttributeValue>> candidates, final int contestedKeys) {
+
+    if (!candidates.hasNext()) {
+      CONTESTED_KEY_DISTRIBUTION.record(contestedKeys);
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    return asyncClient.deleteItem(buildTakeCandidateDelete(partitionKey, candidates.next()))
+        .thenCompose(deleteItemResponse -> {
+          if (deleteItemResponse.hasAttributes()) {
+            CONTESTED_KEY_DISTRIBUTION.record(contestedKeys);
+            return CompletableFuture.completedFuture(Optional.of(getPreKeyFromItem(deleteItemResponse.attributes())));
+          }
+
+          return takeFirstAvailableCandidate(partitionKey, candidates, contestedKeys + 1);
+        });
+  }
+
+  private QueryRequest buildTakeCandidatesQuery(final AttributeValue partitionKey, final long deviceId) {
+    return QueryRequest.builder()
+        .tableName(tableName)
+        .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
+        .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
+        .expressionAttributeValues(Map.of(
+            ":uuid", partitionKey,
+            ":sortprefix", getSortKeyPrefix(deviceId)))
+        .projectionExpression(KEY_DEVICE_ID_KEY_ID)
+        .consistentRead(false)
+        .build();
+  }
+
+  private DeleteItemRequest buildTakeCandidateDelete(final AttributeValue partitionKey, final Map<String, AttributeValue> candidate) {
+    return DeleteItemRequest.builder()
+        .tableName(tableName)
+        .key(Map.of(
+            KEY_ACCOUNT_UUID, partitionKey,
+            KEY_DEVICE_ID_KEY_ID, candidate.get(KEY_DEVICE_ID_KEY_ID)))
+        .returnValues(ReturnValue.ALL_OLD)
+        .build();
+  }
+
   public int getCount(final Account account, final long deviceId) {
     return GET_KEY_COUNT_TIMER.record(() -> {
-      QueryRequest queryRequest = QueryRequest.builder()
-          .tableName(tableName)
-          .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
-          .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
-          .expressionAttributeValues(Map.of(
-              ":uuid", getPartitionKey(account.getUuid()),
-              ":sortprefix", getSortKeyPrefix(deviceId)))
-          .select(Select.COUNT)
-          .consistentRead(false)
-          .build();
+      final int keyCount = preKeyCountCache.get(account.getUuid(), deviceId).orElseGet(() -> {
+        final int count = countKeys(account.getUuid(), deviceId, false);
+        preKeyCountCache.setIfAbsent(account.getUuid(), deviceId, count);
+
+        return count;
+      });
 
-      int keyCount = 0;
-      // This is very confusing, but does appear to be the intended behavior. See:
-      //
-      // - https://github.com/aws/aws-sdk-java/issues/693
-      // - https://github.com/aws/aws-sdk-java/issues/915
-      // - https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/Query.html#Query.Count
-      for (final QueryResponse page : db().queryPaginator(queryRequest)) {
-        keyCount += page.count();
-      }
       KEY_COUNT_DISTRIBUTION.record(keyCount);
       return keyCount;
     });
   }
 
+  /**
+   * Corrects the cached key count for the given device if one is present and differs from the number of keys actually
+   * stored for the device. Devices without a cached count are left alone, since their counts will be loaded from the
+   * keys table the next time they're requested.
+   */
+  public void reconcileCount(final Account account, final long deviceId) {
+    RECONCILE_KEY_COUNT_TIMER.record(() -> preKeyCountCache.get(account.getUuid(), deviceId).ifPresent(cachedCount -> {
+      final int actualCount = countKeys(account.getUuid(), deviceId, true);
+
+      KEY_COUNT_DRIFT_DISTRIBUTION.record(Math.abs(cachedCount - actualCount));
+
+      if (cachedCount != actualCount) {
+        // Leave the count alone if a concurrent store or take has already changed it
+        preKeyCountCache.replace(account.getUuid(), deviceId, cachedCount, actualCount);
+      }
+    }));
+  }
+
+  private int countKeys(final UUID accountUuid, final long deviceId, final boolean consistentRead) {
+    QueryRequest queryRequest = QueryRequest.builder()
+        .tableName(tableName)
+        .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
+        .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
+        .expressionAttributeValues(Map.of(
+            ":uuid", getPartitionKey(accountUuid),
+            ":sortprefix", getSortKeyPrefix(deviceId)))
+        .select(Select.COUNT)
+        .consistentRead(consistentRead)
+        .build();
+
+    int keyCount = 0;
+    // This is very confusing, but does appear to be the intended behavior. See:
+    //
+    // - https://github.com/aws/aws-sdk-java/issues/693
+    // - https://github.com/aws/aws-sdk-java/issues/915
+    // - https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/Query.html#Query.Count
+    for (final QueryResponse page : db().queryPaginator(queryRequest)) {
+      keyCount += page.count();
+    }
+
+    return keyCount;
+  }
+
   public void delete(final Account account) {
     DELETE_KEYS_FOR_ACCOUNT_TIMER.record(() -> {
       final QueryRequest queryRequest = QueryRequest.builder()
@@ -165,6 +267,7 @@ public class KeysDynamoDb extends AbstractDynamoDbStore {
           .build();
 
       deleteItemsForAccountMatchingQuery(account, queryRequest);
+      preKeyCountCache.clear(account.getUuid());
     });
   }
 
@@ -183,6 +286,7 @@ public class KeysDynamoDb extends AbstractDynamoDbStore {
           .build();
 
       deleteItemsForAccountMatchingQuery(account, queryRequest);
+      preKeyCountCache.clear(account.getUuid(), deviceId);
     });
   }
 
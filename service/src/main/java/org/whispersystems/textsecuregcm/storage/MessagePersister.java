@@ -20,9 +20,15 @@ import org.whispersystems.textsecuregcm.util.Util;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -34,6 +40,9 @@ public class MessagePersister implements Managed {
 
     private final Duration        persistDelay;
 
+    private final ExecutorService persistQueueExecutor;
+    private final int             persistQueueConcurrency;
+
     private final    Thread[]     workerThreads = new Thread[WORKER_THREAD_COUNT];
     private volatile boolean      running;
 
@@ -44,6 +53,7 @@ public class MessagePersister implements Managed {
     private final Meter          persistQueueExceptionMeter = metricRegistry.meter(name(MessagePersister.class, "persistQueueException"));
     private final Histogram      queueCountHistogram        = metricRegistry.histogram(name(MessagePersister.class, "queueCount"));
     private final Histogram      queueSizeHistogram         = metricRegistry.histogram(name(MessagePersister.class, "queueSize"));
+    private final Histogram      concurrencyHistogram       = metricRegistry.histogram(name(MessagePersister.class, "persistQueueConcurrency"));
 
     static final int QUEUE_BATCH_LIMIT   = 100;
     static final int MESSAGE_BATCH_LIMIT = 100;
@@ -53,11 +63,13 @@ public class MessagePersister implements Managed {
 
     private static final Logger logger = LoggerFactory.getLogger(MessagePersister.class);
 
-    public MessagePersister(final MessagesCache messagesCache, final MessagesManager messagesManager, final AccountsManager accountsManager, final DynamicConfigurationManager dynamicConfigurationManager, final Duration persistDelay) {
+    public MessagePersister(final MessagesCache messagesCache, final MessagesManager messagesManager, final AccountsManager accountsManager, final DynamicConfigurationManager dynamicConfigurationManager, final Duration persistDelay, final ExecutorService persistQueueExecutor, final int persistQueueConcurrency) {
         this.messagesCache               = messagesCache;
         this.messagesManager             = messagesManager;
         this.accountsManager             = accountsManager;
         this.persistDelay                = persistDelay;
+        this.persistQueueExecutor        = persistQueueExecutor;
+        this.persistQueueConcurrency     = persistQueueConcurrency;
 
         for (int i = 0; i < workerThreads.length; i++) {
             workerThreads[i] = new Thread(() -> {
@@ -120,19 +132,7 @@ public class MessagePersister implements Managed {
                 queuesToPersist = messagesCache.getQueuesToPersist(slot, currentTime.minus(persistDelay), QUEUE_BATCH_LIMIT);
             }
 
-            for (final String queue : queuesToPersist) {
-                final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
-                final long deviceId    = MessagesCache.getDeviceIdFromQueueName(queue);
-
-                try {
-                    persistQueue(accountUuid, deviceId);
-                } catch (final Exception e) {
-                    persistQueueExceptionMeter.mark();
-                    logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, e);
-
-                    messagesCache.addQueueToPersist(accountUuid, deviceId);
-                }
-            }
+            persistQueues(queuesToPersist);
 
             queuesPersisted += queuesToPersist.size();
         } while (queuesToPersist.size() >= QUEUE_BATCH_LIMIT);
@@ -140,6 +140,55 @@ public class MessagePersister implements Managed {
         return queuesPersisted;
     }
 
+    /**
+     * Persists the given queues, overlapping the persistence of up to {@code persistQueueConcurrency} queues at a time.
+     * The calling worker persists queues itself and asks the persister executor for at most
+     * {@code min(persistQueueConcurrency, queues.size()) - 1} helper tasks. The executor is expected to hand off work
+     * directly to idle threads rather than queueing it (i.e. to use a {@link java.util.concurrent.SynchronousQueue}), so
+     * a helper task that can't start right away is rejected and its share of the queues is persisted by the calling
+     * worker instead. Because the executor's threads are shared by all workers, at most {@link #WORKER_THREAD_COUNT}
+     * plus the executor's maximum pool size queues are persisted at once across the whole persister.
+     *
+     * @param queues the names of the queues to persist
+     */
+    private void persistQueues(final List<String> queues) {
+        final int concurrency = Math.max(1, Math.min(persistQueueConcurrency, queues.size()));
+        concurrencyHistogram.update(concurrency);
+
+        final Queue<String> pendingQueues = new ConcurrentLinkedQueue<>(queues);
+        final List<CompletableFuture<Void>> persistFutures = new ArrayList<>(concurrency - 1);
+
+        for (int i = 1; i < concurrency; i++) {
+            try {
+                persistFutures.add(CompletableFuture.runAsync(() -> persistPendingQueues(pendingQueues), persistQueueExecutor));
+            } catch (final RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        persistPendingQueues(pendingQueues);
+
+        CompletableFuture.allOf(persistFutures.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void persistPendingQueues(final Queue<String> pendingQueues) {
+        String queue;
+
+        while ((queue = pendingQueues.poll()) != null) {
+            final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
+            final long deviceId    = MessagesCache.getDeviceIdFromQueueName(queue);
+
+            try {
+                persistQueue(accountUuid, deviceId);
+            } catch (final Exception e) {
+                persistQueueExceptionMeter.mark();
+                logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, e);
+
+                messagesCache.addQueueToPersist(accountUuid, deviceId);
+            }
+        }
+    }
+
     @VisibleForTesting
     void persistQueue(final UUID accountUuid, final long deviceId) {
         final Optional<Account> maybeAccount = accountsManager.get(accountUuid);
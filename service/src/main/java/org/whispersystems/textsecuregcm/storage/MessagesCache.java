@@ -26,14 +26,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -52,6 +49,7 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     private final FaultTolerantPubSubConnection<String, String> pubSubConnection;
 
     private final ExecutorService notificationExecutorService;
+    private final boolean         usePatternSubscriptions;
 
     private final ClusterLuaScript insertScript;
     private final ClusterLuaScript removeByIdScript;
@@ -61,14 +59,16 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     private final ClusterLuaScript removeQueueScript;
     private final ClusterLuaScript getQueuesToPersistScript;
 
-    private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new HashMap<>();
-    private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new IdentityHashMap<>();
+    private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new ConcurrentHashMap<>();
+    private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new ConcurrentHashMap<>();
 
     private final Timer   insertTimer                         = Metrics.timer(name(MessagesCache.class, "insert"), "ephemeral", "false");
+    private final Timer   insertBatchTimer                    = Metrics.timer(name(MessagesCache.class, "insertBatch"));
     private final Timer   insertEphemeralTimer                = Metrics.timer(name(MessagesCache.class, "insert"), "ephemeral", "true");
     private final Timer   getMessagesTimer                    = Metrics.timer(name(MessagesCache.class, "get"));
     private final Timer   getQueuesToPersistTimer             = Metrics.timer(name(MessagesCache.class, "getQueuesToPersist"));
     private final Timer   clearQueueTimer                     = Metrics.timer(name(MessagesCache.class, "clear"));
+    private final Timer   clearAccountTimer                   = Metrics.timer(name(MessagesCache.class, "clearAccount"));
     private final Timer   takeEphemeralMessageTimer           = Metrics.timer(name(MessagesCache.class, "takeEphemeral"));
     private final Counter pubSubMessageCounter                = Metrics.counter(name(MessagesCache.class, "pubSubMessage"));
     private final Counter newMessageNotificationCounter       = Metrics.counter(name(MessagesCache.class, "newMessageNotification"), "ephemeral", "false");
@@ -82,6 +82,14 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     private static final String EPHEMERAL_QUEUE_KEYSPACE_PREFIX = "__keyspace@0__:user_queue_ephemeral::";
     private static final String PERSISTING_KEYSPACE_PREFIX      = "__keyspace@0__:user_queue_persisting::";
 
+    private static final String[] KEYSPACE_PATTERNS = new String[] {
+            QUEUE_KEYSPACE_PREFIX + "*",
+            EPHEMERAL_QUEUE_KEYSPACE_PREFIX + "*",
+            PERSISTING_KEYSPACE_PREFIX + "*"
+    };
+
+    private static final int MAX_DEVICE_ID = 255;
+
     private static final Duration MAX_EPHEMERAL_MESSAGE_DELAY = Duration.ofSeconds(10);
 
     private static final String REMOVE_TIMER_NAME = name(MessagesCache.class, "remove");
@@ -93,13 +101,19 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
 
     private static final Logger logger = LoggerFactory.getLogger(MessagesCache.class);
 
-    public MessagesCache(final FaultTolerantRedisCluster insertCluster, final FaultTolerantRedisCluster readDeleteCluster, final ExecutorService notificationExecutorService) throws IOException {
+    /**
+     * @param usePatternSubscriptions if {@code true}, receive keyspace notifications for all queues through a fixed set
+     * of pattern subscriptions on every node; if {@code false}, subscribe to the keyspace channels for each queue with a
+     * connected listener
+     */
+    public MessagesCache(final FaultTolerantRedisCluster insertCluster, final FaultTolerantRedisCluster readDeleteCluster, final ExecutorService notificationExecutorService, final boolean usePatternSubscriptions) throws IOException {
 
         this.insertCluster = insertCluster;
         this.readDeleteCluster = readDeleteCluster;
         this.pubSubConnection = readDeleteCluster.createPubSubConnection();
 
         this.notificationExecutorService = notificationExecutorService;
+        this.usePatternSubscriptions     = usePatternSubscriptions;
 
         this.insertScript             = ClusterLuaScript.fromResource(insertCluster, "lua/insert_item.lua",           ScriptOutputType.INTEGER);
         this.removeByIdScript         = ClusterLuaScript.fromResource(readDeleteCluster, "lua/remove_item_by_id.lua",     ScriptOutputType.VALUE);
@@ -118,39 +132,79 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
                     .filter(event -> event instanceof ClusterTopologyChangedEvent)
                     .subscribe(event -> resubscribeAll());
         });
+
+        if (usePatternSubscriptions) {
+            subscribeForKeyspaceNotifications();
+        }
     }
 
     @Override
     public void stop() {
-        pubSubConnection.usePubSubConnection(connection -> connection.sync().upstream().commands().unsubscribe());
+        if (usePatternSubscriptions) {
+            pubSubConnection.usePubSubConnection(connection -> connection.sync().upstream().commands().punsubscribe());
+        } else {
+            pubSubConnection.usePubSubConnection(connection -> connection.sync().upstream().commands().unsubscribe());
+        }
     }
 
     private void resubscribeAll() {
-        logger.info("Got topology change event, resubscribing all keyspace notifications");
+        if (usePatternSubscriptions) {
+            logger.info("Got topology change event, resubscribing keyspace notification patterns");
+            subscribeForKeyspaceNotifications();
+        } else {
+            logger.info("Got topology change event, resubscribing all keyspace notifications");
+
+            for (final String queueName : messageListenersByQueueName.keySet()) {
+                subscribeForKeyspaceNotifications(queueName);
+            }
+        }
+    }
 
-        final Set<String> queueNames;
+    public long insert(final UUID guid, final UUID destinationUuid, final long destinationDevice, final MessageProtos.Envelope message) {
+        return (long)insertTimer.record(() ->
+                insertScript.executeBinary(getQueueKeys(destinationUuid, destinationDevice),
+                                           getInsertArgs(guid, message)));
+    }
+
+    /**
+     * Inserts a batch of messages, possibly for many different destination queues, with a single pipelined round of
+     * script invocations rather than one synchronous round trip per message. Messages bound for the same queue are
+     * inserted in the order in which they were given.
+     *
+     * @param insertions the messages to insert
+     *
+     * @return the ID assigned to each message, in the same order as the given insertions
+     */
+    public List<Long> insert(final List<Insertion> insertions) {
+        return insertBatchTimer.record(() -> {
+            final List<List<byte[]>> keys = new ArrayList<>(insertions.size());
+            final List<List<byte[]>> args = new ArrayList<>(insertions.size());
+
+            for (final Insertion insertion : insertions) {
+                keys.add(getQueueKeys(insertion.getDestinationUuid(), insertion.getDestinationDevice()));
+                args.add(getInsertArgs(insertion.getGuid(), insertion.getMessage()));
+            }
 
-        synchronized (messageListenersByQueueName) {
-            queueNames = new HashSet<>(messageListenersByQueueName.keySet());
-        }
+            return insertScript.executeBinaryBatch(keys, args).stream()
+                    .map(messageId -> (Long)messageId)
+                    .collect(Collectors.toList());
+        });
+    }
 
-        for (final String queueName : queueNames) {
-            subscribeForKeyspaceNotifications(queueName);
-        }
+    private static List<byte[]> getQueueKeys(final UUID destinationUuid, final long destinationDevice) {
+        return List.of(getMessageQueueKey(destinationUuid, destinationDevice),
+                       getMessageQueueMetadataKey(destinationUuid, destinationDevice),
+                       getQueueIndexKey(destinationUuid, destinationDevice));
     }
 
-    public long insert(final UUID guid, final UUID destinationUuid, final long destinationDevice, final MessageProtos.Envelope message) {
+    private static List<byte[]> getInsertArgs(final UUID guid, final MessageProtos.Envelope message) {
         final MessageProtos.Envelope messageWithGuid = message.toBuilder().setServerGuid(guid.toString()).build();
         final String                 sender          = message.hasSource() ? (message.getSource() + "::" + message.getTimestamp()) : "nil";
 
-        return (long)insertTimer.record(() ->
-                insertScript.executeBinary(List.of(getMessageQueueKey(destinationUuid, destinationDevice),
-                                                   getMessageQueueMetadataKey(destinationUuid, destinationDevice),
-                                                   getQueueIndexKey(destinationUuid, destinationDevice)),
-                                           List.of(messageWithGuid.toByteArray(),
-                                                   String.valueOf(message.getTimestamp()).getBytes(StandardCharsets.UTF_8),
-                                                   sender.getBytes(StandardCharsets.UTF_8),
-                                                   guid.toString().getBytes(StandardCharsets.UTF_8))));
+        return List.of(messageWithGuid.toByteArray(),
+                       String.valueOf(message.getTimestamp()).getBytes(StandardCharsets.UTF_8),
+                       sender.getBytes(StandardCharsets.UTF_8),
+                       guid.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     public void insertEphemeral(final UUID destinationUuid, final long destinationDevice, final MessageProtos.Envelope message) {
@@ -305,21 +359,33 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
         }));
     }
 
+    /**
+     * Removes the message queues for all possible devices of the given account. Because each device's queue lives in
+     * its own hash slot, the queues can't be removed by a single script; instead, the removal script for every device ID
+     * is dispatched at once and pipelined, which costs a single round of replies rather than one round trip per device.
+     *
+     * @param destinationUuid the account for which to clear all message queues
+     */
     public void clear(final UUID destinationUuid) {
         // TODO Remove null check in a fully UUID-based world
         if (destinationUuid != null) {
-            for (int i = 1; i < 256; i++) {
-                clear(destinationUuid, i);
-            }
+            clearAccountTimer.record(() -> {
+                final List<List<byte[]>> keys = new ArrayList<>(MAX_DEVICE_ID);
+                final List<List<byte[]>> args = new ArrayList<>(MAX_DEVICE_ID);
+
+                for (int deviceId = 1; deviceId <= MAX_DEVICE_ID; deviceId++) {
+                    keys.add(getQueueKeys(destinationUuid, deviceId));
+                    args.add(Collections.emptyList());
+                }
+
+                removeQueueScript.executeBinaryBatch(keys, args);
+            });
         }
     }
 
     public void clear(final UUID destinationUuid, final long deviceId) {
         clearQueueTimer.record(() ->
-                removeQueueScript.executeBinary(List.of(getMessageQueueKey(destinationUuid, deviceId),
-                                                        getMessageQueueMetadataKey(destinationUuid, deviceId),
-                                                        getQueueIndexKey(destinationUuid, deviceId)),
-                                                Collections.emptyList()));
+                removeQueueScript.executeBinary(getQueueKeys(destinationUuid, deviceId), Collections.emptyList()));
     }
 
     int getNextSlotToPersist() {
@@ -348,26 +414,39 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     public void addMessageAvailabilityListener(final UUID destinationUuid, final long deviceId, final MessageAvailabilityListener listener) {
         final String queueName = getQueueName(destinationUuid, deviceId);
 
-        synchronized (messageListenersByQueueName) {
-            messageListenersByQueueName.put(queueName, listener);
-            queueNamesByMessageListener.put(listener, queueName);
-        }
+        messageListenersByQueueName.put(queueName, listener);
+        queueNamesByMessageListener.put(listener, queueName);
 
-        subscribeForKeyspaceNotifications(queueName);
+        if (!usePatternSubscriptions) {
+            subscribeForKeyspaceNotifications(queueName);
+        }
     }
 
     public void removeMessageAvailabilityListener(final MessageAvailabilityListener listener) {
         final String queueName = queueNamesByMessageListener.remove(listener);
 
-        unsubscribeFromKeyspaceNotifications(queueName);
+        if (queueName != null && messageListenersByQueueName.remove(queueName, listener) && !usePatternSubscriptions) {
+            unsubscribeFromKeyspaceNotifications(queueName);
 
-        synchronized (messageListenersByQueueName) {
-            if (queueName != null) {
-                messageListenersByQueueName.remove(queueName);
+            // A replacement listener may have subscribed between removing this listener and unsubscribing
+            if (messageListenersByQueueName.containsKey(queueName)) {
+                subscribeForKeyspaceNotifications(queueName);
             }
         }
     }
 
+    /**
+     * Subscribes to keyspace notifications for all message queues on every upstream node. Rather than subscribing to
+     * the channels for each queue with a connected listener, this server receives notifications for all queues and
+     * dispatches them locally to any registered listener, so the number of subscriptions (and the work needed to
+     * restore them after a topology change) doesn't depend on the number of connected clients.
+     */
+    private void subscribeForKeyspaceNotifications() {
+        pubSubConnection.usePubSubConnection(connection -> connection.sync().upstream()
+                                                                     .commands()
+                                                                     .psubscribe(KEYSPACE_PATTERNS));
+    }
+
     private void subscribeForKeyspaceNotifications(final String queueName) {
         final int slot = SlotHash.getSlot(queueName);
 
@@ -390,28 +469,29 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
         };
     }
 
+    @Override
+    public void message(final RedisClusterNode node, final String pattern, final String channel, final String message) {
+        message(node, channel, message);
+    }
+
     @Override
     public void message(final RedisClusterNode node, final String channel, final String message) {
         pubSubMessageCounter.increment();
 
         if (channel.startsWith(QUEUE_KEYSPACE_PREFIX) && "zadd".equals(message)) {
             newMessageNotificationCounter.increment();
-            notificationExecutorService.execute(() -> findListener(channel).ifPresent(MessageAvailabilityListener::handleNewMessagesAvailable));
+            findListener(channel).ifPresent(listener -> notificationExecutorService.execute(listener::handleNewMessagesAvailable));
         } else if (channel.startsWith(EPHEMERAL_QUEUE_KEYSPACE_PREFIX) && "rpush".equals(message)) {
             ephemeralMessageNotificationCounter.increment();
-            notificationExecutorService.execute(() -> findListener(channel).ifPresent(MessageAvailabilityListener::handleNewEphemeralMessageAvailable));
+            findListener(channel).ifPresent(listener -> notificationExecutorService.execute(listener::handleNewEphemeralMessageAvailable));
         } else if (channel.startsWith(PERSISTING_KEYSPACE_PREFIX) && "del".equals(message)) {
             queuePersistedNotificationCounter.increment();
-            notificationExecutorService.execute(() -> findListener(channel).ifPresent(MessageAvailabilityListener::handleMessagesPersisted));
+            findListener(channel).ifPresent(listener -> notificationExecutorService.execute(listener::handleMessagesPersisted));
         }
     }
 
     private Optional<MessageAvailabilityListener> findListener(final String keyspaceChannel) {
-        final String queueName = getQueueNameFromKeyspaceChannel(keyspaceChannel);
-
-        synchronized (messageListenersByQueueName) {
-            return Optional.ofNullable(messageListenersByQueueName.get(queueName));
-        }
+        return Optional.ofNullable(messageListenersByQueueName.get(getQueueNameFromKeyspaceChannel(keyspaceChannel)));
     }
 
     @VisibleForTesting
@@ -476,4 +556,40 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     static long getDeviceIdFromQueueName(final String queueName) {
         return Long.parseLong(queueName.substring(queueName.lastIndexOf("::") + 2, queueName.lastIndexOf('}')));
     }
+
+    /**
+     * A single message to be inserted as part of a batch insertion.
+     *
+     * @see #insert(List)
+     */
+    public static class Insertion {
+
+        private final UUID                   guid;
+        private final UUID                   destinationUuid;
+        private final long                   destinationDevice;
+        private final MessageProtos.Envelope message;
+
+        public Insertion(final UUID guid, final UUID destinationUuid, final long destinationDevice, final MessageProtos.Envelope message) {
+            this.guid              = guid;
+            this.destinationUuid   = destinationUuid;
+            this.destinationDevice = destinationDevice;
+            this.message           = message;
+        }
+
+        public UUID getGuid() {
+            return guid;
+        }
+
+        public UUID getDestinationUuid() {
+            return destinationUuid;
+        }
+
+        public long getDestinationDevice() {
+            return destinationDevice;
+        }
+
+        public MessageProtos.Envelope getMessage() {
+            return message;
+        }
+    }
 }
@@ -55,6 +55,7 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   private final Timer loadTimer = timer(name(getClass(), "load"));
   private final Timer deleteBySourceAndTimestamp = timer(name(getClass(), "delete", "sourceAndTimestamp"));
   private final Timer deleteByGuid = timer(name(getClass(), "delete", "guid"));
+  private final Timer deleteBatch = timer(name(getClass(), "delete", "batch"));
   private final Timer deleteByAccount = timer(name(getClass(), "delete", "account"));
   private final Timer deleteByDevice = timer(name(getClass(), "delete", "device"));
 
@@ -187,6 +188,29 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     });
   }
 
+  /**
+   * Deletes the given messages with batched writes. Unlike {@link #deleteMessageByDestinationAndGuid}, this doesn't
+   * need to query the message UUID index, since each message's primary key can be derived from its server timestamp and
+   * GUID; messages that are not present are ignored.
+   */
+  public void deleteMessages(final UUID destinationAccountUuid, final long destinationDeviceId, final List<OutgoingMessageEntity> messages) {
+    deleteBatch.record(() -> {
+      final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
+
+      writeInBatches(messages, messageBatch -> {
+        final List<WriteRequest> deletes = messageBatch.stream()
+            .map(message -> WriteRequest.builder()
+                .deleteRequest(DeleteRequest.builder().key(Map.of(
+                    KEY_PARTITION, partitionKey,
+                    KEY_SORT, convertSortKey(destinationDeviceId, message.getServerTimestamp(), message.getGuid()))).build())
+                .build())
+            .collect(Collectors.toList());
+
+        executeTableWriteItemsUntilComplete(Map.of(tableName, deletes));
+      });
+    });
+  }
+
   @Nonnull
   private Optional<OutgoingMessageEntity> deleteItemsMatchingQueryAndReturnFirstOneActuallyDeleted(AttributeValue partitionKey, QueryRequest queryRequest) {
     Optional<OutgoingMessageEntity> result = Optional.empty();
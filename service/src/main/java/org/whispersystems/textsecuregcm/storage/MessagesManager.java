@@ -12,6 +12,7 @@ import com.codahale.metrics.SharedMetricRegistries;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
@@ -57,6 +58,25 @@ public class MessagesManager {
     }
   }
 
+  /**
+   * Inserts messages for many destination devices with a single pipelined round trip to the message cache.
+   *
+   * @param insertions the messages to insert, each with a freshly-generated GUID
+   *
+   * @see MessagesCache#insert(List)
+   */
+  public void insert(final List<MessagesCache.Insertion> insertions) {
+    messagesCache.insert(insertions);
+
+    for (final MessagesCache.Insertion insertion : insertions) {
+      final Envelope message = insertion.getMessage();
+
+      if (message.hasSource() && !insertion.getDestinationUuid().toString().equals(message.getSourceUuid())) {
+        reportMessageManager.store(message.getSource(), insertion.getGuid());
+      }
+    }
+  }
+
   public void insertEphemeral(final UUID destinationUuid, final long destinationDevice, final Envelope message) {
     messagesCache.insertEphemeral(destinationUuid, destinationDevice, message);
   }
@@ -122,6 +142,33 @@ public class MessagesManager {
     return removed;
   }
 
+  /**
+   * Deletes a batch of acknowledged messages, removing them from the cache with a single script call and deleting any
+   * that weren't cached from DynamoDB with batched writes.
+   */
+  public void delete(UUID destinationUuid, long destinationDeviceId, List<OutgoingMessageEntity> messages) {
+    if (messages.isEmpty()) {
+      return;
+    }
+
+    final Set<UUID> removedFromCache = messagesCache.remove(destinationUuid, destinationDeviceId,
+        messages.stream().map(OutgoingMessageEntity::getGuid).collect(Collectors.toList()))
+        .stream()
+        .map(OutgoingMessageEntity::getGuid)
+        .collect(Collectors.toSet());
+
+    final List<OutgoingMessageEntity> uncachedMessages = messages.stream()
+        .filter(message -> !removedFromCache.contains(message.getGuid()))
+        .collect(Collectors.toList());
+
+    cacheHitByGuidMeter.mark(messages.size() - uncachedMessages.size());
+
+    if (!uncachedMessages.isEmpty()) {
+      messagesDynamoDb.deleteMessages(destinationUuid, destinationDeviceId, uncachedMessages);
+      cacheMissByGuidMeter.mark(uncachedMessages.size());
+    }
+  }
+
   public void persistMessages(
       final UUID destinationUuid,
       final long destinationDeviceId,
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+
+/**
+ * Caches the number of one-time pre-keys remaining for each of an account's devices so that clients checking their key
+ * counts don't need to count keys in the keys table. Counts are set when keys are stored, decremented when keys are
+ * taken, and expire after a fixed period; they may drift from the true count under concurrent modification, and so are
+ * periodically corrected by {@link PreKeyCountReconciler}.
+ */
+public class PreKeyCountCache {
+
+  private final FaultTolerantRedisCluster cacheCluster;
+  private final ClusterLuaScript          decrementScript;
+  private final ClusterLuaScript          setIfAbsentScript;
+  private final ClusterLuaScript          replaceScript;
+
+  @VisibleForTesting
+  static final Duration COUNT_TTL = Duration.ofDays(1);
+
+  private static final Counter HIT_COUNTER  = Metrics.counter(name(PreKeyCountCache.class, "hit"));
+  private static final Counter MISS_COUNTER = Metrics.counter(name(PreKeyCountCache.class, "miss"));
+
+  private static final Logger log = LoggerFactory.getLogger(PreKeyCountCache.class);
+
+  public PreKeyCountCache(final FaultTolerantRedisCluster cacheCluster) throws IOException {
+    this.cacheCluster      = cacheCluster;
+    this.decrementScript   = ClusterLuaScript.fromResource(cacheCluster, "lua/prekey_count/decrement.lua", ScriptOutputType.INTEGER);
+    this.setIfAbsentScript = ClusterLuaScript.fromResource(cacheCluster, "lua/prekey_count/set_if_absent.lua", ScriptOutputType.INTEGER);
+    this.replaceScript     = ClusterLuaScript.fromResource(cacheCluster, "lua/prekey_count/replace.lua", ScriptOutputType.INTEGER);
+  }
+
+  public Optional<Integer> get(final UUID accountUuid, final long deviceId) {
+    try {
+      final String count = cacheCluster.withCluster(connection ->
+          connection.sync().hget(getCountsKey(accountUuid), String.valueOf(deviceId)));
+
+      if (count != null && Integer.parseInt(count) >= 0) {
+        HIT_COUNTER.increment();
+        return Optional.of(Integer.parseInt(count));
+      }
+    } catch (final RedisException | NumberFormatException e) {
+      log.warn("Failed to retrieve cached pre-key count", e);
+    }
+
+    MISS_COUNTER.increment();
+    return Optional.empty();
+  }
+
+  public void set(final UUID accountUuid, final long deviceId, final int count) {
+    try {
+      cacheCluster.useCluster(connection -> {
+        final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
+        final String countsKey = getCountsKey(accountUuid);
+
+        commands.hset(countsKey, String.valueOf(deviceId), String.valueOf(count));
+        commands.expire(countsKey, COUNT_TTL.toSeconds());
+      });
+    } catch (final RedisException e) {
+      log.warn("Failed to cache pre-key count", e);
+    }
+  }
+
+  /**
+   * Caches the given count only if no usable count is already cached for the given device. Counts loaded from the keys
+   * table after a cache miss should be cached this way so that they don't overwrite a count set or adjusted by a
+   * concurrent store or take.
+   */
+  public void setIfAbsent(final UUID accountUuid, final long deviceId, final int count) {
+    try {
+      setIfAbsentScript.execute(List.of(getCountsKey(accountUuid)),
+          List.of(String.valueOf(deviceId), String.valueOf(count), String.valueOf(COUNT_TTL.toSeconds())));
+    } catch (final RedisException e) {
+      log.warn("Failed to cache pre-key count", e);
+    }
+  }
+
+  /**
+   * Replaces the cached count for the given device only if it still has the given expected value.
+   */
+  public void replace(final UUID accountUuid, final long deviceId, final int expectedCount, final int count) {
+    try {
+      replaceScript.execute(List.of(getCountsKey(accountUuid)),
+          List.of(String.valueOf(deviceId), String.valueOf(expectedCount), String.valueOf(count), String.valueOf(COUNT_TTL.toSeconds())));
+    } catch (final RedisException e) {
+      log.warn("Failed to replace cached pre-key count", e);
+    }
+  }
+
+  public void decrement(final UUID accountUuid, final long deviceId) {
+    try {
+      decrementScript.execute(List.of(getCountsKey(accountUuid)), List.of(String.valueOf(deviceId)));
+    } catch (final RedisException e) {
+      log.warn("Failed to decrement cached pre-key count", e);
+    }
+  }
+
+  public void clear(final UUID accountUuid, final long deviceId) {
+    try {
+      cacheCluster.useCluster(connection -> connection.sync().hdel(getCountsKey(accountUuid), String.valueOf(deviceId)));
+    } catch (final RedisException e) {
+      log.warn("Failed to clear cached pre-key count", e);
+    }
+  }
+
+  public void clear(final UUID accountUuid) {
+    try {
+      cacheCluster.useCluster(connection -> connection.sync().del(getCountsKey(accountUuid)));
+    } catch (final RedisException e) {
+      log.warn("Failed to clear cached pre-key counts", e);
+    }
+  }
+
+  @VisibleForTesting
+  static String getCountsKey(final UUID accountUuid) {
+    return "prekey_counts::{" + accountUuid + "}";
+  }
+}
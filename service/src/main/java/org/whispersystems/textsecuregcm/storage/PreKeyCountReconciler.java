@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Corrects drift between cached pre-key counts and the number of keys actually stored for each device.
+ *
+ * @see PreKeyCountCache
+ */
+public class PreKeyCountReconciler extends AccountDatabaseCrawlerListener {
+
+  private final KeysDynamoDb keysDynamoDb;
+
+  private static final Logger log = LoggerFactory.getLogger(PreKeyCountReconciler.class);
+
+  public PreKeyCountReconciler(final KeysDynamoDb keysDynamoDb) {
+    this.keysDynamoDb = keysDynamoDb;
+  }
+
+  @Override
+  public void onCrawlStart() {
+  }
+
+  @Override
+  public void onCrawlEnd(final Optional<UUID> fromUuid) {
+  }
+
+  @Override
+  protected void onCrawlChunk(final Optional<UUID> fromUuid, final List<Account> chunkAccounts) {
+    for (final Account account : chunkAccounts) {
+      for (final Device device : account.getDevices()) {
+        try {
+          keysDynamoDb.reconcileCount(account, device.getId());
+        } catch (final Exception e) {
+          log.warn("Failed to reconcile pre-key count for {}.{}", account.getUuid(), device.getId(), e);
+        }
+      }
+    }
+  }
+}
@@ -10,46 +10,38 @@ import java.io.IOException;
 import java.io.Reader;
 import java.net.Inet4Address;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.stream.IntStream;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 /**
  * Allows IP->ASN lookup operations using data from https://iptoasn.com/.
+ * <p>
+ * Ranges are stored in parallel arrays sorted by the first address in each range; addresses and ASNs are both unsigned
+ * 32-bit values, and are stored in {@code int} arrays and compared as unsigned integers.
  */
 class AsnTable {
-  private final NavigableMap<Long, AsnRange> asnBlocksByFirstIp = new TreeMap<>();
-  private final Map<Long, String> countryCodesByAsn = new HashMap<>();
-
-  private static class AsnRange {
-    private final long rangeStart;
-    private final long rangeEnd;
-
-    private final long asn;
-
-    private AsnRange(long rangeStart, long rangeEnd, long asn) {
-      this.rangeStart = rangeStart;
-      this.rangeEnd = rangeEnd;
-      this.asn = asn;
-    }
-
-    boolean contains(final long address) {
-      return address >= rangeStart && address <= rangeEnd;
-    }
+  private final int[] rangeStarts;
+  private final int[] rangeEnds;
+  private final int[] asns;
 
-    long getAsn() {
-      return asn;
-    }
-  }
+  private final Map<Long, String> countryCodesByAsn = new HashMap<>();
 
   public static final AsnTable EMPTY = new AsnTable();
 
   public AsnTable(final Reader tsvReader) throws IOException {
+    int[] starts = new int[1024];
+    int[] ends = new int[1024];
+    int[] asns = new int[1024];
+    int rangeCount = 0;
+    boolean sorted = true;
+
     try (final CSVParser csvParser = CSVFormat.TDF.parse(tsvReader)) {
       for (final CSVRecord record : csvParser) {
         final long start = Long.parseLong(record.get(0), 10);
@@ -57,22 +49,100 @@ class AsnTable {
         final long asn = Long.parseLong(record.get(2), 10);
         final String countryCode = record.get(3);
 
-        asnBlocksByFirstIp.put(start, new AsnRange(start, end, asn));
+        if (rangeCount == starts.length) {
+          starts = Arrays.copyOf(starts, rangeCount * 2);
+          ends = Arrays.copyOf(ends, rangeCount * 2);
+          asns = Arrays.copyOf(asns, rangeCount * 2);
+        }
+
+        starts[rangeCount] = (int) start;
+        ends[rangeCount] = (int) end;
+        asns[rangeCount] = (int) asn;
+
+        if (rangeCount > 0 && Integer.compareUnsigned(starts[rangeCount - 1], starts[rangeCount]) >= 0) {
+          sorted = false;
+        }
+
+        rangeCount++;
         countryCodesByAsn.put(asn, countryCode);
       }
     }
+
+    if (sorted) {
+      this.rangeStarts = Arrays.copyOf(starts, rangeCount);
+      this.rangeEnds = Arrays.copyOf(ends, rangeCount);
+      this.asns = Arrays.copyOf(asns, rangeCount);
+    } else {
+      // The published data set is sorted, but if it isn't, sort it here; as with a map keyed by range start, later
+      // ranges replace earlier ranges with the same start.
+      final int[] finalStarts = starts;
+      final int[] order = IntStream.range(0, rangeCount)
+          .boxed()
+          .sorted(Comparator.<Integer>comparingInt(i -> finalStarts[i] ^ Integer.MIN_VALUE).thenComparing(Comparator.reverseOrder()))
+          .mapToInt(Integer::intValue)
+          .toArray();
+
+      final int[] sortedStarts = new int[rangeCount];
+      final int[] sortedEnds = new int[rangeCount];
+      final int[] sortedAsns = new int[rangeCount];
+      int distinctCount = 0;
+
+      for (final int index : order) {
+        if (distinctCount > 0 && sortedStarts[distinctCount - 1] == starts[index]) {
+          continue;
+        }
+
+        sortedStarts[distinctCount] = starts[index];
+        sortedEnds[distinctCount] = ends[index];
+        sortedAsns[distinctCount] = asns[index];
+        distinctCount++;
+      }
+
+      this.rangeStarts = Arrays.copyOf(sortedStarts, distinctCount);
+      this.rangeEnds = Arrays.copyOf(sortedEnds, distinctCount);
+      this.asns = Arrays.copyOf(sortedAsns, distinctCount);
+    }
   }
 
   private AsnTable() {
+    this.rangeStarts = new int[0];
+    this.rangeEnds = new int[0];
+    this.asns = new int[0];
   }
 
   public Optional<Long> getAsn(final Inet4Address address) {
-    final long addressAsLong = ipToLong(address);
+    final int addressAsInt = (int) ipToLong(address);
+    final int index = floorIndex(addressAsInt);
+
+    if (index >= 0 && Integer.compareUnsigned(addressAsInt, rangeEnds[index]) <= 0 && asns[index] != 0) {
+      return Optional.of(Integer.toUnsignedLong(asns[index]));
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the index of the range with the greatest start address less than or equal to the given address, or -1 if
+   * no such range exists.
+   */
+  private int floorIndex(final int address) {
+    int low = 0;
+    int high = rangeStarts.length - 1;
+
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int comparison = Integer.compareUnsigned(rangeStarts[mid], address);
+
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
 
-    return Optional.ofNullable(asnBlocksByFirstIp.floorEntry(addressAsLong))
-        .filter(entry -> entry.getValue().contains(addressAsLong))
-        .map(entry -> entry.getValue().getAsn())
-        .filter(asn -> asn != 0);
+    return high;
   }
 
   public Optional<String> getCountryCode(final long asn) {
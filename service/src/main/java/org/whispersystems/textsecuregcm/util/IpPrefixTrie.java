@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.util;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable binary trie that maps IPv4 and IPv6 network prefixes to values. Nodes are stored in parallel primitive
+ * arrays, so walking the trie for a lookup doesn't allocate; lookups return the values of every prefix that contains
+ * the given address, from least to most specific.
+ *
+ * @param <T> the type of value associated with each prefix
+ */
+public class IpPrefixTrie<T> {
+
+  private final PrefixTree<T> ipv4Tree;
+  private final PrefixTree<T> ipv6Tree;
+
+  private IpPrefixTrie(final PrefixTree<T> ipv4Tree, final PrefixTree<T> ipv6Tree) {
+    this.ipv4Tree = ipv4Tree;
+    this.ipv6Tree = ipv6Tree;
+  }
+
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Returns the values of all prefixes that contain the given address. IPv4 prefixes only match IPv4 addresses, and
+   * IPv6 prefixes only match IPv6 addresses.
+   *
+   * @param address the address to look up
+   *
+   * @return the values of all prefixes containing the given address; the returned list may not be modified
+   */
+  public List<T> get(final InetAddress address) {
+    return (address instanceof Inet4Address ? ipv4Tree : ipv6Tree).get(address.getAddress());
+  }
+
+  public static class Builder<T> {
+
+    private final PrefixTree<T> ipv4Tree = new PrefixTree<>(32);
+    private final PrefixTree<T> ipv6Tree = new PrefixTree<>(128);
+
+    private Builder() {
+    }
+
+    /**
+     * Associates a value with the given network prefix. Bits of the network address beyond the prefix length are
+     * ignored.
+     *
+     * @param network the network address
+     * @param prefixLength the number of leading bits of the network address that identify the network
+     * @param value the value to associate with the prefix
+     *
+     * @return this builder
+     *
+     * @throws IllegalArgumentException if the prefix length is negative or longer than the network address
+     */
+    public Builder<T> add(final InetAddress network, final int prefixLength, final T value) {
+      (network instanceof Inet4Address ? ipv4Tree : ipv6Tree).add(network.getAddress(), prefixLength, value);
+      return this;
+    }
+
+    public IpPrefixTrie<T> build() {
+      return new IpPrefixTrie<>(ipv4Tree.copy(), ipv6Tree.copy());
+    }
+  }
+
+  private static class PrefixTree<T> {
+
+    private static final int NO_VALUE = -1;
+
+    private final int addressBits;
+
+    // The children of node n are stored at children[2n] (for a zero bit) and children[2n + 1] (for a one bit). The root
+    // is node 0 and is never anyone's child, so a child index of 0 means there is no child.
+    private int[] children;
+    private int[] valueIndexes;
+    private int   nodeCount;
+
+    private final List<List<T>> values;
+
+    private PrefixTree(final int addressBits) {
+      this.addressBits  = addressBits;
+      this.children     = new int[32];
+      this.valueIndexes = new int[16];
+      this.values       = new ArrayList<>();
+
+      Arrays.fill(valueIndexes, NO_VALUE);
+      nodeCount = 1;
+    }
+
+    private PrefixTree(final PrefixTree<T> source) {
+      this.addressBits  = source.addressBits;
+      this.children     = Arrays.copyOf(source.children, source.nodeCount * 2);
+      this.valueIndexes = Arrays.copyOf(source.valueIndexes, source.nodeCount);
+      this.nodeCount    = source.nodeCount;
+      this.values       = new ArrayList<>(source.values.size());
+
+      for (final List<T> nodeValues : source.values) {
+        values.add(Collections.unmodifiableList(new ArrayList<>(nodeValues)));
+      }
+    }
+
+    private PrefixTree<T> copy() {
+      return new PrefixTree<>(this);
+    }
+
+    private void add(final byte[] address, final int prefixLength, final T value) {
+      if (prefixLength < 0 || prefixLength > addressBits) {
+        throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+      }
+
+      int node = 0;
+
+      for (int bit = 0; bit < prefixLength; bit++) {
+        final int childSlot = (node << 1) | getBit(address, bit);
+
+        if (children[childSlot] == 0) {
+          // Allocation may replace the children array, so it must happen before we resolve the array to write to
+          final int child = allocateNode();
+          children[childSlot] = child;
+        }
+
+        node = children[childSlot];
+      }
+
+      if (valueIndexes[node] == NO_VALUE) {
+        valueIndexes[node] = values.size();
+        values.add(new ArrayList<>());
+      }
+
+      values.get(valueIndexes[node]).add(value);
+    }
+
+    private int allocateNode() {
+      if (nodeCount == valueIndexes.length) {
+        final int previousCapacity = valueIndexes.length;
+
+        children     = Arrays.copyOf(children, children.length * 2);
+        valueIndexes = Arrays.copyOf(valueIndexes, valueIndexes.length * 2);
+
+        Arrays.fill(valueIndexes, previousCapacity, valueIndexes.length, NO_VALUE);
+      }
+
+      return nodeCount++;
+    }
+
+    private List<T> get(final byte[] address) {
+      List<T> matches = Collections.emptyList();
+      boolean copied  = false;
+
+      int node = 0;
+
+      for (int bit = 0; ; bit++) {
+        if (valueIndexes[node] != NO_VALUE) {
+          final List<T> nodeValues = values.get(valueIndexes[node]);
+
+          if (matches.isEmpty()) {
+            matches = nodeValues;
+          } else {
+            // Only allocate in the (rare) case that more than one prefix contains the address
+            if (!copied) {
+              matches = new ArrayList<>(matches);
+              copied  = true;
+            }
+
+            matches.addAll(nodeValues);
+          }
+        }
+
+        if (bit == addressBits) {
+          break;
+        }
+
+        node = children[(node << 1) | getBit(address, bit)];
+
+        if (node == 0) {
+          break;
+        }
+      }
+
+      return copied ? Collections.unmodifiableList(matches) : matches;
+    }
+
+    private static int getBit(final byte[] address, final int bit) {
+      return (address[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hierarchical timer wheel that tracks deadlines for a set of keys. Scheduling, rescheduling, and cancelling a key
+ * take constant time regardless of how many keys are scheduled; callers periodically {@link #advance(long)} the wheel
+ * to collect the keys whose deadlines have passed.
+ * <p/>
+ * Each level of the wheel has 256 slots. Slots on the lowest level span one tick, and slots on each higher level span
+ * all the slots of the level below it. Keys are placed on the lowest level that can hold their deadline and move to
+ * lower levels as the wheel turns, so a key is moved at most once per level before it expires. Deadlines are rounded
+ * down to the nearest tick.
+ * <p/>
+ * Timer wheels are thread-safe.
+ *
+ * @param <K> the type of key being scheduled
+ */
+public class TimerWheel<K> {
+
+  private static final int SLOT_BITS       = 8;
+  private static final int SLOTS_PER_LEVEL = 1 << SLOT_BITS;
+  private static final int SLOT_MASK       = SLOTS_PER_LEVEL - 1;
+  private static final int LEVELS          = 4;
+
+  private final long tickMillis;
+
+  private final List<List<ArrayDeque<Timer<K>>>> levels      = new ArrayList<>(LEVELS);
+  private final Map<K, Timer<K>>                  timersByKey = new HashMap<>();
+
+  private long currentTick;
+
+  private static class Timer<K> {
+
+    private final K    key;
+    private final long deadlineMillis;
+    private final long deadlineTick;
+
+    private boolean cancelled;
+
+    private Timer(final K key, final long deadlineMillis, final long deadlineTick) {
+      this.key            = key;
+      this.deadlineMillis = deadlineMillis;
+      this.deadlineTick   = deadlineTick;
+    }
+  }
+
+  /**
+   * A key whose deadline has passed.
+   *
+   * @param <K> the type of key
+   */
+  public static class Expiration<K> {
+
+    private final K    key;
+    private final long deadlineMillis;
+
+    private Expiration(final K key, final long deadlineMillis) {
+      this.key            = key;
+      this.deadlineMillis = deadlineMillis;
+    }
+
+    public K getKey() {
+      return key;
+    }
+
+    /**
+     * @return the deadline for which the key was scheduled, as it was given to {@link #schedule(Object, long)}
+     */
+    public long getDeadlineMillis() {
+      return deadlineMillis;
+    }
+  }
+
+  /**
+   * Constructs a new timer wheel.
+   *
+   * @param tickMillis the resolution of the wheel, in milliseconds
+   * @param startMillis the current time, in milliseconds
+   */
+  public TimerWheel(final long tickMillis, final long startMillis) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick must be positive");
+    }
+
+    this.tickMillis  = tickMillis;
+    this.currentTick = startMillis / tickMillis;
+
+    for (int level = 0; level < LEVELS; level++) {
+      final List<ArrayDeque<Timer<K>>> slots = new ArrayList<>(SLOTS_PER_LEVEL);
+
+      for (int slot = 0; slot < SLOTS_PER_LEVEL; slot++) {
+        slots.add(new ArrayDeque<>());
+      }
+
+      levels.add(slots);
+    }
+  }
+
+  /**
+   * Schedules the given key to expire at the given time, replacing any deadline previously scheduled for the key. Keys
+   * scheduled for the current tick or earlier expire on the next call to {@link #advance(long)}.
+   *
+   * @param key the key to schedule
+   * @param deadlineMillis the time at which the key should expire
+   */
+  public synchronized void schedule(final K key, final long deadlineMillis) {
+    final Timer<K> timer    = new Timer<>(key, deadlineMillis, deadlineMillis / tickMillis);
+    final Timer<K> previous = timersByKey.put(key, timer);
+
+    if (previous != null) {
+      previous.cancelled = true;
+    }
+
+    place(timer);
+  }
+
+  /**
+   * Cancels the deadline for the given key, if any.
+   *
+   * @return {@code true} if the key was scheduled or {@code false} otherwise
+   */
+  public synchronized boolean cancel(final K key) {
+    final Timer<K> timer = timersByKey.remove(key);
+
+    if (timer != null) {
+      timer.cancelled = true;
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Turns the wheel to the given time and returns all keys whose deadlines have passed, in approximate deadline order.
+   * Expired keys are no longer scheduled.
+   *
+   * @param nowMillis the current time, in milliseconds
+   *
+   * @return the keys that have expired since the last call to this method
+   */
+  public synchronized List<Expiration<K>> advance(final long nowMillis) {
+    final long targetTick = nowMillis / tickMillis;
+
+    final List<Expiration<K>> expirations = new ArrayList<>();
+
+    // Keys scheduled at or before the current tick are waiting in the current tick's slot
+    expire(levels.get(0).get((int) (currentTick & SLOT_MASK)), expirations);
+
+    while (currentTick < targetTick) {
+      currentTick++;
+
+      // Cascade from the highest level down so that keys moving more than one level land in slots that haven't been
+      // visited yet this tick
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((currentTick & ((1L << (level * SLOT_BITS)) - 1)) == 0) {
+          cascade(levels.get(level).get((int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK)));
+        }
+      }
+
+      expire(levels.get(0).get((int) (currentTick & SLOT_MASK)), expirations);
+    }
+
+    return expirations;
+  }
+
+  /**
+   * @return the number of keys currently scheduled
+   */
+  public synchronized int size() {
+    return timersByKey.size();
+  }
+
+  private void place(final Timer<K> timer) {
+    if (timer.deadlineTick <= currentTick) {
+      levels.get(0).get((int) (currentTick & SLOT_MASK)).add(timer);
+      return;
+    }
+
+    for (int level = 0; level < LEVELS; level++) {
+      final int  shift = level * SLOT_BITS;
+      final long delta = (timer.deadlineTick >>> shift) - (currentTick >>> shift);
+
+      if (delta < SLOTS_PER_LEVEL) {
+        levels.get(level).get((int) ((timer.deadlineTick >>> shift) & SLOT_MASK)).add(timer);
+        return;
+      }
+    }
+
+    // The deadline is beyond the range of the wheel; park the timer in the farthest slot of the highest level, from
+    // which it will be placed again when the wheel gets there
+    final int shift = (LEVELS - 1) * SLOT_BITS;
+    levels.get(LEVELS - 1).get((int) (((currentTick >>> shift) + SLOT_MASK) & SLOT_MASK)).add(timer);
+  }
+
+  private void cascade(final ArrayDeque<Timer<K>> slot) {
+    final List<Timer<K>> timers = new ArrayList<>(slot);
+    slot.clear();
+
+    for (final Timer<K> timer : timers) {
+      if (!timer.cancelled) {
+        place(timer);
+      }
+    }
+  }
+
+  private void expire(final ArrayDeque<Timer<K>> slot, final List<Expiration<K>> expirations) {
+    Timer<K> timer;
+
+    while ((timer = slot.poll()) != null) {
+      if (!timer.cancelled) {
+        timersByKey.remove(timer.key);
+        expirations.add(new Expiration<>(timer.key, timer.deadlineMillis));
+      }
+    }
+  }
+}
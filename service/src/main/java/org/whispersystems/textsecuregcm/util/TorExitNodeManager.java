@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.util;
 import static com.codahale.metrics.MetricRegistry.name;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.InetAddresses;
 import io.dropwizard.lifecycle.Managed;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
@@ -15,11 +16,15 @@ import io.micrometer.core.instrument.Timer;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Collections;
-import java.util.Set;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.MonitoredS3ObjectConfiguration;
@@ -33,13 +38,124 @@ public class TorExitNodeManager implements Managed {
 
   private final S3ObjectMonitor exitListMonitor;
 
-  private final AtomicReference<Set<String>> exitNodeAddresses = new AtomicReference<>(Collections.emptySet());
+  private final AtomicReference<ExitNodeAddresses> exitNodeAddresses = new AtomicReference<>(ExitNodeAddresses.EMPTY);
 
   private static final Timer REFRESH_TIMER = Metrics.timer(name(TorExitNodeManager.class, "refresh"));
   private static final Counter REFRESH_ERRORS = Metrics.counter(name(TorExitNodeManager.class, "refreshErrors"));
 
   private static final Logger log = LoggerFactory.getLogger(TorExitNodeManager.class);
 
+  /**
+   * An immutable set of exit node addresses. IPv4 addresses are stored as a sorted array of ints; IPv6 addresses are
+   * stored as a sorted array of (high, low) pairs of longs.
+   */
+  private static class ExitNodeAddresses {
+
+    private static final ExitNodeAddresses EMPTY = new ExitNodeAddresses(new int[0], new long[0]);
+
+    private final int[]  ipv4Addresses;
+    private final long[] ipv6Addresses;
+
+    private ExitNodeAddresses(final int[] ipv4Addresses, final long[] ipv6Addresses) {
+      this.ipv4Addresses = ipv4Addresses;
+      this.ipv6Addresses = ipv6Addresses;
+    }
+
+    private static ExitNodeAddresses fromLines(final Iterable<String> lines) {
+      int[] ipv4Addresses = new int[1024];
+      int ipv4Count = 0;
+
+      final List<long[]> ipv6Addresses = new ArrayList<>();
+
+      for (final String line : lines) {
+        final String address = line.trim();
+        final long ipv4Address = parseIpv4Address(address);
+
+        if (ipv4Address >= 0) {
+          if (ipv4Count == ipv4Addresses.length) {
+            ipv4Addresses = Arrays.copyOf(ipv4Addresses, ipv4Count * 2);
+          }
+
+          ipv4Addresses[ipv4Count++] = (int) ipv4Address;
+        } else if (InetAddresses.isInetAddress(address)) {
+          final InetAddress inetAddress = InetAddresses.forString(address);
+
+          if (inetAddress instanceof Inet4Address) {
+            if (ipv4Count == ipv4Addresses.length) {
+              ipv4Addresses = Arrays.copyOf(ipv4Addresses, ipv4Count * 2);
+            }
+
+            ipv4Addresses[ipv4Count++] = ByteBuffer.wrap(inetAddress.getAddress()).getInt();
+          } else {
+            final ByteBuffer buffer = ByteBuffer.wrap(inetAddress.getAddress());
+            ipv6Addresses.add(new long[] { buffer.getLong(), buffer.getLong() });
+          }
+        }
+      }
+
+      final int[] sortedIpv4Addresses = Arrays.copyOf(ipv4Addresses, ipv4Count);
+      Arrays.sort(sortedIpv4Addresses);
+
+      ipv6Addresses.sort(Comparator.<long[]>comparingLong(pair -> pair[0]).thenComparingLong(pair -> pair[1]));
+
+      final long[] sortedIpv6Addresses = new long[ipv6Addresses.size() * 2];
+
+      for (int i = 0; i < ipv6Addresses.size(); i++) {
+        sortedIpv6Addresses[i * 2]     = ipv6Addresses.get(i)[0];
+        sortedIpv6Addresses[i * 2 + 1] = ipv6Addresses.get(i)[1];
+      }
+
+      return new ExitNodeAddresses(sortedIpv4Addresses, sortedIpv6Addresses);
+    }
+
+    private boolean contains(final String address) {
+      final long ipv4Address = parseIpv4Address(address);
+
+      if (ipv4Address >= 0) {
+        return Arrays.binarySearch(ipv4Addresses, (int) ipv4Address) >= 0;
+      }
+
+      // IPv6 addresses are comparatively rare, and we don't attempt to parse them without allocating
+      if (ipv6Addresses.length == 0 || !InetAddresses.isInetAddress(address)) {
+        return false;
+      }
+
+      final InetAddress inetAddress = InetAddresses.forString(address);
+
+      if (inetAddress instanceof Inet4Address) {
+        return Arrays.binarySearch(ipv4Addresses, ByteBuffer.wrap(inetAddress.getAddress()).getInt()) >= 0;
+      }
+
+      final ByteBuffer buffer = ByteBuffer.wrap(inetAddress.getAddress());
+      return containsIpv6Address(buffer.getLong(), buffer.getLong());
+    }
+
+    private boolean containsIpv6Address(final long high, final long low) {
+      int lowIndex = 0;
+      int highIndex = (ipv6Addresses.length / 2) - 1;
+
+      while (lowIndex <= highIndex) {
+        final int mid = (lowIndex + highIndex) >>> 1;
+
+        int comparison = Long.compare(ipv6Addresses[mid * 2], high);
+
+        if (comparison == 0) {
+          comparison = Long.compare(ipv6Addresses[mid * 2 + 1], low);
+        }
+
+        if (comparison < 0) {
+          lowIndex = mid + 1;
+        } else if (comparison > 0) {
+          highIndex = mid - 1;
+        } else {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
   public TorExitNodeManager(
       final ScheduledExecutorService scheduledExecutorService,
       final MonitoredS3ObjectConfiguration configuration) {
@@ -68,6 +184,44 @@ public class TorExitNodeManager implements Managed {
     return exitNodeAddresses.get().contains(address);
   }
 
+  /**
+   * Parses a dotted-quad IPv4 address without allocating.
+   *
+   * @return the address as an unsigned 32-bit value, or -1 if the given string is not a dotted-quad IPv4 address
+   */
+  @VisibleForTesting
+  static long parseIpv4Address(final String address) {
+    long parsedAddress = 0;
+    int octets = 0;
+    int octet = 0;
+    int digits = 0;
+
+    for (int i = 0; i < address.length(); i++) {
+      final char c = address.charAt(i);
+
+      if (c >= '0' && c <= '9') {
+        octet = (octet * 10) + (c - '0');
+
+        if (++digits > 3 || octet > 255) {
+          return -1;
+        }
+      } else if (c == '.' && digits > 0 && octets < 3) {
+        parsedAddress = (parsedAddress << 8) | octet;
+        octets++;
+        octet = 0;
+        digits = 0;
+      } else {
+        return -1;
+      }
+    }
+
+    if (digits == 0 || octets != 3) {
+      return -1;
+    }
+
+    return (parsedAddress << 8) | octet;
+  }
+
   private void handleExitListChanged(final InputStream exitList) {
     REFRESH_TIMER.record(() -> handleExitListChangedStream(exitList));
   }
@@ -75,7 +229,7 @@ public class TorExitNodeManager implements Managed {
   @VisibleForTesting
   void handleExitListChangedStream(final InputStream inputStream) {
     try (final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-      exitNodeAddresses.set(reader.lines().collect(Collectors.toSet()));
+      exitNodeAddresses.set(ExitNodeAddresses.fromLines(reader.lines()::iterator));
     } catch (final Exception e) {
       REFRESH_ERRORS.increment();
       log.warn("Failed to refresh Tor exit node list", e);
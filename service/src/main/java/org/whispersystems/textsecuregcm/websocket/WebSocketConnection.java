@@ -20,9 +20,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Random;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
@@ -167,9 +168,8 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
     return client.sendRequest("PUT", "/api/v1/message", List.of("X-Signal-Key: false", TimestampHeaderUtil.getTimestampHeader()), body).whenComplete((response, throwable) -> {
       if (throwable == null) {
         if (isSuccessResponse(response)) {
-          if (storedMessageInfo.isPresent()) {
-            messagesManager.delete(account.getUuid(), device.getId(), storedMessageInfo.get().getGuid());
-          }
+          // Acknowledged stored messages are deleted in a batch once the whole page has been sent
+          storedMessageInfo.ifPresent(StoredMessageInfo::acknowledge);
 
           if (message.getType() != Envelope.Type.SERVER_DELIVERY_RECEIPT) {
             recordMessageDeliveryDuration(message.getTimestamp(), device);
@@ -270,6 +270,7 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
           .getMessagesForDevice(account.getUuid(), device.getId(), client.getUserAgent(), cachedMessagesOnly);
 
       final CompletableFuture<?>[] sendFutures = new CompletableFuture[messages.getMessages().size()];
+      final Queue<OutgoingMessageEntity> acknowledgedMessages = new ConcurrentLinkedQueue<>();
 
       for (int i = 0; i < messages.getMessages().size(); i++) {
         final OutgoingMessageEntity message = messages.getMessages().get(i);
@@ -303,16 +304,26 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
         final Envelope envelope = builder.build();
 
         if (envelope.getSerializedSize() > MAX_DESKTOP_MESSAGE_SIZE && isDesktopClient) {
-          messagesManager.delete(account.getUuid(), device.getId(), message.getGuid());
+          acknowledgedMessages.add(message);
           discardedMessagesMeter.mark();
 
           sendFutures[i] = CompletableFuture.completedFuture(null);
         } else {
-          sendFutures[i] = sendMessage(builder.build(), Optional.of(new StoredMessageInfo(message.getGuid())));
+          sendFutures[i] = sendMessage(builder.build(), Optional.of(new StoredMessageInfo(message, acknowledgedMessages)));
         }
       }
 
       CompletableFuture.allOf(sendFutures).whenComplete((v, cause) -> {
+        // Messages must be deleted before we fetch the next page, or we'd fetch (and send) them again
+        try {
+          if (!acknowledgedMessages.isEmpty()) {
+            messagesManager.delete(account.getUuid(), device.getId(), new ArrayList<>(acknowledgedMessages));
+          }
+        } catch (final Exception e) {
+          queueClearedFuture.completeExceptionally(e);
+          return;
+        }
+
         if (cause == null) {
           if (messages.hasMore()) {
             sendNextMessagePage(cachedMessagesOnly, queueClearedFuture);
@@ -360,14 +371,16 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   }
 
   private static class StoredMessageInfo {
-    private final UUID guid;
+    private final OutgoingMessageEntity message;
+    private final Queue<OutgoingMessageEntity> acknowledgedMessages;
 
-    public StoredMessageInfo(UUID guid) {
-      this.guid = guid;
+    public StoredMessageInfo(OutgoingMessageEntity message, Queue<OutgoingMessageEntity> acknowledgedMessages) {
+      this.message = message;
+      this.acknowledgedMessages = acknowledgedMessages;
     }
 
-    public UUID getGuid() {
-      return guid;
+    public void acknowledge() {
+      acknowledgedMessages.add(message);
     }
   }
 }
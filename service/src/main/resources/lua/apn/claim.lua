@@ -0,0 +1,57 @@
+local pendingNotificationQueue = KEYS[1]
+local endpoint = KEYS[2]
+
+local maxTime = ARGV[1]
+
+local getNextInterval = function(interval)
+    if interval < 20000 then
+        return 20000
+    end
+
+    if interval < 40000 then
+        return 40000
+    end
+
+    if interval < 80000 then
+        return 80000
+    end
+
+    if interval < 160000 then
+        return 160000
+    end
+
+    if interval < 600000 then
+        return 600000
+    end
+
+    if interval < 1800000 then
+        return 1800000
+    end
+
+    return 3600000
+end
+
+local score = redis.call("ZSCORE", pendingNotificationQueue, endpoint)
+
+if not score then
+    return {}
+end
+
+if tonumber(score) > tonumber(maxTime) then
+    -- Not due yet (probably because another process already claimed this attempt); report when it is due
+    return {0, tonumber(score)}
+end
+
+local lastInterval = redis.call("HGET", endpoint, "interval")
+
+if not lastInterval then
+    lastInterval = 0
+end
+
+local nextInterval = getNextInterval(tonumber(lastInterval))
+local nextTime = tonumber(maxTime) + nextInterval
+
+redis.call("HSET", endpoint, "interval", nextInterval)
+redis.call("ZADD", pendingNotificationQueue, nextTime, endpoint)
+
+return {1, nextTime}
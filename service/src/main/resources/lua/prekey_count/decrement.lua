@@ -0,0 +1,9 @@
+local countsKey = KEYS[1]
+local deviceId  = ARGV[1]
+
+-- Only adjust counts that are already cached; an absent count will be loaded from the keys table on the next read
+if redis.call("HEXISTS", countsKey, deviceId) == 1 then
+    return redis.call("HINCRBY", countsKey, deviceId, -1)
+end
+
+return -1
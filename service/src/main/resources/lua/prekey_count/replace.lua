@@ -0,0 +1,14 @@
+local countsKey     = KEYS[1]
+local deviceId      = ARGV[1]
+local expectedCount = ARGV[2]
+local count         = ARGV[3]
+local ttl           = ARGV[4]
+
+-- Only replace the count if nothing else has changed it since the caller read it
+if redis.call("HGET", countsKey, deviceId) == expectedCount then
+    redis.call("HSET", countsKey, deviceId, count)
+    redis.call("EXPIRE", countsKey, ttl)
+    return 1
+end
+
+return 0
@@ -0,0 +1,15 @@
+local countsKey = KEYS[1]
+local deviceId  = ARGV[1]
+local count     = ARGV[2]
+local ttl       = ARGV[3]
+
+-- Counts that have drifted below zero are treated as missing, and so may be replaced
+local currentCount = redis.call("HGET", countsKey, deviceId)
+
+if currentCount == false or tonumber(currentCount) < 0 then
+    redis.call("HSET", countsKey, deviceId, count)
+    redis.call("EXPIRE", countsKey, ttl)
+    return 1
+end
+
+return 0
@@ -0,0 +1,46 @@
+-- Checks (and optionally consumes) permits from a leaky bucket in a single round trip. Returns the number of
+-- milliseconds until the requested permits would be available, or 0 if they are available now.
+--
+-- Buckets are stored as JSON objects of the form:
+--
+--   {"bucketSize": 2, "leakRatePerMillis": 8.333333333333334E-6, "spaceRemaining": 1, "lastUpdateTimeMillis": 1612345678901}
+--
+-- Only spaceRemaining and lastUpdateTimeMillis are read back; the bucket size and leak rate always come from the
+-- caller's current configuration. Buckets that are missing or can't be decoded are treated as full.
+
+local bucketId = KEYS[1]
+
+local bucketSize        = tonumber(ARGV[1])
+local leakRatePerMillis = tonumber(ARGV[2])
+local amount            = tonumber(ARGV[3])
+local currentTimeMillis = tonumber(ARGV[4])
+local ttlSeconds        = tonumber(ARGV[5])
+local consume           = ARGV[6] == "true"
+
+local spaceRemaining = bucketSize
+
+local serialized = redis.call("GET", bucketId)
+
+if serialized then
+    local decoded, bucket = pcall(cjson.decode, serialized)
+
+    if decoded and bucket.spaceRemaining and bucket.lastUpdateTimeMillis then
+        local elapsedMillis = math.max(0, currentTimeMillis - bucket.lastUpdateTimeMillis)
+        spaceRemaining = math.min(bucketSize, math.floor(bucket.spaceRemaining + (elapsedMillis * leakRatePerMillis)))
+    end
+end
+
+if spaceRemaining >= amount then
+    if consume then
+        redis.call("SETEX", bucketId, ttlSeconds, cjson.encode({
+            bucketSize           = bucketSize,
+            leakRatePerMillis    = leakRatePerMillis,
+            spaceRemaining       = spaceRemaining - amount,
+            lastUpdateTimeMillis = currentTimeMillis
+        }))
+    end
+
+    return 0
+end
+
+return math.ceil((amount - spaceRemaining) / leakRatePerMillis)
@@ -12,9 +12,12 @@ import org.whispersystems.textsecuregcm.storage.Device;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.UUID;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -39,4 +42,30 @@ public class CertificateGeneratorTest {
         assertTrue(certificateGenerator.createFor(account, device, true).length > 0);
         assertTrue(certificateGenerator.createFor(account, device, false).length > 0);
     }
+
+    @Test
+    public void testCreateForReusesCertificates() throws IOException, InvalidKeyException {
+        final Account account = mock(Account.class);
+        final Device device = mock(Device.class);
+        final CertificateGenerator certificateGenerator = new CertificateGenerator(Base64.getDecoder().decode(SIGNING_CERTIFICATE), Curve.decodePrivatePoint(Base64.getDecoder().decode(SIGNING_KEY)), 1);
+
+        when(account.getIdentityKey()).thenReturn(IDENTITY_KEY);
+        when(account.getUuid()).thenReturn(UUID.randomUUID());
+        when(account.getNumber()).thenReturn("+18005551234");
+        when(device.getId()).thenReturn(4L);
+
+        final byte[] certificateWithE164 = certificateGenerator.createFor(account, device, true);
+        final byte[] certificateWithoutE164 = certificateGenerator.createFor(account, device, false);
+
+        assertArrayEquals(certificateWithE164, certificateGenerator.createFor(account, device, true));
+        assertArrayEquals(certificateWithoutE164, certificateGenerator.createFor(account, device, false));
+        assertFalse(Arrays.equals(certificateWithE164, certificateWithoutE164));
+
+        when(account.getNumber()).thenReturn("+18005554321");
+        assertFalse(Arrays.equals(certificateWithE164, certificateGenerator.createFor(account, device, true)));
+        assertArrayEquals(certificateWithoutE164, certificateGenerator.createFor(account, device, false));
+
+        when(device.getId()).thenReturn(5L);
+        assertFalse(Arrays.equals(certificateWithoutE164, certificateGenerator.createFor(account, device, false)));
+    }
 }
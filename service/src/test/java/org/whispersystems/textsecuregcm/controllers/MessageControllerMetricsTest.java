@@ -9,6 +9,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import org.junit.Before;
 import org.junit.Test;
@@ -43,7 +44,9 @@ public class MessageControllerMetricsTest extends AbstractRedisClusterTest {
         mock(RateLimitChallengeManager.class),
         mock(ReportMessageManager.class),
         getRedisCluster(),
-        mock(ScheduledExecutorService.class));
+        mock(ScheduledExecutorService.class),
+        mock(ExecutorService.class),
+        4);
   }
 
   @Test
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.ScriptOutputType;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
+import org.whispersystems.textsecuregcm.redis.AbstractRedisClusterTest;
+import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
+
+public class RateLimiterTest extends AbstractRedisClusterTest {
+
+  private static final String KEY = "+18005551234";
+
+  private ClusterLuaScript validateScript;
+
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    validateScript = ClusterLuaScript.fromResource(getRedisCluster(), "lua/validate_rate_limit.lua", ScriptOutputType.INTEGER);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+  }
+
+  @Test
+  public void testValidate() throws RateLimitExceededException {
+    final RateLimiter rateLimiter = new RateLimiter(getRedisCluster(), validateScript, "test", 2, 1);
+
+    rateLimiter.validate(KEY);
+    rateLimiter.validate(KEY);
+
+    final RateLimitExceededException exception = assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(KEY));
+    assertTrue(exception.getRetryDuration().compareTo(Duration.ZERO) > 0);
+    assertTrue(exception.getRetryDuration().compareTo(Duration.ofMinutes(1)) <= 0);
+
+    rateLimiter.validate("+18005554321", 2);
+  }
+
+  @Test
+  public void testHasAvailablePermits() throws RateLimitExceededException {
+    final RateLimiter rateLimiter = new RateLimiter(getRedisCluster(), validateScript, "test", 2, 1);
+
+    assertTrue(rateLimiter.hasAvailablePermits(KEY, 2));
+    assertTrue(rateLimiter.hasAvailablePermits(KEY, 2));
+
+    rateLimiter.validate(KEY);
+
+    assertTrue(rateLimiter.hasAvailablePermits(KEY, 1));
+    assertFalse(rateLimiter.hasAvailablePermits(KEY, 2));
+
+    assertThrows(IllegalArgumentException.class, () -> rateLimiter.hasAvailablePermits(KEY, 3));
+  }
+
+  @Test
+  public void testClear() throws RateLimitExceededException {
+    final RateLimiter rateLimiter = new RateLimiter(getRedisCluster(), validateScript, "test", 1, 1);
+
+    rateLimiter.validate(KEY);
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(KEY));
+
+    rateLimiter.clear(KEY);
+    rateLimiter.validate(KEY);
+  }
+
+  @Test
+  public void testSerializedBucketCompatibility() throws Exception {
+    final RateLimiter rateLimiter = new RateLimiter(getRedisCluster(), validateScript, "test", 2, 0.5);
+    final String bucketName = "leaky_bucket::test::" + KEY;
+
+    // An empty bucket last updated two minutes ago should have leaked exactly one permit
+    final String serialized = "{\"bucketSize\":2,\"leakRatePerMillis\":8.333333333333334E-6,\"spaceRemaining\":0,\"lastUpdateTimeMillis\":" + (System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2)) + "}";
+    getRedisCluster().useCluster(connection -> connection.sync().set(bucketName, serialized));
+
+    rateLimiter.validate(KEY);
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(KEY));
+
+    final String updatedSerialized = getRedisCluster().withCluster(connection -> connection.sync().get(bucketName));
+    final JsonNode bucket = new ObjectMapper().readTree(updatedSerialized);
+
+    assertEquals(2, bucket.get("bucketSize").asInt());
+    assertEquals(0, bucket.get("spaceRemaining").asInt());
+    assertTrue(bucket.get("lastUpdateTimeMillis").asLong() > 0);
+    assertTrue(getRedisCluster().withCluster(connection -> connection.sync().ttl(bucketName)) > 0);
+  }
+
+  @Test
+  public void testCorruptBucket() throws RateLimitExceededException {
+    final RateLimiter rateLimiter = new RateLimiter(getRedisCluster(), validateScript, "test", 1, 1);
+
+    getRedisCluster().useCluster(connection -> connection.sync().set("leaky_bucket::test::" + KEY, "not json"));
+
+    rateLimiter.validate(KEY);
+    assertThrows(RateLimitExceededException.class, () -> rateLimiter.validate(KEY));
+  }
+}
@@ -18,6 +18,7 @@ import junitparams.Parameters;
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.UpgradeRequest;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
@@ -171,7 +172,7 @@ public class MetricsRequestEventListenerTest {
         provider.onWebSocketBinary(message, 0, message.length);
 
         ArgumentCaptor<ByteBuffer> responseBytesCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
-        verify(remoteEndpoint).sendBytesByFuture(responseBytesCaptor.capture());
+        verify(remoteEndpoint).sendBytes(responseBytesCaptor.capture(), any(WriteCallback.class));
 
         SubProtocol.WebSocketResponseMessage response = getResponse(responseBytesCaptor);
 
@@ -229,7 +230,7 @@ public class MetricsRequestEventListenerTest {
         provider.onWebSocketBinary(message, 0, message.length);
 
         ArgumentCaptor<ByteBuffer> responseBytesCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
-        verify(remoteEndpoint).sendBytesByFuture(responseBytesCaptor.capture());
+        verify(remoteEndpoint).sendBytes(responseBytesCaptor.capture(), any(WriteCallback.class));
 
         SubProtocol.WebSocketResponseMessage response = getResponse(responseBytesCaptor);
 
@@ -6,13 +6,26 @@
 package org.whispersystems.textsecuregcm.providers;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
 import java.util.stream.Stream;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.whispersystems.textsecuregcm.entities.MultiRecipientMessage;
 
 public class MultiRecipientMessageProviderTest {
 
@@ -34,11 +47,103 @@ public class MultiRecipientMessageProviderTest {
   @ParameterizedTest
   @MethodSource("readU16TestCases")
   void testReadU16(int expectedValue, byte[] input) throws Exception {
-    try (final ByteArrayInputStream stream = new ByteArrayInputStream(input)) {
-      assertThat(MultiRecipientMessageProvider.readU16(stream)).isEqualTo(expectedValue);
+    assertThat(MultiRecipientMessageProvider.readU16(ByteBuffer.wrap(input))).isEqualTo(expectedValue);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 200, MultiRecipientMessageProvider.MAX_RECIPIENT_COUNT})
+  void testParse(int recipientCount) throws Exception {
+    final UUID[] uuids = new UUID[recipientCount];
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    body.write(MultiRecipientMessageProvider.VERSION);
+    writeVarint(body, recipientCount);
+
+    for (int i = 0; i < recipientCount; i++) {
+      uuids[i] = UUID.randomUUID();
+      writeRecipient(body, uuids[i], i + 1, i);
+    }
+
+    final byte[] commonPayload = new byte[1024];
+    Arrays.fill(commonPayload, (byte) 0x7F);
+    body.write(commonPayload);
+
+    final MultiRecipientMessage message = MultiRecipientMessageProvider.parse(ByteBuffer.wrap(body.toByteArray()));
+
+    assertThat(message.getRecipients()).hasSize(recipientCount);
+    assertThat(message.getCommonPayload().toByteArray()).isEqualTo(commonPayload);
+
+    for (int i = 0; i < recipientCount; i++) {
+      final MultiRecipientMessage.Recipient recipient = message.getRecipients()[i];
+
+      assertThat(recipient.getUuid()).isEqualTo(uuids[i]);
+      assertThat(recipient.getDeviceId()).isEqualTo(i + 1);
+      assertThat(recipient.getRegistrationId()).isEqualTo(i & 0xFFFF);
+      assertThat(recipient.getPerRecipientKeyMaterial().toByteArray()).isEqualTo(keyMaterial(i));
     }
   }
-  
-  
 
+  @Test
+  void testParseTooManyRecipients() {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(MultiRecipientMessageProvider.VERSION);
+    writeVarint(body, MultiRecipientMessageProvider.MAX_RECIPIENT_COUNT + 1);
+
+    assertThrows(BadRequestException.class, () -> MultiRecipientMessageProvider.parse(ByteBuffer.wrap(body.toByteArray())));
+  }
+
+  @Test
+  void testParseTruncated() throws Exception {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(MultiRecipientMessageProvider.VERSION);
+    writeVarint(body, 2);
+    writeRecipient(body, UUID.randomUUID(), 1, 1);
+
+    assertThrows(IOException.class, () -> MultiRecipientMessageProvider.parse(ByteBuffer.wrap(body.toByteArray())));
+  }
+
+  @Test
+  void testParseShortCommonPayload() throws Exception {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(MultiRecipientMessageProvider.VERSION);
+    writeVarint(body, 1);
+    writeRecipient(body, UUID.randomUUID(), 1, 1);
+    body.write(new byte[31]);
+
+    assertThrows(IOException.class, () -> MultiRecipientMessageProvider.parse(ByteBuffer.wrap(body.toByteArray())));
+  }
+
+  @Test
+  void testReadFromBodyTooLarge() throws Exception {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(MultiRecipientMessageProvider.VERSION);
+    writeVarint(body, 1);
+    writeRecipient(body, UUID.randomUUID(), 1, 1);
+    body.write(new byte[MultiRecipientMessageProvider.MAX_BODY_SIZE]);
+
+    assertThrows(BadRequestException.class, () -> new MultiRecipientMessageProvider().readFrom(MultiRecipientMessage.class,
+        MultiRecipientMessage.class, new Annotation[0], MediaType.valueOf(MultiRecipientMessageProvider.MEDIA_TYPE),
+        new MultivaluedHashMap<>(), new ByteArrayInputStream(body.toByteArray())));
+  }
+
+  private static void writeRecipient(ByteArrayOutputStream body, UUID uuid, long deviceId, int index) throws IOException {
+    body.write(ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array());
+    writeVarint(body, deviceId);
+    body.write(createTwoByteArray(index >> 8, index));
+    body.write(keyMaterial(index));
+  }
+
+  private static byte[] keyMaterial(int index) {
+    final byte[] keyMaterial = new byte[48];
+    Arrays.fill(keyMaterial, (byte) index);
+    return keyMaterial;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream stream, long value) {
+    while ((value & ~0x7FL) != 0) {
+      stream.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    stream.write((int) value);
+  }
 }
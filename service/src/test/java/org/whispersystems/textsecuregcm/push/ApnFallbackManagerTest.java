@@ -18,12 +18,15 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Pair;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,6 +61,7 @@ public class ApnFallbackManagerTest extends AbstractRedisClusterTest {
         final AccountsManager accountsManager = mock(AccountsManager.class);
         when(accountsManager.get(ACCOUNT_NUMBER)).thenReturn(Optional.of(account));
         when(accountsManager.get(ACCOUNT_UUID)).thenReturn(Optional.of(account));
+        when(accountsManager.getByUuids(any())).thenReturn(Map.of(ACCOUNT_UUID, account));
 
         apnSender = mock(APNSender.class);
 
@@ -108,4 +112,36 @@ public class ApnFallbackManagerTest extends AbstractRedisClusterTest {
 
         assertEquals(0, worker.processNextSlot());
     }
+
+    @Test
+    public void testProcessLocalTimers() throws RedisException {
+        final ApnFallbackManager.NotificationWorker worker = apnFallbackManager.new NotificationWorker();
+
+        final long scheduledAt = System.currentTimeMillis() - 30_000;
+        apnFallbackManager.schedule(account, device, scheduledAt);
+
+        assertEquals(1, apnFallbackManager.processLocalTimers(System.currentTimeMillis()));
+
+        final ArgumentCaptor<ApnMessage> messageCaptor = ArgumentCaptor.forClass(ApnMessage.class);
+        verify(apnSender).sendMessage(messageCaptor.capture());
+
+        assertEquals(VOIP_APN_ID, messageCaptor.getValue().getApnId());
+
+        // The retry has been claimed, so the pollers shouldn't find it again
+        final int slot = SlotHash.getSlot(apnFallbackManager.getEndpointKey(account, device));
+        final int previousSlot = (slot + SlotHash.SLOT_COUNT - 1) % SlotHash.SLOT_COUNT;
+
+        getRedisCluster().withCluster(connection -> connection.sync().set(ApnFallbackManager.NEXT_SLOT_TO_PERSIST_KEY, String.valueOf(previousSlot)));
+
+        assertEquals(0, worker.processNextSlot());
+    }
+
+    @Test
+    public void testCancelLocalTimer() throws RedisException {
+        apnFallbackManager.schedule(account, device, System.currentTimeMillis() - 30_000);
+        apnFallbackManager.cancel(account, device);
+
+        assertEquals(0, apnFallbackManager.processLocalTimers(System.currentTimeMillis()));
+        verify(apnSender, never()).sendMessage(any());
+    }
 }
@@ -21,6 +21,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.whispersystems.textsecuregcm.redis.AbstractRedisClusterTest;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 public class ClientPresenceManagerTest extends AbstractRedisClusterTest {
 
@@ -63,6 +64,23 @@ public class ClientPresenceManagerTest extends AbstractRedisClusterTest {
         assertTrue(clientPresenceManager.isPresent(accountUuid, deviceId));
     }
 
+    @Test
+    public void testIsPresentBatch() {
+        final UUID presentAccountUuid = UUID.randomUUID();
+        final UUID absentAccountUuid  = UUID.randomUUID();
+
+        clientPresenceManager.setPresent(presentAccountUuid, 1, NO_OP);
+        clientPresenceManager.setPresent(presentAccountUuid, 3, NO_OP);
+
+        assertEquals(List.of(true, false, true, false),
+                     clientPresenceManager.isPresent(List.of(new Pair<>(presentAccountUuid, 1L),
+                                                             new Pair<>(presentAccountUuid, 2L),
+                                                             new Pair<>(presentAccountUuid, 3L),
+                                                             new Pair<>(absentAccountUuid, 1L))));
+
+        assertEquals(List.of(), clientPresenceManager.isPresent(List.of()));
+    }
+
     @Test
     public void testIsLocallyPresent() {
         final UUID accountUuid = UUID.randomUUID();
@@ -9,13 +9,20 @@ import com.google.protobuf.ByteString;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.metrics.PushLatencyManager;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.MessagesCache;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.util.Pair;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -140,6 +147,58 @@ public class MessageSenderTest {
         verifyZeroInteractions(apnSender);
     }
 
+    @Test
+    public void testSendMessages() {
+        final Device absentDevice       = mock(Device.class);
+        final Device unregisteredDevice = mock(Device.class);
+
+        when(device.getFetchesMessages()).thenReturn(true);
+        when(absentDevice.getId()).thenReturn(DEVICE_ID + 1);
+        when(absentDevice.getGcmId()).thenReturn("gcm-id");
+        when(unregisteredDevice.getId()).thenReturn(DEVICE_ID + 2);
+
+        when(clientPresenceManager.isPresent(List.of(new Pair<>(ACCOUNT_UUID, DEVICE_ID), new Pair<>(ACCOUNT_UUID, DEVICE_ID + 1))))
+                .thenReturn(List.of(true, false));
+
+        final MessageSender.Delivery unregisteredDelivery = new MessageSender.Delivery(account, unregisteredDevice, message);
+
+        assertEquals(List.of(unregisteredDelivery), messageSender.sendMessages(List.of(
+                new MessageSender.Delivery(account, device, message),
+                new MessageSender.Delivery(account, absentDevice, message),
+                unregisteredDelivery), false));
+
+        @SuppressWarnings("unchecked") final ArgumentCaptor<List<MessagesCache.Insertion>> insertionsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(messagesManager).insert(insertionsCaptor.capture());
+
+        assertEquals(List.of(DEVICE_ID, DEVICE_ID + 1), insertionsCaptor.getValue().stream().map(MessagesCache.Insertion::getDestinationDevice).collect(Collectors.toList()));
+        verify(messagesManager, never()).insert(any(), anyLong(), any());
+        verify(clientPresenceManager, never()).isPresent(any(), anyLong());
+        verify(gcmSender).sendMessage(any());
+        verifyZeroInteractions(apnSender);
+    }
+
+    @Test
+    public void testSendOnlineMessages() {
+        final Device absentDevice = mock(Device.class);
+
+        when(device.getGcmId()).thenReturn("gcm-id");
+        when(absentDevice.getId()).thenReturn(DEVICE_ID + 1);
+        when(absentDevice.getGcmId()).thenReturn("gcm-id");
+
+        when(clientPresenceManager.isPresent(List.of(new Pair<>(ACCOUNT_UUID, DEVICE_ID), new Pair<>(ACCOUNT_UUID, DEVICE_ID + 1))))
+                .thenReturn(List.of(true, false));
+
+        assertEquals(List.of(), messageSender.sendMessages(List.of(
+                new MessageSender.Delivery(account, device, message),
+                new MessageSender.Delivery(account, absentDevice, message)), true));
+
+        verify(messagesManager).insertEphemeral(ACCOUNT_UUID, DEVICE_ID, message);
+        verify(messagesManager, never()).insertEphemeral(ACCOUNT_UUID, DEVICE_ID + 1, message);
+        verify(messagesManager, never()).insert(any());
+        verifyZeroInteractions(gcmSender);
+        verifyZeroInteractions(apnSender);
+    }
+
     private MessageProtos.Envelope generateRandomMessage() {
         return MessageProtos.Envelope.newBuilder()
                 .setTimestamp(System.currentTimeMillis())
@@ -21,6 +21,9 @@ import org.whispersystems.textsecuregcm.configuration.RetryConfiguration;
 import reactor.core.publisher.Flux;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -94,4 +97,26 @@ public class FaultTolerantRedisClusterTest {
 
         assertThrows(RedisCommandTimeoutException.class, () -> faultTolerantCluster.withCluster(connection -> connection.sync().get("key")));
     }
+
+    @Test
+    public void testPipelineRetryAndBreaker() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // A timed-out reply causes the whole batch to be re-dispatched
+        assertEquals(List.of("a", "b"), faultTolerantCluster.withClusterPipeline(connection -> {
+            if (attempts.incrementAndGet() == 1) {
+                return List.of(CompletableFuture.completedFuture("a"), CompletableFuture.failedFuture(new RedisCommandTimeoutException()));
+            }
+
+            return List.of(CompletableFuture.completedFuture("a"), CompletableFuture.completedFuture("b"));
+        }));
+
+        assertEquals(2, attempts.get());
+
+        assertThrows(RedisException.class, () -> faultTolerantCluster.withClusterPipeline(connection ->
+                List.of(CompletableFuture.failedFuture(new RedisException("Badness has ensued.")))));
+
+        assertThrows(CallNotPermittedException.class, () -> faultTolerantCluster.withClusterPipeline(connection ->
+                List.of(CompletableFuture.completedFuture("a"))));
+    }
 }
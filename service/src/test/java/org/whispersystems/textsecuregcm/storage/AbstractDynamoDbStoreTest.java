@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+class AbstractDynamoDbStoreTest {
+
+  private DynamoDbClient dynamoDbClient;
+  private BatchWriteRetryPolicy retryPolicy;
+  private AbstractDynamoDbStore store;
+
+  private static final String TABLE_NAME = "test_table";
+
+  private static final Map<String, List<WriteRequest>> ITEMS = Map.of(TABLE_NAME, List.of(
+      WriteRequest.builder().putRequest(PutRequest.builder().item(Map.of("K", AttributeValue.builder().s("a").build())).build()).build(),
+      WriteRequest.builder().putRequest(PutRequest.builder().item(Map.of("K", AttributeValue.builder().s("b").build())).build()).build()));
+
+  private static final Map<String, List<WriteRequest>> UNPROCESSED_ITEMS = Map.of(TABLE_NAME, List.of(ITEMS.get(TABLE_NAME).get(1)));
+
+  @BeforeEach
+  void setUp() {
+    dynamoDbClient = mock(DynamoDbClient.class);
+    retryPolicy = mock(BatchWriteRetryPolicy.class);
+    store = new AbstractDynamoDbStore(dynamoDbClient, retryPolicy);
+  }
+
+  @Test
+  void testWriteItemsNoUnprocessedItems() {
+    when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(Map.of()).build());
+
+    store.executeTableWriteItemsUntilComplete(ITEMS);
+
+    verify(dynamoDbClient).batchWriteItem(BatchWriteItemRequest.builder().requestItems(ITEMS).build());
+    verify(retryPolicy, never()).getRetryDelay(any(), anyInt());
+    verify(retryPolicy).recordSuccess(TABLE_NAME);
+  }
+
+  @Test
+  void testWriteItemsRetry() {
+    when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(UNPROCESSED_ITEMS).build())
+        .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(UNPROCESSED_ITEMS).build())
+        .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(Map.of()).build());
+
+    when(retryPolicy.getRetryDelay(eq(TABLE_NAME), anyInt())).thenReturn(Optional.of(Duration.ZERO));
+
+    store.executeTableWriteItemsUntilComplete(ITEMS);
+
+    verify(dynamoDbClient).batchWriteItem(BatchWriteItemRequest.builder().requestItems(ITEMS).build());
+    verify(dynamoDbClient, times(2)).batchWriteItem(BatchWriteItemRequest.builder().requestItems(UNPROCESSED_ITEMS).build());
+    verify(retryPolicy).getRetryDelay(TABLE_NAME, 1);
+    verify(retryPolicy).getRetryDelay(TABLE_NAME, 2);
+
+    // Writes that needed retries don't return tokens to the retry budget
+    verify(retryPolicy, never()).recordSuccess(any());
+  }
+
+  @Test
+  void testWriteItemsRetriesAbandoned() {
+    when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(UNPROCESSED_ITEMS).build());
+
+    when(retryPolicy.getRetryDelay(TABLE_NAME, 1)).thenReturn(Optional.of(Duration.ZERO));
+    when(retryPolicy.getRetryDelay(TABLE_NAME, 2)).thenReturn(Optional.empty());
+
+    assertThrows(BatchWriteIncompleteException.class, () -> store.executeTableWriteItemsUntilComplete(ITEMS));
+
+    verify(dynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+    verify(retryPolicy, never()).recordSuccess(any());
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.AbstractRedisClusterTest;
+
+public class AccountNearCacheTest extends AbstractRedisClusterTest {
+
+  private AccountNearCache accountNearCache;
+
+  private static final UUID ACCOUNT_UUID = UUID.randomUUID();
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    accountNearCache = new AccountNearCache(getRedisCluster(), new AccountNearCacheConfiguration());
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+  }
+
+  @Test
+  public void testGet() {
+    final AtomicInteger loads = new AtomicInteger(0);
+
+    assertEquals("{}", accountNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return "{}";
+    }));
+
+    assertEquals("{}", accountNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return "{\"changed\":true}";
+    }));
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testGetMissing() {
+    final AtomicInteger loads = new AtomicInteger(0);
+
+    assertNull(accountNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return null;
+    }));
+
+    assertNull(accountNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return null;
+    }));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testInvalidate() {
+    accountNearCache.get(ACCOUNT_UUID, () -> "{}");
+    accountNearCache.invalidate(ACCOUNT_UUID);
+
+    assertEquals("{\"changed\":true}", accountNearCache.get(ACCOUNT_UUID, () -> "{\"changed\":true}"));
+  }
+
+  @Test
+  public void testInvalidateDuringLoad() {
+    // A load that overlaps with an invalidation may have read a stale value and must not be cached
+    assertEquals("{}", accountNearCache.get(ACCOUNT_UUID, () -> {
+      accountNearCache.invalidate(ACCOUNT_UUID);
+      return "{}";
+    }));
+
+    assertEquals("{\"changed\":true}", accountNearCache.get(ACCOUNT_UUID, () -> "{\"changed\":true}"));
+  }
+
+  @Test
+  public void testInvalidateAllDuringLoad() {
+    assertEquals("{}", accountNearCache.get(ACCOUNT_UUID, () -> {
+      accountNearCache.invalidateAllLocally();
+      return "{}";
+    }));
+
+    assertEquals("{\"changed\":true}", accountNearCache.get(ACCOUNT_UUID, () -> "{\"changed\":true}"));
+  }
+
+  @Test(timeout = 10_000)
+  public void testRemoteInvalidation() throws InterruptedException {
+    final AccountNearCache remoteNearCache = new AccountNearCache(getRedisCluster(), new AccountNearCacheConfiguration());
+
+    accountNearCache.start();
+
+    try {
+      accountNearCache.get(ACCOUNT_UUID, () -> "{}");
+      remoteNearCache.invalidate(ACCOUNT_UUID);
+
+      while (!"{\"changed\":true}".equals(accountNearCache.get(ACCOUNT_UUID, () -> "{\"changed\":true}"))) {
+        Thread.sleep(10);
+      }
+    } finally {
+      accountNearCache.stop();
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    final AccountNearCache disabledNearCache = new AccountNearCache(getRedisCluster(), new AccountNearCacheConfiguration() {
+      @Override
+      public long getMaxSize() {
+        return 0;
+      }
+
+      @Override
+      public Duration getTtl() {
+        return Duration.ofMinutes(1);
+      }
+    });
+
+    final AtomicInteger loads = new AtomicInteger(0);
+
+    disabledNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return "{}";
+    });
+
+    disabledNearCache.get(ACCOUNT_UUID, () -> {
+      loads.incrementAndGet();
+      return "{}";
+    });
+
+    assertEquals(2, loads.get());
+  }
+}
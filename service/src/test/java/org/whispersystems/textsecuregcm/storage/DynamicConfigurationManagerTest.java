@@ -8,6 +8,11 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,4 +45,41 @@ public class DynamicConfigurationManagerTest {
 
     assertThat(dynamicConfigurationManager.getConfiguration()).isNotNull();
   }
+
+  @Test
+  public void testGetConfigBeforeStart() throws Exception {
+    when(appConfig.getConfiguration(any())).thenReturn(new GetConfigurationResult().withContent(ByteBuffer.wrap("test: true".getBytes()))
+                                                                                   .withConfigurationVersion("1"));
+
+    final CompletableFuture<DynamicConfiguration> configurationFuture =
+        CompletableFuture.supplyAsync(dynamicConfigurationManager::getConfiguration);
+
+    dynamicConfigurationManager.start();
+
+    assertThat(configurationFuture.get(5, TimeUnit.SECONDS)).isNotNull();
+  }
+
+  @Test
+  public void testListeners() {
+    when(appConfig.getConfiguration(any())).thenReturn(new GetConfigurationResult().withContent(ByteBuffer.wrap("test: true".getBytes()))
+                                                                                   .withConfigurationVersion("1"));
+
+    final List<DynamicConfiguration> earlyNotifications = new ArrayList<>();
+    final List<DynamicConfiguration> lateNotifications  = new ArrayList<>();
+
+    dynamicConfigurationManager.addListener(earlyNotifications::add);
+    dynamicConfigurationManager.addListener(configuration -> {
+      throw new RuntimeException("OH NO");
+    });
+
+    assertThat(earlyNotifications).isEmpty();
+
+    dynamicConfigurationManager.start();
+
+    assertThat(earlyNotifications).containsExactly(dynamicConfigurationManager.getConfiguration());
+
+    dynamicConfigurationManager.addListener(lateNotifications::add);
+
+    assertThat(lateNotifications).containsExactly(dynamicConfigurationManager.getConfiguration());
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ExponentialBackoffBatchWriteRetryPolicyTest {
+
+  private static final String TABLE_NAME = "test_table";
+
+  @Test
+  void testExponentialDelay() {
+    // Use the upper bound of the jitter range so delays are deterministic
+    final ExponentialBackoffBatchWriteRetryPolicy retryPolicy =
+        new ExponentialBackoffBatchWriteRetryPolicy(Duration.ofMillis(10), Duration.ofMillis(100), 0, 10, 500, 5, bound -> bound);
+
+    assertEquals(Optional.of(Duration.ofMillis(10)), retryPolicy.getRetryDelay(TABLE_NAME, 1));
+    assertEquals(Optional.of(Duration.ofMillis(20)), retryPolicy.getRetryDelay(TABLE_NAME, 2));
+    assertEquals(Optional.of(Duration.ofMillis(40)), retryPolicy.getRetryDelay(TABLE_NAME, 3));
+    assertEquals(Optional.of(Duration.ofMillis(80)), retryPolicy.getRetryDelay(TABLE_NAME, 4));
+    assertEquals(Optional.of(Duration.ofMillis(100)), retryPolicy.getRetryDelay(TABLE_NAME, 5));
+    assertEquals(Optional.of(Duration.ofMillis(100)), retryPolicy.getRetryDelay(TABLE_NAME, 10));
+  }
+
+  @Test
+  void testJitter() {
+    final ExponentialBackoffBatchWriteRetryPolicy retryPolicy =
+        new ExponentialBackoffBatchWriteRetryPolicy(Duration.ofMillis(10), Duration.ofMillis(100), 0, 10, 500, 0);
+
+    for (int i = 0; i < 100; i++) {
+      final Duration delay = retryPolicy.getRetryDelay(TABLE_NAME, 3).orElseThrow();
+
+      assertTrue(!delay.isNegative() && delay.compareTo(Duration.ofMillis(40)) <= 0);
+    }
+  }
+
+  @Test
+  void testMaxRetries() {
+    final ExponentialBackoffBatchWriteRetryPolicy retryPolicy =
+        new ExponentialBackoffBatchWriteRetryPolicy(Duration.ofMillis(10), Duration.ofMillis(100), 0, 3, 500, 5);
+
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 3).isPresent());
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 4).isEmpty());
+  }
+
+  @Test
+  void testRetryBudget() {
+    final ExponentialBackoffBatchWriteRetryPolicy retryPolicy =
+        new ExponentialBackoffBatchWriteRetryPolicy(Duration.ofMillis(10), Duration.ofMillis(100), 0, 10, 10, 5);
+
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 1).isPresent());
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 1).isPresent());
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 1).isEmpty());
+    assertEquals(0, retryPolicy.getAvailableRetryTokens(TABLE_NAME));
+
+    // Budgets are tracked separately for each table
+    assertTrue(retryPolicy.getRetryDelay("other_table", 1).isPresent());
+
+    for (int i = 0; i < 5; i++) {
+      retryPolicy.recordSuccess(TABLE_NAME);
+    }
+
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 1).isPresent());
+
+    for (int i = 0; i < 100; i++) {
+      retryPolicy.recordSuccess(TABLE_NAME);
+    }
+
+    assertEquals(10, retryPolicy.getAvailableRetryTokens(TABLE_NAME));
+  }
+
+  @Test
+  void testMinRetriesWithoutBudget() {
+    final ExponentialBackoffBatchWriteRetryPolicy retryPolicy =
+        new ExponentialBackoffBatchWriteRetryPolicy(Duration.ofMillis(10), Duration.ofMillis(100), 2, 10, 5, 5, bound -> bound);
+
+    assertEquals(Optional.of(Duration.ofMillis(10)), retryPolicy.getRetryDelay(TABLE_NAME, 1));
+    assertEquals(0, retryPolicy.getAvailableRetryTokens(TABLE_NAME));
+
+    // With the budget spent, the first retries still happen, but at the capped delay
+    assertEquals(Optional.of(Duration.ofMillis(100)), retryPolicy.getRetryDelay(TABLE_NAME, 1));
+    assertEquals(Optional.of(Duration.ofMillis(100)), retryPolicy.getRetryDelay(TABLE_NAME, 2));
+    assertTrue(retryPolicy.getRetryDelay(TABLE_NAME, 3).isEmpty());
+    assertEquals(0, retryPolicy.getAvailableRetryTokens(TABLE_NAME));
+  }
+}
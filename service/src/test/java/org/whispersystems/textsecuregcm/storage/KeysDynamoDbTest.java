@@ -20,12 +20,19 @@ import java.util.UUID;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class KeysDynamoDbTest {
 
     private Account account;
+    private PreKeyCountCache preKeyCountCache;
     private KeysDynamoDb keysDynamoDb;
 
     @ClassRule
@@ -36,7 +43,8 @@ public class KeysDynamoDbTest {
 
     @Before
     public void setup() {
-        keysDynamoDb = new KeysDynamoDb(dynamoDbRule.getDynamoDbClient(), KeysDynamoDbRule.TABLE_NAME);
+        preKeyCountCache = mock(PreKeyCountCache.class);
+        keysDynamoDb = new KeysDynamoDb(dynamoDbRule.getDynamoDbClient(), dynamoDbRule.getDynamoDbAsyncClient(), preKeyCountCache, KeysDynamoDbRule.TABLE_NAME);
 
         account = mock(Account.class);
         when(account.getNumber()).thenReturn(ACCOUNT_NUMBER);
@@ -89,6 +97,28 @@ public class KeysDynamoDbTest {
         assertEquals(0, keysDynamoDb.getCount(account, DEVICE_ID + 1));
     }
 
+    @Test
+    public void testTakeAccountPartial() {
+        final Device firstDevice = mock(Device.class);
+        final Device secondDevice = mock(Device.class);
+        final Device thirdDevice = mock(Device.class);
+
+        when(firstDevice.getId()).thenReturn(DEVICE_ID);
+        when(secondDevice.getId()).thenReturn(DEVICE_ID + 1);
+        when(thirdDevice.getId()).thenReturn(DEVICE_ID + 2);
+        when(account.getDevices()).thenReturn(Set.of(firstDevice, secondDevice, thirdDevice));
+
+        final PreKey firstDevicePreKey = new PreKey(1, "public-key");
+        final PreKey thirdDevicePreKey = new PreKey(3, "third-key");
+
+        keysDynamoDb.store(account, DEVICE_ID, List.of(firstDevicePreKey, new PreKey(2, "another-key")));
+        keysDynamoDb.store(account, DEVICE_ID + 2, List.of(thirdDevicePreKey));
+
+        assertEquals(Map.of(DEVICE_ID, firstDevicePreKey, DEVICE_ID + 2, thirdDevicePreKey), keysDynamoDb.take(account));
+        assertEquals(1, keysDynamoDb.getCount(account, DEVICE_ID));
+        assertEquals(0, keysDynamoDb.getCount(account, DEVICE_ID + 2));
+    }
+
     @Test
     public void testTakeAccountAndDeviceId() {
         assertEquals(Optional.empty(), keysDynamoDb.take(account, DEVICE_ID));
@@ -98,6 +128,7 @@ public class KeysDynamoDbTest {
         keysDynamoDb.store(account, DEVICE_ID, List.of(preKey, new PreKey(2, "different-pre-key")));
         assertEquals(Optional.of(preKey), keysDynamoDb.take(account, DEVICE_ID));
         assertEquals(1, keysDynamoDb.getCount(account, DEVICE_ID));
+        verify(preKeyCountCache).decrement(account.getUuid(), DEVICE_ID);
     }
 
     @Test
@@ -106,6 +137,32 @@ public class KeysDynamoDbTest {
 
         keysDynamoDb.store(account, DEVICE_ID, List.of(new PreKey(1, "public-key")));
         assertEquals(1, keysDynamoDb.getCount(account, DEVICE_ID));
+
+        verify(preKeyCountCache).setIfAbsent(account.getUuid(), DEVICE_ID, 0);
+        verify(preKeyCountCache).set(account.getUuid(), DEVICE_ID, 1);
+    }
+
+    @Test
+    public void testGetCountCached() {
+        when(preKeyCountCache.get(account.getUuid(), DEVICE_ID)).thenReturn(Optional.of(17));
+        assertEquals(17, keysDynamoDb.getCount(account, DEVICE_ID));
+    }
+
+    @Test
+    public void testReconcileCount() {
+        keysDynamoDb.store(account, DEVICE_ID, List.of(new PreKey(1, "public-key"), new PreKey(2, "different-public-key")));
+        reset(preKeyCountCache);
+
+        keysDynamoDb.reconcileCount(account, DEVICE_ID);
+        verify(preKeyCountCache, never()).replace(any(), anyLong(), anyInt(), anyInt());
+
+        when(preKeyCountCache.get(account.getUuid(), DEVICE_ID)).thenReturn(Optional.of(2));
+        keysDynamoDb.reconcileCount(account, DEVICE_ID);
+        verify(preKeyCountCache, never()).replace(any(), anyLong(), anyInt(), anyInt());
+
+        when(preKeyCountCache.get(account.getUuid(), DEVICE_ID)).thenReturn(Optional.of(7));
+        keysDynamoDb.reconcileCount(account, DEVICE_ID);
+        verify(preKeyCountCache).replace(account.getUuid(), DEVICE_ID, 7, 2);
     }
 
     @Test
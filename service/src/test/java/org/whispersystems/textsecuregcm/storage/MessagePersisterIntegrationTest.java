@@ -66,9 +66,9 @@ public class MessagePersisterIntegrationTest extends AbstractRedisClusterTest {
         final DynamicConfigurationManager dynamicConfigurationManager = mock(DynamicConfigurationManager.class);
 
         notificationExecutorService = Executors.newSingleThreadExecutor();
-        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService);
+        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService, false);
         messagesManager             = new MessagesManager(messagesDynamoDb, messagesCache, mock(PushLatencyManager.class), mock(ReportMessageManager.class));
-        messagePersister            = new MessagePersister(messagesCache, messagesManager, accountsManager, dynamicConfigurationManager, PERSIST_DELAY);
+        messagePersister            = new MessagePersister(messagesCache, messagesManager, accountsManager, dynamicConfigurationManager, PERSIST_DELAY, mock(ExecutorService.class), 1);
 
         account = mock(Account.class);
 
@@ -26,6 +26,8 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
@@ -39,6 +41,7 @@ import org.whispersystems.textsecuregcm.redis.AbstractRedisClusterTest;
 public class MessagePersisterTest extends AbstractRedisClusterTest {
 
     private ExecutorService          notificationExecutorService;
+    private ExecutorService          persistQueueExecutorService;
     private MessagesCache            messagesCache;
     private MessagesDynamoDb         messagesDynamoDb;
     private MessagePersister         messagePersister;
@@ -50,6 +53,8 @@ public class MessagePersisterTest extends AbstractRedisClusterTest {
 
     private static final Duration PERSIST_DELAY = Duration.ofMinutes(5);
 
+    private static final int PERSIST_QUEUE_CONCURRENCY = 4;
+
     @Override
     @Before
     public void setUp() throws Exception {
@@ -68,8 +73,9 @@ public class MessagePersisterTest extends AbstractRedisClusterTest {
         when(dynamicConfigurationManager.getConfiguration()).thenReturn(new DynamicConfiguration());
 
         notificationExecutorService = Executors.newSingleThreadExecutor();
-        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService);
-        messagePersister            = new MessagePersister(messagesCache, messagesManager, accountsManager, dynamicConfigurationManager, PERSIST_DELAY);
+        persistQueueExecutorService = new ThreadPoolExecutor(PERSIST_QUEUE_CONCURRENCY, PERSIST_QUEUE_CONCURRENCY, 1, TimeUnit.SECONDS, new SynchronousQueue<>());
+        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService, false);
+        messagePersister            = new MessagePersister(messagesCache, messagesManager, accountsManager, dynamicConfigurationManager, PERSIST_DELAY, persistQueueExecutorService, PERSIST_QUEUE_CONCURRENCY);
 
         doAnswer(invocation -> {
           final UUID destinationUuid = invocation.getArgument(0);
@@ -92,6 +98,9 @@ public class MessagePersisterTest extends AbstractRedisClusterTest {
 
         notificationExecutorService.shutdown();
         notificationExecutorService.awaitTermination(1, TimeUnit.SECONDS);
+
+        persistQueueExecutorService.shutdown();
+        persistQueueExecutorService.awaitTermination(1, TimeUnit.SECONDS);
     }
 
     @Test
@@ -163,6 +172,39 @@ public class MessagePersisterTest extends AbstractRedisClusterTest {
         assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
     }
 
+    @Test
+    public void testPersistNextQueuesExecutorRejected() {
+        final int     slot             = 7;
+        final int     queueCount       = MessagePersister.QUEUE_BATCH_LIMIT + 7;
+        final int     messagesPerQueue = 10;
+        final Instant now              = Instant.now();
+
+        for (int i = 0; i < queueCount; i++) {
+            final String queueName     = generateRandomQueueNameForSlot(slot);
+            final UUID accountUuid     = MessagesCache.getAccountUuidFromQueueName(queueName);
+            final long deviceId        = MessagesCache.getDeviceIdFromQueueName(queueName);
+
+            final Account account = mock(Account.class);
+
+            when(accountsManager.get(accountUuid)).thenReturn(Optional.of(account));
+            when(account.getNumber()).thenReturn("+1" + RandomStringUtils.randomNumeric(10));
+
+            insertMessages(accountUuid, deviceId, messagesPerQueue, now);
+        }
+
+        setNextSlotToPersist(slot);
+
+        // All queues must still be persisted by the calling thread if the executor won't accept more work
+        persistQueueExecutorService.shutdown();
+
+        messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
+
+        final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+
+        verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), any(UUID.class), anyLong());
+        assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
+    }
+
     @Test
     public void testPersistQueueRetry() {
         final String  queueName    = new String(MessagesCache.getMessageQueueKey(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID), StandardCharsets.UTF_8);
@@ -182,6 +224,27 @@ public class MessagePersisterTest extends AbstractRedisClusterTest {
                      messagesCache.getQueuesToPersist(SlotHash.getSlot(queueName), Instant.now().plus(messagePersister.getPersistDelay()), 1));
     }
 
+    @Test
+    public void testPersistQueueBatchWriteIncomplete() {
+        final String  queueName    = new String(MessagesCache.getMessageQueueKey(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID), StandardCharsets.UTF_8);
+        final int     messageCount = 17;
+        final Instant now          = Instant.now();
+
+        insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, now);
+        setNextSlotToPersist(SlotHash.getSlot(queueName));
+
+        doAnswer((Answer<Void>)invocation -> {
+            throw new BatchWriteIncompleteException(1, 3);
+        }).when(messagesDynamoDb).store(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID));
+
+        messagePersister.persistNextQueues(now.plus(messagePersister.getPersistDelay()));
+
+        // Messages that may not have reached DynamoDB must stay in the cache and be scheduled for another attempt
+        assertEquals(messageCount, messagesCache.getMessagesToPersist(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount + 1).size());
+        assertEquals(List.of(queueName),
+                     messagesCache.getQueuesToPersist(SlotHash.getSlot(queueName), Instant.now().plus(messagePersister.getPersistDelay()), 1));
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static String generateRandomQueueNameForSlot(final int slot) {
         final UUID uuid = UUID.randomUUID();
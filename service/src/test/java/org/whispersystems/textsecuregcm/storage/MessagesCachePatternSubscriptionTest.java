@@ -0,0 +1,18 @@
+/*
+ * Copyright 2013-2020 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+/**
+ * Runs the {@link MessagesCacheTest} suite with keyspace notifications delivered through pattern subscriptions instead
+ * of per-queue subscriptions.
+ */
+public class MessagesCachePatternSubscriptionTest extends MessagesCacheTest {
+
+    @Override
+    protected boolean usePatternSubscriptions() {
+        return true;
+    }
+}
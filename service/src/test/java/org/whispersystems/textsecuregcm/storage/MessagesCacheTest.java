@@ -8,6 +8,8 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
 import com.google.protobuf.ByteString;
 import io.lettuce.core.cluster.SlotHash;
@@ -54,11 +56,15 @@ public class MessagesCacheTest extends AbstractRedisClusterTest {
         getRedisCluster().useCluster(connection -> connection.sync().upstream().commands().configSet("notify-keyspace-events", "Klgz"));
 
         notificationExecutorService = Executors.newSingleThreadExecutor();
-        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService);
+        messagesCache               = new MessagesCache(getRedisCluster(), getRedisCluster(), notificationExecutorService, usePatternSubscriptions());
 
         messagesCache.start();
     }
 
+    protected boolean usePatternSubscriptions() {
+        return false;
+    }
+
     @Override
     public void tearDown() throws Exception {
         messagesCache.stop();
@@ -87,6 +93,58 @@ public class MessagesCacheTest extends AbstractRedisClusterTest {
         assertEquals(firstId, secondId);
     }
 
+    @Test
+    @Parameters({"true", "false"})
+    public void testInsertBatch(final boolean sealedSender) {
+        final int messagesPerDevice = 10;
+        final UUID otherDestinationUuid = UUID.randomUUID();
+
+        final List<MessagesCache.Insertion> insertions = new ArrayList<>();
+
+        for (int i = 0; i < messagesPerDevice; i++) {
+            for (final UUID destinationUuid : List.of(DESTINATION_UUID, otherDestinationUuid)) {
+                for (final int deviceId : new int[] { DESTINATION_DEVICE_ID, DESTINATION_DEVICE_ID + 1 }) {
+                    final UUID messageGuid = UUID.randomUUID();
+                    insertions.add(new MessagesCache.Insertion(messageGuid, destinationUuid, deviceId, generateRandomMessage(messageGuid, sealedSender)));
+                }
+            }
+        }
+
+        final List<Long> messageIds = messagesCache.insert(insertions);
+
+        assertEquals(insertions.size(), messageIds.size());
+
+        for (final UUID destinationUuid : List.of(DESTINATION_UUID, otherDestinationUuid)) {
+            for (final int deviceId : new int[] { DESTINATION_DEVICE_ID, DESTINATION_DEVICE_ID + 1 }) {
+                final List<OutgoingMessageEntity> expectedMessages = new ArrayList<>(messagesPerDevice);
+
+                for (int i = 0; i < insertions.size(); i++) {
+                    final MessagesCache.Insertion insertion = insertions.get(i);
+
+                    if (insertion.getDestinationUuid().equals(destinationUuid) && insertion.getDestinationDevice() == deviceId) {
+                        expectedMessages.add(MessagesCache.constructEntityFromEnvelope(messageIds.get(i), insertion.getMessage()));
+                    }
+                }
+
+                assertEquals(expectedMessages, messagesCache.get(destinationUuid, deviceId, messagesPerDevice));
+            }
+        }
+    }
+
+    @Test
+    public void testInsertBatchDuplicateGuid() {
+        final UUID                   duplicateGuid    = UUID.randomUUID();
+        final MessageProtos.Envelope duplicateMessage = generateRandomMessage(duplicateGuid, false);
+
+        final long firstId = messagesCache.insert(duplicateGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, duplicateMessage);
+
+        final List<Long> messageIds = messagesCache.insert(List.of(
+                new MessagesCache.Insertion(duplicateGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, duplicateMessage),
+                new MessagesCache.Insertion(duplicateGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, duplicateMessage)));
+
+        assertEquals(List.of(firstId, firstId), messageIds);
+    }
+
     @Test
     @Parameters({"true", "false"})
     public void testRemoveById(final boolean sealedSender) {
@@ -230,6 +288,11 @@ public class MessagesCacheTest extends AbstractRedisClusterTest {
 
         assertEquals(Collections.emptyList(), messagesCache.get(DESTINATION_UUID, DESTINATION_DEVICE_ID, messageCount));
         assertEquals(Collections.emptyList(), messagesCache.get(DESTINATION_UUID, DESTINATION_DEVICE_ID + 1, messageCount));
+
+        for (final int deviceId : new int[] { DESTINATION_DEVICE_ID, DESTINATION_DEVICE_ID + 1 }) {
+            final int slot = SlotHash.getSlot(DESTINATION_UUID.toString() + "::" + deviceId);
+            assertTrue(messagesCache.getQueuesToPersist(slot, Instant.now().plusSeconds(60), 100).isEmpty());
+        }
     }
 
     private MessageProtos.Envelope generateRandomMessage(final UUID messageGuid, final boolean sealedSender) {
@@ -328,6 +391,49 @@ public class MessagesCacheTest extends AbstractRedisClusterTest {
         assertTrue(notified.get());
     }
 
+    @Test(timeout = 5_000L)
+    public void testNotifyReplacementListenerNewMessage() throws InterruptedException {
+        final AtomicBoolean notified    = new AtomicBoolean(false);
+        final UUID          messageGuid = UUID.randomUUID();
+
+        final MessageAvailabilityListener displacedListener = mock(MessageAvailabilityListener.class);
+
+        final MessageAvailabilityListener listener = new MessageAvailabilityListener() {
+            @Override
+            public void handleNewMessagesAvailable() {
+                synchronized (notified) {
+                    notified.set(true);
+                    notified.notifyAll();
+                }
+            }
+
+            @Override
+            public void handleNewEphemeralMessageAvailable() {
+            }
+
+            @Override
+            public void handleMessagesPersisted() {
+            }
+        };
+
+        messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, displacedListener);
+        messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, listener);
+
+        // Removing the displaced listener must not remove the listener that replaced it
+        messagesCache.removeMessageAvailabilityListener(displacedListener);
+
+        messagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, generateRandomMessage(messageGuid, true));
+
+        synchronized (notified) {
+            while (!notified.get()) {
+                notified.wait();
+            }
+        }
+
+        assertTrue(notified.get());
+        verifyZeroInteractions(displacedListener);
+    }
+
     @Test(timeout = 5_000L)
     public void testNotifyListenerPersisted() throws InterruptedException {
         final AtomicBoolean notified = new AtomicBoolean(false);
@@ -3,12 +3,16 @@ package org.whispersystems.textsecuregcm.storage;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
+import org.whispersystems.textsecuregcm.entities.OutgoingMessageEntity;
 import org.whispersystems.textsecuregcm.metrics.PushLatencyManager;
 
 class MessagesManagerTest {
@@ -43,4 +47,61 @@ class MessagesManagerTest {
 
     verifyNoMoreInteractions(reportMessageManager);
   }
+
+  @Test
+  void insertBatch() {
+    final String sourceNumber = "+12025551212";
+    final UUID destinationUuid = UUID.randomUUID();
+    final UUID messageGuid = UUID.randomUUID();
+
+    final Envelope message = Envelope.newBuilder()
+        .setSource(sourceNumber)
+        .setSourceUuid(UUID.randomUUID().toString())
+        .build();
+
+    final Envelope syncMessage = Envelope.newBuilder(message)
+        .setSourceUuid(destinationUuid.toString())
+        .build();
+
+    final List<MessagesCache.Insertion> insertions = List.of(
+        new MessagesCache.Insertion(messageGuid, destinationUuid, 1L, message),
+        new MessagesCache.Insertion(UUID.randomUUID(), destinationUuid, 2L, syncMessage));
+
+    messagesManager.insert(insertions);
+
+    verify(messagesCache).insert(insertions);
+    verify(reportMessageManager).store(sourceNumber, messageGuid);
+    verifyNoMoreInteractions(reportMessageManager);
+  }
+
+  @Test
+  void deleteBatch() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final OutgoingMessageEntity cachedMessage = createMessage();
+    final OutgoingMessageEntity persistedMessage = createMessage();
+
+    when(messagesCache.remove(destinationUuid, 1L, List.of(cachedMessage.getGuid(), persistedMessage.getGuid())))
+        .thenReturn(List.of(cachedMessage));
+
+    messagesManager.delete(destinationUuid, 1L, List.of(cachedMessage, persistedMessage));
+
+    verify(messagesDynamoDb).deleteMessages(destinationUuid, 1L, List.of(persistedMessage));
+  }
+
+  @Test
+  void deleteBatchAllCached() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final OutgoingMessageEntity cachedMessage = createMessage();
+
+    when(messagesCache.remove(destinationUuid, 1L, List.of(cachedMessage.getGuid()))).thenReturn(List.of(cachedMessage));
+
+    messagesManager.delete(destinationUuid, 1L, List.of(cachedMessage));
+
+    verify(messagesDynamoDb, never()).deleteMessages(any(), any(Long.class), any());
+  }
+
+  private static OutgoingMessageEntity createMessage() {
+    return new OutgoingMessageEntity(0, true, UUID.randomUUID(), Envelope.Type.CIPHERTEXT_VALUE, null,
+        System.currentTimeMillis(), "+18005551234", UUID.randomUUID(), 1, null, new byte[16], System.currentTimeMillis());
+  }
 }
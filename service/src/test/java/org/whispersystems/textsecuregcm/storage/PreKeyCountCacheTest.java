@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.whispersystems.textsecuregcm.redis.AbstractRedisClusterTest;
+
+public class PreKeyCountCacheTest extends AbstractRedisClusterTest {
+
+  private PreKeyCountCache preKeyCountCache;
+
+  private static final UUID ACCOUNT_UUID = UUID.randomUUID();
+  private static final long DEVICE_ID = 1L;
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+
+    preKeyCountCache = new PreKeyCountCache(getRedisCluster());
+  }
+
+  @Override
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+  }
+
+  @Test
+  public void testSetAndGet() {
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 100);
+
+    assertEquals(Optional.of(100), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID + 1));
+
+    final long ttl = getRedisCluster().withCluster(connection ->
+        connection.sync().ttl(PreKeyCountCache.getCountsKey(ACCOUNT_UUID)));
+
+    assertTrue(ttl > 0 && ttl <= PreKeyCountCache.COUNT_TTL.toSeconds());
+  }
+
+  @Test
+  public void testSetIfAbsent() {
+    preKeyCountCache.setIfAbsent(ACCOUNT_UUID, DEVICE_ID, 100);
+    assertEquals(Optional.of(100), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.setIfAbsent(ACCOUNT_UUID, DEVICE_ID, 50);
+    assertEquals("Counts that are already cached should not be replaced",
+        Optional.of(100), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 0);
+    preKeyCountCache.decrement(ACCOUNT_UUID, DEVICE_ID);
+    preKeyCountCache.setIfAbsent(ACCOUNT_UUID, DEVICE_ID, 50);
+    assertEquals("Counts that have drifted below zero should be replaced",
+        Optional.of(50), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+  }
+
+  @Test
+  public void testReplace() {
+    preKeyCountCache.replace(ACCOUNT_UUID, DEVICE_ID, 7, 2);
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 6);
+    preKeyCountCache.replace(ACCOUNT_UUID, DEVICE_ID, 7, 2);
+    assertEquals(Optional.of(6), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.replace(ACCOUNT_UUID, DEVICE_ID, 6, 2);
+    assertEquals(Optional.of(2), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+  }
+
+  @Test
+  public void testDecrement() {
+    preKeyCountCache.decrement(ACCOUNT_UUID, DEVICE_ID);
+    assertEquals("Decrementing an uncached count should not create one",
+        Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 2);
+    preKeyCountCache.decrement(ACCOUNT_UUID, DEVICE_ID);
+    assertEquals(Optional.of(1), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+
+    preKeyCountCache.decrement(ACCOUNT_UUID, DEVICE_ID);
+    preKeyCountCache.decrement(ACCOUNT_UUID, DEVICE_ID);
+    assertEquals("Counts that have drifted below zero should be treated as missing",
+        Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+  }
+
+  @Test
+  public void testClear() {
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 2);
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID + 1, 3);
+
+    preKeyCountCache.clear(ACCOUNT_UUID, DEVICE_ID);
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+    assertEquals(Optional.of(3), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID + 1));
+
+    preKeyCountCache.set(ACCOUNT_UUID, DEVICE_ID, 2);
+    preKeyCountCache.clear(ACCOUNT_UUID);
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID));
+    assertEquals(Optional.empty(), preKeyCountCache.get(ACCOUNT_UUID, DEVICE_ID + 1));
+  }
+}
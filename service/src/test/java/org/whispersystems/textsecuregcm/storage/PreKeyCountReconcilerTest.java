@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class PreKeyCountReconcilerTest {
+
+  @Test
+  void testOnCrawlChunk() {
+    final KeysDynamoDb keysDynamoDb = mock(KeysDynamoDb.class);
+    final PreKeyCountReconciler reconciler = new PreKeyCountReconciler(keysDynamoDb);
+
+    final Device firstDevice = mock(Device.class);
+    final Device secondDevice = mock(Device.class);
+    when(firstDevice.getId()).thenReturn(1L);
+    when(secondDevice.getId()).thenReturn(2L);
+
+    final Account firstAccount = mock(Account.class);
+    final Account secondAccount = mock(Account.class);
+    when(firstAccount.getUuid()).thenReturn(UUID.randomUUID());
+    when(firstAccount.getDevices()).thenReturn(Set.of(firstDevice, secondDevice));
+    when(secondAccount.getUuid()).thenReturn(UUID.randomUUID());
+    when(secondAccount.getDevices()).thenReturn(Set.of(firstDevice));
+
+    doThrow(new RuntimeException("OH NO")).when(keysDynamoDb).reconcileCount(eq(firstAccount), any(Long.class));
+
+    reconciler.onCrawlChunk(Optional.empty(), List.of(firstAccount, secondAccount));
+
+    verify(keysDynamoDb).reconcileCount(firstAccount, 1L);
+    verify(keysDynamoDb).reconcileCount(firstAccount, 2L);
+    verify(keysDynamoDb).reconcileCount(secondAccount, 1L);
+  }
+}
@@ -5,8 +5,11 @@
 
 package org.whispersystems.textsecuregcm.tests.auth;
 
+import io.dropwizard.auth.basic.BasicCredentials;
 import org.junit.Before;
 import org.junit.Test;
+import org.whispersystems.textsecuregcm.auth.AmbiguousIdentifier;
+import org.whispersystems.textsecuregcm.auth.AuthenticationCredentials;
 import org.whispersystems.textsecuregcm.auth.BaseAccountAuthenticator;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
@@ -15,10 +18,12 @@ import org.whispersystems.textsecuregcm.tests.util.AuthHelper;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -105,4 +110,24 @@ public class BaseAccountAuthenticatorTest {
 
         assertThat(oldAccount.getDevices().stream().findFirst().get().getLastSeen()).isEqualTo(today);
     }
+
+    @Test
+    public void testAuthenticateWithVerifiedCredentials() {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(currentTime));
+        when(accountsManager.get(any(AmbiguousIdentifier.class))).thenReturn(Optional.of(acct1));
+
+        final Device device = acct1.getDevices().stream().findFirst().get();
+        device.setAuthenticationCredentials(new AuthenticationCredentials("password"));
+
+        final String username = acct1.getUuid().toString();
+
+        assertThat(baseAccountAuthenticator.authenticate(new BasicCredentials(username, "password"), false)).isPresent();
+        assertThat(baseAccountAuthenticator.authenticate(new BasicCredentials(username, "password"), false)).isPresent();
+        assertThat(baseAccountAuthenticator.authenticate(new BasicCredentials(username, "wrong-password"), false)).isEmpty();
+
+        device.setAuthenticationCredentials(new AuthenticationCredentials("new-password"));
+
+        assertThat(baseAccountAuthenticator.authenticate(new BasicCredentials(username, "password"), false)).isEmpty();
+        assertThat(baseAccountAuthenticator.authenticate(new BasicCredentials(username, "new-password"), false)).isPresent();
+    }
 }
@@ -33,6 +33,7 @@ import static org.whispersystems.textsecuregcm.tests.util.JsonHelpers.jsonFixtur
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.vdurmont.semver4j.Semver;
 import io.dropwizard.auth.PolymorphicAuthValueFactoryProvider;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
@@ -47,6 +48,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -138,6 +140,7 @@ class MessageControllerTest {
   private static final ReportMessageManager        reportMessageManager        = mock(ReportMessageManager.class);
   private static final FaultTolerantRedisCluster   metricsCluster              = RedisClusterHelper.buildMockRedisCluster(redisCommands);
   private static final ScheduledExecutorService    receiptExecutor             = mock(ScheduledExecutorService.class);
+  private static final ExecutorService             multiRecipientExecutor      = MoreExecutors.newDirectExecutorService();
 
   private final ObjectMapper mapper = new ObjectMapper();
 
@@ -149,7 +152,8 @@ class MessageControllerTest {
                                                             .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
                                                             .addResource(new MessageController(rateLimiters, messageSender, receiptSender, accountsManager,
                                                                                                messagesManager, unsealedSenderRateLimiter, apnFallbackManager, dynamicConfigurationManager,
-                                                                                               rateLimitChallengeManager, reportMessageManager, metricsCluster, receiptExecutor))
+                                                                                               rateLimitChallengeManager, reportMessageManager, metricsCluster, receiptExecutor,
+                                                                                               multiRecipientExecutor, 4))
                                                             .build();
 
   @BeforeEach
@@ -6,6 +6,8 @@
 package org.whispersystems.textsecuregcm.tests.push;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -14,7 +16,10 @@ import static org.mockito.Mockito.when;
 
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.whispersystems.gcm.server.Message;
 import org.whispersystems.gcm.server.Result;
 import org.whispersystems.gcm.server.Sender;
@@ -128,4 +133,90 @@ public class GCMSenderTest {
     verify(destinationDevice, times(1)).setGcmId(eq(canonicalId));
   }
 
+  @Test
+  public void testCoalesceFeedback() {
+    String destinationNumber = "+12223334444";
+    String gcmId             = "foo";
+
+    AccountsManager accountsManager = mock(AccountsManager.class);
+    Sender          sender          = mock(Sender.class         );
+    Result          invalidResult   = mock(Result.class         );
+    ExecutorService executorService = mock(ExecutorService.class);
+
+    Account destinationAccount = mock(Account.class);
+    Device  destinationDevice  = mock(Device.class );
+
+    when(destinationAccount.getDevice(1)).thenReturn(Optional.of(destinationDevice));
+    when(accountsManager.get(destinationNumber)).thenReturn(Optional.of(destinationAccount));
+    when(destinationDevice.getGcmId()).thenReturn(gcmId);
+
+    when(invalidResult.isUnregistered()).thenReturn(true);
+    when(sender.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(invalidResult));
+
+    GcmMessage message   = new GcmMessage(gcmId, destinationNumber, 1, GcmMessage.Type.NOTIFICATION, Optional.empty());
+    GCMSender  gcmSender = new GCMSender(executorService, accountsManager, sender);
+
+    gcmSender.sendMessage(message);
+    gcmSender.sendMessage(message);
+
+    ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+    verify(executorService, times(1)).submit(captor.capture());
+
+    captor.getValue().run();
+
+    verify(accountsManager, times(1)).update(eq(destinationAccount));
+
+    // Once the pending feedback has been processed, new feedback for the same registration ID is accepted
+    gcmSender.sendMessage(message);
+    verify(executorService, times(2)).submit(any(Runnable.class));
+  }
+
+  @Test
+  public void testCoalesceFeedbackByType() {
+    AccountsManager accountsManager = mock(AccountsManager.class);
+    Sender          sender          = mock(Sender.class         );
+    Result          errorResult     = mock(Result.class         );
+    Result          invalidResult   = mock(Result.class         );
+    ExecutorService executorService = mock(ExecutorService.class);
+
+    when(errorResult.isSuccess()).thenReturn(false);
+    when(invalidResult.isUnregistered()).thenReturn(true);
+    when(sender.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(errorResult),
+                                                     CompletableFuture.completedFuture(errorResult),
+                                                     CompletableFuture.completedFuture(invalidResult));
+
+    GcmMessage message   = new GcmMessage("foo", "+12223334444", 1, GcmMessage.Type.NOTIFICATION, Optional.empty());
+    GCMSender  gcmSender = new GCMSender(executorService, accountsManager, sender);
+
+    gcmSender.sendMessage(message);
+    gcmSender.sendMessage(message);
+    verify(executorService, times(1)).submit(any(Runnable.class));
+
+    // A pending generic error doesn't hide a later unregistration for the same registration ID
+    gcmSender.sendMessage(message);
+    verify(executorService, times(2)).submit(any(Runnable.class));
+  }
+
+  @Test
+  public void testFeedbackRejected() {
+    AccountsManager accountsManager = mock(AccountsManager.class);
+    Sender          sender          = mock(Sender.class         );
+    Result          invalidResult   = mock(Result.class         );
+    ExecutorService executorService = mock(ExecutorService.class);
+
+    when(invalidResult.isUnregistered()).thenReturn(true);
+    when(sender.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(invalidResult));
+    doThrow(new RejectedExecutionException()).when(executorService).submit(any(Runnable.class));
+
+    GcmMessage message   = new GcmMessage("foo", "+12223334444", 1, GcmMessage.Type.NOTIFICATION, Optional.empty());
+    GCMSender  gcmSender = new GCMSender(executorService, accountsManager, sender);
+
+    gcmSender.sendMessage(message);
+    gcmSender.sendMessage(message);
+
+    // A rejected submission doesn't leave the registration ID marked as pending
+    verify(executorService, times(2)).submit(any(Runnable.class));
+    verify(accountsManager, never()).update(any());
+  }
+
 }
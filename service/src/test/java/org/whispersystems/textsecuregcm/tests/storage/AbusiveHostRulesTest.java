@@ -90,6 +90,30 @@ public class AbusiveHostRulesTest {
     assertThat(rules.get(0).getRegions()).isEqualTo(Arrays.asList("+1", "+49"));
   }
 
+  @Test
+  public void testRefreshedRules() throws SQLException {
+    PreparedStatement statement = db.getTestDatabase().getConnection().prepareStatement("INSERT INTO abusive_host_rules (host, blocked, regions) VALUES (?::INET, ?, ?)");
+    statement.setString(1, "192.168.1.0/24");
+    statement.setInt(2, 0);
+    statement.setString(3, "+1,+49");
+    statement.execute();
+
+    abusiveHostRules.refresh();
+
+    List<AbusiveHostRule> rules = abusiveHostRules.getAbusiveHostRulesFor("192.168.1.100");
+    assertThat(rules.size()).isEqualTo(1);
+    assertThat(rules.get(0).isBlocked()).isFalse();
+    assertThat(rules.get(0).getRegions()).isEqualTo(Arrays.asList("+1", "+49"));
+
+    assertThat(abusiveHostRules.getAbusiveHostRulesFor("172.17.0.1").isEmpty()).isTrue();
+
+    abusiveHostRules.setBlockedHost("172.17.0.1", "Testing one two");
+
+    rules = abusiveHostRules.getAbusiveHostRulesFor("172.17.0.1");
+    assertThat(rules.size()).isEqualTo(1);
+    assertThat(rules.get(0).isBlocked()).isTrue();
+  }
+
   @Test
   public void testInsertBlocked() throws Exception {
     abusiveHostRules.setBlockedHost("172.17.0.1", "Testing one two");
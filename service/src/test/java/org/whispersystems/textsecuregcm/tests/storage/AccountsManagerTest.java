@@ -20,11 +20,16 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -38,6 +43,7 @@ import org.whispersystems.textsecuregcm.securebackup.SecureBackupClient;
 import org.whispersystems.textsecuregcm.securestorage.SecureStorageClient;
 import org.whispersystems.textsecuregcm.sqs.DirectoryQueue;
 import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.AccountNearCache;
 import org.whispersystems.textsecuregcm.storage.Accounts;
 import org.whispersystems.textsecuregcm.storage.AccountsDynamoDb;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
@@ -54,6 +60,7 @@ class AccountsManagerTest {
 
   private DynamicConfigurationManager dynamicConfigurationManager = mock(DynamicConfigurationManager.class);
   private ExperimentEnrollmentManager experimentEnrollmentManager = mock(ExperimentEnrollmentManager.class);
+  private AccountNearCache            accountNearCache            = mock(AccountNearCache.class);
 
   @BeforeEach
   void setup() {
@@ -61,6 +68,13 @@ class AccountsManagerTest {
     DynamicConfiguration dynamicConfiguration = new DynamicConfiguration();
 
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
+
+    //noinspection unchecked
+    when(accountNearCache.get(any(UUID.class), any())).thenAnswer(invocation -> ((Supplier<String>) invocation.getArgument(1)).get());
+
+    //noinspection unchecked
+    when(accountNearCache.getAll(any(), any())).thenAnswer(invocation -> ((Function<List<UUID>, Map<UUID, String>>) invocation.getArgument(1))
+        .apply(List.copyOf(invocation.getArgument(0))));
   }
 
   @ParameterizedTest
@@ -85,7 +99,7 @@ class AccountsManagerTest {
     when(commands.get(eq("AccountMap::+14152222222"))).thenReturn(uuid.toString());
     when(commands.get(eq("Account3::" + uuid.toString()))).thenReturn("{\"number\": \"+14152222222\", \"name\": \"test\"}");
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> account         = accountsManager.get("+14152222222");
 
     assertTrue(account.isPresent());
@@ -134,7 +148,7 @@ class AccountsManagerTest {
 
     when(commands.get(eq("Account3::" + uuid.toString()))).thenReturn("{\"number\": \"+14152222222\", \"name\": \"test\"}");
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> account         = accountsManager.get(uuid);
 
     assertTrue(account.isPresent());
@@ -172,7 +186,7 @@ class AccountsManagerTest {
     when(commands.get(eq("AccountMap::+14152222222"))).thenReturn(null);
     when(accounts.get(eq("+14152222222"))).thenReturn(Optional.of(account));
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> retrieved       = accountsManager.get("+14152222222");
 
     assertTrue(retrieved.isPresent());
@@ -213,7 +227,7 @@ class AccountsManagerTest {
     when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
     when(accounts.get(eq(uuid))).thenReturn(Optional.of(account));
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> retrieved       = accountsManager.get(uuid);
 
     assertTrue(retrieved.isPresent());
@@ -231,6 +245,52 @@ class AccountsManagerTest {
     verifyNoMoreInteractions(accountsDynamoDb);
   }
 
+
+  @Test
+  void testGetAccountsByUuids() {
+    RedisAdvancedClusterCommands<String, String> commands            = mock(RedisAdvancedClusterCommands.class);
+    FaultTolerantRedisCluster                    cacheCluster        = RedisClusterHelper.buildMockRedisCluster(commands);
+    Accounts                                     accounts            = mock(Accounts.class);
+    AccountsDynamoDb                             accountsDynamoDb    = mock(AccountsDynamoDb.class);
+    DirectoryQueue                               directoryQueue      = mock(DirectoryQueue.class);
+    KeysDynamoDb                                 keysDynamoDb        = mock(KeysDynamoDb.class);
+    MessagesManager                              messagesManager     = mock(MessagesManager.class);
+    UsernamesManager                             usernamesManager    = mock(UsernamesManager.class);
+    ProfilesManager                              profilesManager     = mock(ProfilesManager.class);
+    SecureBackupClient                           secureBackupClient  = mock(SecureBackupClient.class);
+    SecureStorageClient                          secureStorageClient = mock(SecureStorageClient.class);
+    UUID                                         cachedUuid          = UUID.randomUUID();
+    UUID                                         uncachedUuid        = UUID.randomUUID();
+    UUID                                         missingUuid         = UUID.randomUUID();
+    Account                                      uncachedAccount     = new Account("+14152222222", uncachedUuid, new HashSet<>(), new byte[16]);
+
+    enableDynamo(false);
+
+    when(commands.mget("Account3::" + cachedUuid, "Account3::" + uncachedUuid, "Account3::" + missingUuid)).thenReturn(List.of(
+        KeyValue.just("Account3::" + cachedUuid, "{\"number\": \"+14153333333\", \"name\": \"test\"}"),
+        KeyValue.empty("Account3::" + uncachedUuid),
+        KeyValue.empty("Account3::" + missingUuid)));
+
+    when(accounts.get(eq(uncachedUuid))).thenReturn(Optional.of(uncachedAccount));
+    when(accounts.get(eq(missingUuid))).thenReturn(Optional.empty());
+
+    AccountsManager    accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    Map<UUID, Account> retrieved       = accountsManager.getByUuids(List.of(cachedUuid, uncachedUuid, missingUuid));
+
+    assertEquals(2, retrieved.size());
+    assertEquals(cachedUuid, retrieved.get(cachedUuid).getUuid());
+    assertEquals("+14153333333", retrieved.get(cachedUuid).getNumber());
+    assertSame(uncachedAccount, retrieved.get(uncachedUuid));
+
+    verify(commands, times(1)).mget("Account3::" + cachedUuid, "Account3::" + uncachedUuid, "Account3::" + missingUuid);
+    verify(commands, times(1)).set(eq("AccountMap::+14152222222"), eq(uncachedUuid.toString()));
+    verify(commands, times(1)).set(eq("Account3::" + uncachedUuid), anyString());
+    verifyNoMoreInteractions(commands);
+
+    verify(accounts, times(1)).get(eq(uncachedUuid));
+    verify(accounts, times(1)).get(eq(missingUuid));
+    verifyNoMoreInteractions(accounts);
+  }
   @ParameterizedTest
   @ValueSource(booleans = {true, false})
   void testGetAccountByNumberBrokenCache(boolean dynamoEnabled) {
@@ -253,7 +313,7 @@ class AccountsManagerTest {
     when(commands.get(eq("AccountMap::+14152222222"))).thenThrow(new RedisException("Connection lost!"));
     when(accounts.get(eq("+14152222222"))).thenReturn(Optional.of(account));
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> retrieved       = accountsManager.get("+14152222222");
 
     assertTrue(retrieved.isPresent());
@@ -293,7 +353,7 @@ class AccountsManagerTest {
     when(commands.get(eq("Account3::" + uuid))).thenThrow(new RedisException("Connection lost!"));
     when(accounts.get(eq(uuid))).thenReturn(Optional.of(account));
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
     Optional<Account> retrieved       = accountsManager.get(uuid);
 
     assertTrue(retrieved.isPresent());
@@ -332,7 +392,7 @@ class AccountsManagerTest {
 
     when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
 
     assertEquals(0, account.getDynamoDbMigrationVersion());
 
@@ -343,6 +403,8 @@ class AccountsManagerTest {
     verify(accounts, times(1)).update(account);
     verifyNoMoreInteractions(accounts);
 
+    verify(accountNearCache).invalidate(uuid);
+
     verify(accountsDynamoDb, dynamoEnabled ? times(1) : never()).update(account);
     verifyNoMoreInteractions(accountsDynamoDb);
   }
@@ -368,7 +430,7 @@ class AccountsManagerTest {
     when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
     doThrow(ConditionalCheckFailedException.class).when(accountsDynamoDb).update(any(Account.class));
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
 
     assertEquals(0, account.getDynamoDbMigrationVersion());
 
@@ -398,7 +460,7 @@ class AccountsManagerTest {
     SecureBackupClient                           secureBackupClient  = mock(SecureBackupClient.class);
     SecureStorageClient                          secureStorageClient = mock(SecureStorageClient.class);
 
-    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
+    AccountsManager   accountsManager = new AccountsManager(accounts, accountsDynamoDb, cacheCluster, accountNearCache, directoryQueue, keysDynamoDb, messagesManager, usernamesManager, profilesManager, secureStorageClient, secureBackupClient, experimentEnrollmentManager, dynamicConfigurationManager);
 
     assertEquals(Optional.empty(), accountsManager.compareAccounts(Optional.empty(), Optional.empty()));
 
@@ -165,6 +165,21 @@ public class MessagesDynamoDbTest {
     assertThat(messagesDynamoDb.load(secondDestinationUuid, 1, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().isEmpty();
   }
 
+  @Test
+  public void testDeleteMessages() {
+    final UUID destinationUuid = UUID.randomUUID();
+    messagesDynamoDb.store(List.of(MESSAGE1, MESSAGE2), destinationUuid, 1);
+    messagesDynamoDb.store(List.of(MESSAGE3), destinationUuid, 2);
+
+    final List<OutgoingMessageEntity> loaded = messagesDynamoDb.load(destinationUuid, 1, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE);
+    assertThat(loaded).hasSize(2);
+
+    messagesDynamoDb.deleteMessages(destinationUuid, 1, loaded);
+
+    assertThat(messagesDynamoDb.load(destinationUuid, 1, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().isEmpty();
+    assertThat(messagesDynamoDb.load(destinationUuid, 2, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().hasSize(1).element(0).satisfies(verify(MESSAGE3));
+  }
+
   private static void verify(OutgoingMessageEntity retrieved, MessageProtos.Envelope inserted) {
     assertThat(retrieved.getTimestamp()).isEqualTo(inserted.getTimestamp());
     assertThat(retrieved.getSource()).isEqualTo(inserted.hasSource() ? inserted.getSource() : null);
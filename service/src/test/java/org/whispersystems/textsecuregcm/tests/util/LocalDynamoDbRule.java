@@ -12,6 +12,7 @@ import org.junit.rules.ExternalResource;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.net.ServerSocket;
@@ -52,4 +53,13 @@ public class LocalDynamoDbRule extends ExternalResource {
             AwsBasicCredentials.create("accessKey", "secretKey")))
         .build();
   }
+
+  public DynamoDbAsyncClient getDynamoDbAsyncClient() {
+    return DynamoDbAsyncClient.builder()
+        .endpointOverride(URI.create("http://localhost:" + port))
+        .region(Region.of("local-test-region"))
+        .credentialsProvider(StaticCredentialsProvider.create(
+            AwsBasicCredentials.create("accessKey", "secretKey")))
+        .build();
+  }
 }
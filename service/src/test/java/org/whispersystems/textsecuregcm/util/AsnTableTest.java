@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import java.util.Optional;
@@ -30,6 +31,24 @@ class AsnTableTest {
       }
     }
 
+    @Test
+    void getAsnRangeBoundaries() throws IOException {
+      final String tsv = "3221225472\t3221225727\t65000\tUS\tHigh half\n"
+          + "16777216\t16777471\t13335\tUS\tCLOUDFLARENET\n"
+          + "16777216\t16777471\t15169\tUS\tGOOGLE\n"
+          + "4294967040\t4294967295\t65001\tZZ\tTop of the range\n";
+
+      final AsnTable asnTable = new AsnTable(new StringReader(tsv));
+
+      assertEquals(Optional.of(15169L), asnTable.getAsn((Inet4Address) Inet4Address.getByName("1.0.0.0")));
+      assertEquals(Optional.of(15169L), asnTable.getAsn((Inet4Address) Inet4Address.getByName("1.0.0.255")));
+      assertEquals(Optional.empty(), asnTable.getAsn((Inet4Address) Inet4Address.getByName("1.0.1.0")));
+      assertEquals(Optional.empty(), asnTable.getAsn((Inet4Address) Inet4Address.getByName("0.255.255.255")));
+      assertEquals(Optional.of(65000L), asnTable.getAsn((Inet4Address) Inet4Address.getByName("192.0.0.1")));
+      assertEquals(Optional.of(65001L), asnTable.getAsn((Inet4Address) Inet4Address.getByName("255.255.255.255")));
+      assertEquals(Optional.empty(), asnTable.getAsn((Inet4Address) Inet4Address.getByName("255.255.254.255")));
+    }
+
     @Test
     void getCountryCode() throws IOException {
       try (final InputStreamReader reader = new InputStreamReader(getClass().getResourceAsStream("ip2asn-test.tsv"))) {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.net.InetAddresses;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IpPrefixTrieTest {
+
+  @Test
+  void testGet() {
+    final IpPrefixTrie<String> trie = IpPrefixTrie.<String>builder()
+        .add(InetAddresses.forString("192.168.0.0"), 16, "192.168.0.0/16")
+        .add(InetAddresses.forString("192.168.1.0"), 24, "192.168.1.0/24")
+        .add(InetAddresses.forString("192.168.1.1"), 32, "192.168.1.1")
+        .add(InetAddresses.forString("10.1.2.3"), 8, "10.0.0.0/8")
+        .add(InetAddresses.forString("2001:db8::"), 32, "2001:db8::/32")
+        .build();
+
+    assertEquals(List.of("192.168.0.0/16", "192.168.1.0/24", "192.168.1.1"), trie.get(InetAddresses.forString("192.168.1.1")));
+    assertEquals(List.of("192.168.0.0/16", "192.168.1.0/24"), trie.get(InetAddresses.forString("192.168.1.2")));
+    assertEquals(List.of("192.168.0.0/16"), trie.get(InetAddresses.forString("192.168.2.1")));
+    assertEquals(List.of("10.0.0.0/8"), trie.get(InetAddresses.forString("10.200.0.1")));
+    assertTrue(trie.get(InetAddresses.forString("172.17.1.1")).isEmpty());
+
+    assertEquals(List.of("2001:db8::/32"), trie.get(InetAddresses.forString("2001:db8:1234::1")));
+    assertTrue(trie.get(InetAddresses.forString("2001:db9::1")).isEmpty());
+  }
+
+  @Test
+  void testMultipleValuesForPrefix() {
+    final IpPrefixTrie<String> trie = IpPrefixTrie.<String>builder()
+        .add(InetAddresses.forString("192.168.1.0"), 24, "first")
+        .add(InetAddresses.forString("192.168.1.0"), 24, "second")
+        .build();
+
+    assertEquals(List.of("first", "second"), trie.get(InetAddresses.forString("192.168.1.100")));
+  }
+
+  @Test
+  void testMatchAll() {
+    final IpPrefixTrie<String> trie = IpPrefixTrie.<String>builder()
+        .add(InetAddresses.forString("0.0.0.0"), 0, "everything")
+        .build();
+
+    assertEquals(List.of("everything"), trie.get(InetAddresses.forString("8.8.8.8")));
+    assertTrue(trie.get(InetAddresses.forString("::1")).isEmpty(), "IPv4 prefixes should not match IPv6 addresses");
+  }
+
+  @Test
+  void testManyPrefixes() {
+    final IpPrefixTrie.Builder<Integer> builder = IpPrefixTrie.builder();
+
+    for (int i = 0; i < 1024; i++) {
+      builder.add(InetAddresses.fromInteger(i << 8), 24, i);
+    }
+
+    final IpPrefixTrie<Integer> trie = builder.build();
+
+    for (int i = 0; i < 1024; i++) {
+      assertEquals(List.of(i), trie.get(InetAddresses.fromInteger((i << 8) | 0x7f)));
+    }
+  }
+
+  @Test
+  void testInvalidPrefixLength() {
+    final IpPrefixTrie.Builder<String> builder = IpPrefixTrie.builder();
+
+    assertThrows(IllegalArgumentException.class, () -> builder.add(InetAddresses.forString("10.0.0.0"), 33, "nope"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add(InetAddresses.forString("10.0.0.0"), -1, "nope"));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TimerWheelTest {
+
+  private static final long TICK_MILLIS = 100;
+
+  @ParameterizedTest
+  @ValueSource(longs = {0, 50, 100, 15_000, 25_599, 25_600, 3_600_000, 7L * 24 * 60 * 60 * 1000})
+  void testExpiration(final long delayMillis) {
+    final long               start = 1_000_000_123L;
+    final TimerWheel<String> wheel = new TimerWheel<>(TICK_MILLIS, start);
+
+    wheel.schedule("key", start + delayMillis);
+
+    final long deadlineTick = (start + delayMillis) / TICK_MILLIS;
+
+    if (deadlineTick > start / TICK_MILLIS) {
+      assertTrue(wheel.advance(deadlineTick * TICK_MILLIS - 1).isEmpty());
+    }
+
+    final List<TimerWheel.Expiration<String>> expirations = wheel.advance(start + delayMillis);
+
+    assertEquals(1, expirations.size());
+    assertEquals("key", expirations.get(0).getKey());
+    assertEquals(start + delayMillis, expirations.get(0).getDeadlineMillis());
+    assertEquals(0, wheel.size());
+
+    assertTrue(wheel.advance(start + delayMillis + 10 * TICK_MILLIS).isEmpty());
+  }
+
+  @Test
+  void testPastDeadline() {
+    final TimerWheel<String> wheel = new TimerWheel<>(TICK_MILLIS, 10_000);
+
+    wheel.schedule("key", 5_000);
+
+    assertEquals(List.of("key"), keys(wheel.advance(10_000)));
+  }
+
+  @Test
+  void testCancel() {
+    final TimerWheel<String> wheel = new TimerWheel<>(TICK_MILLIS, 0);
+
+    wheel.schedule("a", 1_000);
+    wheel.schedule("b", 1_000_000);
+
+    assertTrue(wheel.cancel("a"));
+    assertTrue(wheel.cancel("b"));
+    assertFalse(wheel.cancel("c"));
+    assertEquals(0, wheel.size());
+
+    assertTrue(wheel.advance(2_000_000).isEmpty());
+  }
+
+  @Test
+  void testReschedule() {
+    final TimerWheel<String> wheel = new TimerWheel<>(TICK_MILLIS, 0);
+
+    wheel.schedule("key", 1_000);
+    wheel.schedule("key", 60_000);
+
+    assertEquals(1, wheel.size());
+    assertTrue(wheel.advance(59_999).isEmpty());
+    assertEquals(List.of("key"), keys(wheel.advance(60_000)));
+  }
+
+  @Test
+  void testRandomDeadlines() {
+    final Random              random    = new Random(0);
+    final TimerWheel<Integer> wheel     = new TimerWheel<>(TICK_MILLIS, 0);
+    final Map<Integer, Long>  deadlines = new HashMap<>();
+
+    for (int i = 0; i < 10_000; i++) {
+      final long deadline = (long) (random.nextDouble() * 4_000_000);
+
+      deadlines.put(i, deadline);
+      wheel.schedule(i, deadline);
+    }
+
+    final List<Integer> expired = new ArrayList<>();
+
+    for (long now = 0; now <= 4_000_000; now += random.nextInt(5_000)) {
+      for (final TimerWheel.Expiration<Integer> expiration : wheel.advance(now)) {
+        final long deadline = deadlines.get(expiration.getKey());
+
+        // Keys must expire during the tick containing their deadline or, if the wheel skipped ahead, as soon after as possible
+        assertTrue(deadline / TICK_MILLIS <= now / TICK_MILLIS);
+        assertTrue(deadline > now - 5_000 - TICK_MILLIS);
+
+        expired.add(expiration.getKey());
+      }
+    }
+
+    expired.addAll(keys(wheel.advance(4_000_000)));
+
+    assertEquals(deadlines.size(), expired.size());
+    assertEquals(0, wheel.size());
+  }
+
+  private static <K> List<K> keys(final List<TimerWheel.Expiration<K>> expirations) {
+    return expirations.stream().map(TimerWheel.Expiration::getKey).collect(Collectors.toList());
+  }
+}
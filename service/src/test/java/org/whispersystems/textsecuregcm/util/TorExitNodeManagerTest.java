@@ -5,6 +5,7 @@
 
 package org.whispersystems.textsecuregcm.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -36,4 +37,41 @@ public class TorExitNodeManagerTest extends AbstractRedisClusterTest {
     assertTrue(torExitNodeManager.isTorExitNode("10.0.0.2"));
     assertFalse(torExitNodeManager.isTorExitNode("10.0.0.3"));
   }
+
+  @Test
+  public void testIsTorExitNodeMixedAddresses() {
+    final MonitoredS3ObjectConfiguration configuration = new MonitoredS3ObjectConfiguration();
+    configuration.setS3Region("ap-northeast-3");
+
+    final TorExitNodeManager torExitNodeManager =
+        new TorExitNodeManager(mock(ScheduledExecutorService.class), configuration);
+
+    torExitNodeManager.handleExitListChangedStream(
+        new ByteArrayInputStream("255.255.255.255\n2001:db8::1\n\nnot an address\n 192.168.1.1 \n".getBytes(StandardCharsets.UTF_8)));
+
+    assertTrue(torExitNodeManager.isTorExitNode("255.255.255.255"));
+    assertTrue(torExitNodeManager.isTorExitNode("192.168.1.1"));
+    assertTrue(torExitNodeManager.isTorExitNode("2001:db8::1"));
+    assertTrue(torExitNodeManager.isTorExitNode("2001:0db8:0000:0000:0000:0000:0000:0001"));
+    assertFalse(torExitNodeManager.isTorExitNode("2001:db8::2"));
+    assertFalse(torExitNodeManager.isTorExitNode("0.0.0.0"));
+    assertFalse(torExitNodeManager.isTorExitNode("not an address"));
+    assertFalse(torExitNodeManager.isTorExitNode(""));
+  }
+
+  @Test
+  public void testParseIpv4Address() {
+    assertEquals(0L, TorExitNodeManager.parseIpv4Address("0.0.0.0"));
+    assertEquals(0xc0a80101L, TorExitNodeManager.parseIpv4Address("192.168.1.1"));
+    assertEquals(0xffffffffL, TorExitNodeManager.parseIpv4Address("255.255.255.255"));
+
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address(""));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("256.0.0.1"));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("1.2.3"));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("1.2.3.4.5"));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("1..2.3"));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("1.2.3."));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("1.2.3.1000"));
+    assertEquals(-1L, TorExitNodeManager.parseIpv4Address("::1"));
+  }
 }
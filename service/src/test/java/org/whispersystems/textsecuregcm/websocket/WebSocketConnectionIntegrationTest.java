@@ -78,7 +78,7 @@ public class WebSocketConnectionIntegrationTest extends AbstractRedisClusterTest
         super.setUp();
 
         executorService = Executors.newSingleThreadExecutor();
-        messagesCache = new MessagesCache(getRedisCluster(), getRedisCluster(), executorService);
+        messagesCache = new MessagesCache(getRedisCluster(), getRedisCluster(), executorService, false);
         messagesDynamoDb = new MessagesDynamoDb(messagesDynamoDbRule.getDynamoDbClient(), MessagesDynamoDbRule.TABLE_NAME, Duration.ofDays(7));
         reportMessageManager = mock(ReportMessageManager.class);
         account = mock(Account.class);
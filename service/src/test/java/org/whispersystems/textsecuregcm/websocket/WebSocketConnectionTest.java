@@ -198,7 +198,7 @@ public class WebSocketConnectionTest {
     futures.get(0).completeExceptionally(new IOException());
     futures.get(2).completeExceptionally(new IOException());
 
-    verify(storedMessages, times(1)).delete(eq(accountUuid), eq(2L), eq(outgoingMessages.get(1).getGuid()));
+    verify(storedMessages, times(1)).delete(eq(accountUuid), eq(2L), eq(List.of(outgoingMessages.get(1))));
     verify(receiptSender, times(1)).sendReceipt(eq(account), eq("sender1"), eq(2222L));
 
     connection.stop();
@@ -713,7 +713,8 @@ public class WebSocketConnectionTest {
 
     // We should delete all three messages even though we only sent two; one got discarded because it was too big for
     // desktop clients.
-    verify(storedMessages, times(3)).delete(eq(accountUuid), eq(2L), any(UUID.class));
+    verify(storedMessages, times(1)).delete(eq(accountUuid), eq(2L),
+        ArgumentMatchers.<List<OutgoingMessageEntity>>argThat(messages -> messages.size() == 3 && messages.containsAll(outgoingMessages)));
 
     connection.stop();
     verify(client).close(anyInt(), anyString());
@@ -785,7 +786,8 @@ public class WebSocketConnectionTest {
     futures.get(1).complete(response);
     futures.get(2).complete(response);
 
-    verify(storedMessages, times(3)).delete(eq(accountUuid), eq(2L), any(UUID.class));
+    verify(storedMessages, times(1)).delete(eq(accountUuid), eq(2L),
+        ArgumentMatchers.<List<OutgoingMessageEntity>>argThat(messages -> messages.size() == 3 && messages.containsAll(outgoingMessages)));
 
     connection.stop();
     verify(client).close(anyInt(), anyString());
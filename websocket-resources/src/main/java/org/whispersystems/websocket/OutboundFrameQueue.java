@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.websocket;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of bytes and frames a single connection may have handed to the container for writing. Frames sent
+ * while those limits are reached wait in a bounded queue and are written as earlier frames complete; frames that would
+ * overflow the queue fail immediately. When several queued frames become writable at once, they're written as a batch
+ * so the container can coalesce them into fewer network writes.
+ * <p>
+ * Both requests and responses for a connection must be sent through its queue; the queue changes the remote endpoint's
+ * batch mode while writing, and so must be the endpoint's only writer.
+ */
+class OutboundFrameQueue {
+
+  private final RemoteEndpoint remoteEndpoint;
+  private final long           maxInFlightBytes;
+  private final int            maxInFlightFrames;
+  private final long           maxQueuedBytes;
+
+  private final Queue<PendingFrame> queuedFrames = new ArrayDeque<>();
+
+  private long    queuedBytes;
+  private long    inFlightBytes;
+  private int     inFlightFrames;
+  private boolean writing;
+
+  private static final AtomicLong TOTAL_QUEUED_BYTES    = new AtomicLong();
+  private static final AtomicLong TOTAL_IN_FLIGHT_BYTES = new AtomicLong();
+
+  private static final Counter             REJECTED_FRAMES_COUNTER  = Metrics.counter(name(OutboundFrameQueue.class, "rejectedFrames"));
+  private static final Counter             COALESCED_FRAMES_COUNTER = Metrics.counter(name(OutboundFrameQueue.class, "coalescedFrames"));
+  private static final DistributionSummary QUEUED_BYTES_SUMMARY     = DistributionSummary.builder(name(OutboundFrameQueue.class, "connectionQueuedBytes"))
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .register(Metrics.globalRegistry);
+
+  static {
+    Metrics.gauge(name(OutboundFrameQueue.class, "queuedBytes"), TOTAL_QUEUED_BYTES);
+    Metrics.gauge(name(OutboundFrameQueue.class, "inFlightBytes"), TOTAL_IN_FLIGHT_BYTES);
+  }
+
+  private static class PendingFrame {
+
+    private final ByteBuffer    data;
+    private final int           size;
+    private final WriteCallback callback;
+
+    private PendingFrame(final ByteBuffer data, final WriteCallback callback) {
+      this.data     = data;
+      this.size     = data.remaining();
+      this.callback = callback;
+    }
+  }
+
+  OutboundFrameQueue(final RemoteEndpoint remoteEndpoint, final long maxInFlightBytes, final int maxInFlightFrames, final long maxQueuedBytes) {
+    this.remoteEndpoint    = remoteEndpoint;
+    this.maxInFlightBytes  = maxInFlightBytes;
+    this.maxInFlightFrames = maxInFlightFrames;
+    this.maxQueuedBytes    = maxQueuedBytes;
+  }
+
+  /**
+   * Writes the given frame as soon as flow control permits. The given callback is notified when the write completes,
+   * or if the frame is rejected because this connection already has too many bytes queued.
+   */
+  void send(final ByteBuffer data, final WriteCallback callback) {
+    final PendingFrame frame = new PendingFrame(data, callback);
+
+    final boolean rejected;
+
+    synchronized (this) {
+      rejected = queuedBytes + frame.size > maxQueuedBytes;
+
+      if (!rejected) {
+        queuedFrames.add(frame);
+        queuedBytes += frame.size;
+        TOTAL_QUEUED_BYTES.addAndGet(frame.size);
+        QUEUED_BYTES_SUMMARY.record(queuedBytes);
+      }
+    }
+
+    // Callbacks may do arbitrary work (including sending more frames), so never notify them while holding the lock
+    if (rejected) {
+      REJECTED_FRAMES_COUNTER.increment();
+      frame.callback.writeFailed(new WebSocketException("Outbound queue is full"));
+    } else {
+      writeQueuedFrames();
+    }
+  }
+
+  private void writeQueuedFrames() {
+    while (true) {
+      final List<PendingFrame> writableFrames;
+
+      synchronized (this) {
+        // Only one thread writes at a time so that frames reach the container in the order they were sent; frames that
+        // become writable while another thread is writing will be picked up by that thread.
+        if (writing) {
+          return;
+        }
+
+        writableFrames = takeWritableFrames();
+
+        if (writableFrames.isEmpty()) {
+          return;
+        }
+
+        writing = true;
+      }
+
+      try {
+        write(writableFrames);
+      } finally {
+        synchronized (this) {
+          writing = false;
+        }
+      }
+    }
+  }
+
+  private synchronized List<PendingFrame> takeWritableFrames() {
+    final List<PendingFrame> writableFrames = new ArrayList<>();
+
+    while (!queuedFrames.isEmpty()) {
+      final PendingFrame frame = queuedFrames.peek();
+
+      // Always allow at least one frame in flight so that frames larger than the in-flight limit can still be written
+      final boolean writable = inFlightFrames == 0 ||
+          (inFlightFrames < maxInFlightFrames && inFlightBytes + frame.size <= maxInFlightBytes);
+
+      if (!writable) {
+        break;
+      }
+
+      queuedFrames.remove();
+      queuedBytes -= frame.size;
+      inFlightBytes += frame.size;
+      inFlightFrames++;
+
+      TOTAL_QUEUED_BYTES.addAndGet(-frame.size);
+      TOTAL_IN_FLIGHT_BYTES.addAndGet(frame.size);
+
+      writableFrames.add(frame);
+    }
+
+    return writableFrames;
+  }
+
+  private void write(final List<PendingFrame> frames) {
+    // Let the container aggregate all but the last frame; writing the last frame without batching flushes the batch
+    final boolean   coalesce          = frames.size() > 1;
+    final BatchMode originalBatchMode = coalesce ? remoteEndpoint.getBatchMode() : null;
+
+    try {
+      if (coalesce) {
+        remoteEndpoint.setBatchMode(BatchMode.ON);
+      }
+
+      for (int i = 0; i < frames.size(); i++) {
+        if (coalesce && i == frames.size() - 1) {
+          remoteEndpoint.setBatchMode(BatchMode.OFF);
+        }
+
+        try {
+          write(frames.get(i));
+        } catch (final RuntimeException e) {
+          // The container won't accept this frame, and almost certainly won't accept the ones after it; fail them all
+          // so their in-flight accounting is released and their callbacks are always notified
+          for (final PendingFrame failedFrame : frames.subList(i, frames.size())) {
+            handleWriteComplete(failedFrame);
+            failedFrame.callback.writeFailed(e);
+          }
+
+          return;
+        }
+      }
+
+      if (coalesce) {
+        COALESCED_FRAMES_COUNTER.increment(frames.size() - 1);
+      }
+    } finally {
+      if (coalesce) {
+        remoteEndpoint.setBatchMode(originalBatchMode);
+      }
+    }
+  }
+
+  private void write(final PendingFrame frame) {
+    remoteEndpoint.sendBytes(frame.data, new WriteCallback() {
+      @Override
+      public void writeFailed(final Throwable cause) {
+        handleWriteComplete(frame);
+        frame.callback.writeFailed(cause);
+      }
+
+      @Override
+      public void writeSuccess() {
+        handleWriteComplete(frame);
+        frame.callback.writeSuccess();
+      }
+    });
+  }
+
+  private void handleWriteComplete(final PendingFrame frame) {
+    synchronized (this) {
+      inFlightBytes -= frame.size;
+      inFlightFrames--;
+    }
+
+    TOTAL_IN_FLIGHT_BYTES.addAndGet(-frame.size);
+
+    writeQueuedFrames();
+  }
+
+  @VisibleForTesting
+  synchronized long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  @VisibleForTesting
+  synchronized long getInFlightBytes() {
+    return inFlightBytes;
+  }
+
+  @VisibleForTesting
+  synchronized int getInFlightFrames() {
+    return inFlightFrames;
+  }
+}
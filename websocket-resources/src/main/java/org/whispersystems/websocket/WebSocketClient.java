@@ -4,9 +4,7 @@
  */
 package org.whispersystems.websocket;
 
-import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,17 +26,17 @@ public class WebSocketClient {
   private static final Logger logger = LoggerFactory.getLogger(WebSocketClient.class);
 
   private final Session                                                session;
-  private final RemoteEndpoint                                         remoteEndpoint;
   private final WebSocketMessageFactory                                messageFactory;
   private final Map<Long, CompletableFuture<WebSocketResponseMessage>> pendingRequestMapper;
+  private final OutboundFrameQueue                                     outboundFrameQueue;
   private final long                                                   created;
 
-  public WebSocketClient(Session session, RemoteEndpoint remoteEndpoint,
-                         WebSocketMessageFactory messageFactory,
-                         Map<Long, CompletableFuture<WebSocketResponseMessage>> pendingRequestMapper)
+  WebSocketClient(Session session, OutboundFrameQueue outboundFrameQueue,
+                  WebSocketMessageFactory messageFactory,
+                  Map<Long, CompletableFuture<WebSocketResponseMessage>> pendingRequestMapper)
   {
     this.session              = session;
-    this.remoteEndpoint       = remoteEndpoint;
+    this.outboundFrameQueue   = outboundFrameQueue;
     this.messageFactory       = messageFactory;
     this.pendingRequestMapper = pendingRequestMapper;
     this.created              = System.currentTimeMillis();
@@ -55,23 +53,17 @@ public class WebSocketClient {
 
     WebSocketMessage requestMessage = messageFactory.createRequest(Optional.of(requestId), verb, path, headers, body);
 
-    try {
-      remoteEndpoint.sendBytes(ByteBuffer.wrap(requestMessage.toByteArray()), new WriteCallback() {
-        @Override
-        public void writeFailed(Throwable x) {
-          logger.debug("Write failed", x);
-          pendingRequestMapper.remove(requestId);
-          future.completeExceptionally(x);
-        }
-
-        @Override
-        public void writeSuccess() {}
-      });
-    } catch (WebSocketException e) {
-      logger.debug("Write", e);
-      pendingRequestMapper.remove(requestId);
-      future.completeExceptionally(e);
-    }
+    outboundFrameQueue.send(ByteBuffer.wrap(requestMessage.toByteArray()), new WriteCallback() {
+      @Override
+      public void writeFailed(Throwable x) {
+        logger.debug("Write failed", x);
+        pendingRequestMapper.remove(requestId);
+        future.completeExceptionally(x);
+      }
+
+      @Override
+      public void writeSuccess() {}
+    });
 
     return future;
   }
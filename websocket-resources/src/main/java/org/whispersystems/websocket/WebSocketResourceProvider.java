@@ -5,15 +5,16 @@
 package org.whispersystems.websocket;
 
 import com.google.common.annotations.VisibleForTesting;
-import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.glassfish.jersey.internal.MapPropertiesDelegate;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.ContainerResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.websocket.configuration.OutboundFlowControlConfiguration;
 import org.whispersystems.websocket.logging.WebsocketRequestLog;
 import org.whispersystems.websocket.messages.InvalidMessageException;
 import org.whispersystems.websocket.messages.WebSocketMessage;
@@ -56,13 +57,25 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
   private final WebsocketRequestLog                requestLog;
   private final long                               idleTimeoutMillis;
   private final String                             remoteAddress;
+  private final OutboundFlowControlConfiguration   outboundFlowControl;
 
   private Session                 session;
-  private RemoteEndpoint          remoteEndpoint;
+  private OutboundFrameQueue      outboundFrameQueue;
   private WebSocketSessionContext context;
 
   private static final Set<String> EXCLUDED_UPGRADE_REQUEST_HEADERS = Set.of("connection", "upgrade");
 
+  // Nobody waits on responses to client requests; if one can't be written, the client will time out and retry
+  private static final WriteCallback RESPONSE_WRITE_CALLBACK = new WriteCallback() {
+    @Override
+    public void writeFailed(Throwable x) {
+      logger.debug("Response write failed", x);
+    }
+
+    @Override
+    public void writeSuccess() {}
+  };
+
   public WebSocketResourceProvider(String                             remoteAddress,
                                    ApplicationHandler                 jerseyHandler,
                                    WebsocketRequestLog                requestLog,
@@ -70,6 +83,19 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
                                    WebSocketMessageFactory            messageFactory,
                                    Optional<WebSocketConnectListener> connectListener,
                                    long                               idleTimeoutMillis)
+  {
+    this(remoteAddress, jerseyHandler, requestLog, authenticated, messageFactory, connectListener, idleTimeoutMillis,
+        new OutboundFlowControlConfiguration());
+  }
+
+  public WebSocketResourceProvider(String                             remoteAddress,
+                                   ApplicationHandler                 jerseyHandler,
+                                   WebsocketRequestLog                requestLog,
+                                   T                                  authenticated,
+                                   WebSocketMessageFactory            messageFactory,
+                                   Optional<WebSocketConnectListener> connectListener,
+                                   long                               idleTimeoutMillis,
+                                   OutboundFlowControlConfiguration   outboundFlowControl)
   {
     this.remoteAddress     = remoteAddress;
     this.jerseyHandler     = jerseyHandler;
@@ -78,13 +104,17 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
     this.messageFactory    = messageFactory;
     this.connectListener   = connectListener;
     this.idleTimeoutMillis = idleTimeoutMillis;
+    this.outboundFlowControl = outboundFlowControl;
   }
 
   @Override
   public void onWebSocketConnect(Session session) {
-    this.session        = session;
-    this.remoteEndpoint = session.getRemote();
-    this.context        = new WebSocketSessionContext(new WebSocketClient(session, remoteEndpoint, messageFactory, requestMap));
+    this.session            = session;
+    this.outboundFrameQueue = new OutboundFrameQueue(session.getRemote(),
+                                                     outboundFlowControl.getMaxInFlightBytes().toBytes(),
+                                                     outboundFlowControl.getMaxInFlightFrames(),
+                                                     outboundFlowControl.getMaxQueuedBytes().toBytes());
+    this.context            = new WebSocketSessionContext(new WebSocketClient(session, outboundFrameQueue, messageFactory, requestMap));
     this.context.setAuthenticated(authenticated);
     this.session.setIdleTimeout(idleTimeoutMillis);
 
@@ -213,7 +243,7 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
                                                            Optional.ofNullable(body))
                                            .toByteArray();
 
-      remoteEndpoint.sendBytesByFuture(ByteBuffer.wrap(responseBytes));
+      outboundFrameQueue.send(ByteBuffer.wrap(responseBytes), RESPONSE_WRITE_CALLBACK);
     }
   }
 
@@ -225,7 +255,7 @@ public class WebSocketResourceProvider<T extends Principal> implements WebSocket
                                                                 getHeaderList(error.getStringHeaders()),
                                                                 Optional.empty());
 
-      remoteEndpoint.sendBytesByFuture(ByteBuffer.wrap(response.toByteArray()));
+      outboundFrameQueue.send(ByteBuffer.wrap(response.toByteArray()), RESPONSE_WRITE_CALLBACK);
     }
   }
 
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.websocket.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.DataSize;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class OutboundFlowControlConfiguration {
+
+  /**
+   * The maximum number of bytes that may be handed to the container for writing (but not yet written) at any time.
+   * At least one frame may always be in flight, even if it's larger than this limit.
+   */
+  @NotNull
+  @JsonProperty
+  private DataSize maxInFlightBytes = DataSize.mebibytes(1);
+
+  /**
+   * The maximum number of frames that may be handed to the container for writing (but not yet written) at any time.
+   */
+  @Min(1)
+  @JsonProperty
+  private int maxInFlightFrames = 64;
+
+  /**
+   * The maximum number of bytes that may wait for in-flight frames to be written; frames that would exceed this limit
+   * are rejected.
+   */
+  @NotNull
+  @JsonProperty
+  private DataSize maxQueuedBytes = DataSize.mebibytes(32);
+
+  public DataSize getMaxInFlightBytes() {
+    return maxInFlightBytes;
+  }
+
+  public int getMaxInFlightFrames() {
+    return maxInFlightFrames;
+  }
+
+  public DataSize getMaxQueuedBytes() {
+    return maxQueuedBytes;
+  }
+}
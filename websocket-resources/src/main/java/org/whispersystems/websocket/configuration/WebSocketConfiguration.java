@@ -17,7 +17,16 @@ public class WebSocketConfiguration {
   @JsonProperty
   private WebsocketRequestLoggerFactory requestLog = new WebsocketRequestLoggerFactory();
 
+  @Valid
+  @NotNull
+  @JsonProperty
+  private OutboundFlowControlConfiguration outboundFlowControl = new OutboundFlowControlConfiguration();
+
   public WebsocketRequestLoggerFactory getRequestLog() {
     return requestLog;
   }
+
+  public OutboundFlowControlConfiguration getOutboundFlowControl() {
+    return outboundFlowControl;
+  }
 }
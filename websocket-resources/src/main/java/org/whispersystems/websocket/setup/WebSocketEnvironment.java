@@ -9,6 +9,7 @@ import io.dropwizard.jersey.DropwizardResourceConfig;
 import io.dropwizard.setup.Environment;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.whispersystems.websocket.auth.WebSocketAuthenticator;
+import org.whispersystems.websocket.configuration.OutboundFlowControlConfiguration;
 import org.whispersystems.websocket.configuration.WebSocketConfiguration;
 import org.whispersystems.websocket.logging.WebsocketRequestLog;
 import org.whispersystems.websocket.messages.WebSocketMessageFactory;
@@ -25,6 +26,8 @@ public class WebSocketEnvironment<T extends Principal> {
   private final WebsocketRequestLog   requestLog;
   private final long                  idleTimeoutMillis;
 
+  private OutboundFlowControlConfiguration outboundFlowControl = new OutboundFlowControlConfiguration();
+
   private WebSocketAuthenticator<T> authenticator;
   private WebSocketMessageFactory   messageFactory;
   private WebSocketConnectListener  connectListener;
@@ -35,6 +38,7 @@ public class WebSocketEnvironment<T extends Principal> {
 
   public WebSocketEnvironment(Environment environment, WebSocketConfiguration configuration, long idleTimeoutMillis) {
     this(environment, configuration.getRequestLog().build("websocket"), idleTimeoutMillis);
+    this.outboundFlowControl = configuration.getOutboundFlowControl();
   }
 
   public WebSocketEnvironment(Environment environment, WebsocketRequestLog requestLog, long idleTimeoutMillis) {
@@ -82,6 +86,14 @@ public class WebSocketEnvironment<T extends Principal> {
     this.messageFactory = messageFactory;
   }
 
+  public OutboundFlowControlConfiguration getOutboundFlowControl() {
+    return outboundFlowControl;
+  }
+
+  public void setOutboundFlowControl(OutboundFlowControlConfiguration outboundFlowControl) {
+    this.outboundFlowControl = outboundFlowControl;
+  }
+
   public WebSocketConnectListener getConnectListener() {
     return connectListener;
   }
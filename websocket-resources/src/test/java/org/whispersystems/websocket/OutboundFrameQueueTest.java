@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+package org.whispersystems.websocket;
+
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OutboundFrameQueueTest {
+
+  private RemoteEndpoint      remoteEndpoint;
+  private List<WriteCallback> containerCallbacks;
+
+  @Before
+  public void setUp() {
+    remoteEndpoint     = mock(RemoteEndpoint.class);
+    containerCallbacks = new ArrayList<>();
+
+    when(remoteEndpoint.getBatchMode()).thenReturn(BatchMode.AUTO);
+
+    doAnswer(invocation -> {
+      containerCallbacks.add(invocation.getArgument(1));
+      return null;
+    }).when(remoteEndpoint).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+  }
+
+  @Test
+  public void testInFlightFrameLimit() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 1024, 2, 1024);
+
+    for (int i = 0; i < 3; i++) {
+      queue.send(ByteBuffer.allocate(16), mock(WriteCallback.class));
+    }
+
+    verify(remoteEndpoint, times(2)).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+    assertEquals(2, queue.getInFlightFrames());
+    assertEquals(16, queue.getQueuedBytes());
+
+    containerCallbacks.get(0).writeSuccess();
+
+    verify(remoteEndpoint, times(3)).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+    assertEquals(2, queue.getInFlightFrames());
+    assertEquals(0, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testInFlightByteLimit() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 100, 16, 1024);
+
+    // A frame larger than the in-flight limit may still be written if nothing else is in flight
+    queue.send(ByteBuffer.allocate(200), mock(WriteCallback.class));
+    queue.send(ByteBuffer.allocate(60), mock(WriteCallback.class));
+    queue.send(ByteBuffer.allocate(60), mock(WriteCallback.class));
+
+    verify(remoteEndpoint, times(1)).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+    assertEquals(200, queue.getInFlightBytes());
+    assertEquals(120, queue.getQueuedBytes());
+
+    containerCallbacks.get(0).writeFailed(new WebSocketException("Failed"));
+
+    verify(remoteEndpoint, times(2)).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+    assertEquals(60, queue.getInFlightBytes());
+    assertEquals(60, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testQueueFull() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 100, 1, 100);
+
+    final WriteCallback rejectedCallback = mock(WriteCallback.class);
+
+    queue.send(ByteBuffer.allocate(50), mock(WriteCallback.class));
+    queue.send(ByteBuffer.allocate(80), mock(WriteCallback.class));
+    queue.send(ByteBuffer.allocate(40), rejectedCallback);
+
+    verify(rejectedCallback).writeFailed(any(WebSocketException.class));
+    verify(rejectedCallback, never()).writeSuccess();
+    assertEquals(80, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testCoalesceQueuedFrames() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 1024, 16, 4096);
+
+    final WriteCallback firstCallback = mock(WriteCallback.class);
+    final List<ByteBuffer> queuedFrames = new ArrayList<>();
+
+    queue.send(ByteBuffer.allocate(2000), firstCallback);
+
+    for (int i = 0; i < 3; i++) {
+      final ByteBuffer frame = ByteBuffer.allocate(16);
+      queuedFrames.add(frame);
+
+      queue.send(frame, mock(WriteCallback.class));
+    }
+
+    verify(remoteEndpoint, never()).setBatchMode(any());
+
+    containerCallbacks.get(0).writeSuccess();
+    verify(firstCallback).writeSuccess();
+
+    // All but the last of the queued frames are batched, and the last flushes the batch
+    final InOrder inOrder = inOrder(remoteEndpoint);
+    inOrder.verify(remoteEndpoint).setBatchMode(BatchMode.ON);
+    inOrder.verify(remoteEndpoint).sendBytes(same(queuedFrames.get(0)), any(WriteCallback.class));
+    inOrder.verify(remoteEndpoint).sendBytes(same(queuedFrames.get(1)), any(WriteCallback.class));
+    inOrder.verify(remoteEndpoint).setBatchMode(BatchMode.OFF);
+    inOrder.verify(remoteEndpoint).sendBytes(same(queuedFrames.get(2)), any(WriteCallback.class));
+    inOrder.verify(remoteEndpoint).setBatchMode(BatchMode.AUTO);
+    assertEquals(3, queue.getInFlightFrames());
+  }
+
+  @Test
+  public void testRejectedCallbackNotifiedWithoutLock() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 16, 16, 16);
+
+    queue.send(ByteBuffer.allocate(16), mock(WriteCallback.class));
+    queue.send(ByteBuffer.allocate(16), mock(WriteCallback.class));
+
+    final WriteCallback rejectedCallback = mock(WriteCallback.class);
+
+    doAnswer(invocation -> {
+      assertFalse(Thread.holdsLock(queue));
+      return null;
+    }).when(rejectedCallback).writeFailed(any());
+
+    queue.send(ByteBuffer.allocate(16), rejectedCallback);
+
+    verify(rejectedCallback).writeFailed(any(WebSocketException.class));
+  }
+
+  @Test
+  public void testContainerThrowsFailsRemainingFrames() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 1024, 16, 4096);
+
+    queue.send(ByteBuffer.allocate(2000), mock(WriteCallback.class));
+
+    final List<WriteCallback> queuedCallbacks = new ArrayList<>();
+
+    for (int i = 0; i < 3; i++) {
+      final WriteCallback callback = mock(WriteCallback.class);
+      queuedCallbacks.add(callback);
+
+      queue.send(ByteBuffer.allocate(16), callback);
+    }
+
+    doThrow(new IllegalStateException("Blocking message pending")).when(remoteEndpoint)
+        .sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+
+    containerCallbacks.get(0).writeSuccess();
+
+    for (final WriteCallback callback : queuedCallbacks) {
+      verify(callback).writeFailed(any(IllegalStateException.class));
+    }
+
+    assertEquals(0, queue.getInFlightFrames());
+    assertEquals(0, queue.getInFlightBytes());
+    assertEquals(0, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testContainerRejectsWrite() {
+    final OutboundFrameQueue queue = new OutboundFrameQueue(remoteEndpoint, 1024, 16, 1024);
+    final WriteCallback callback = mock(WriteCallback.class);
+
+    doThrow(new WebSocketException("Closed")).when(remoteEndpoint).sendBytes(any(ByteBuffer.class), any(WriteCallback.class));
+
+    queue.send(ByteBuffer.allocate(16), callback);
+
+    verify(callback).writeFailed(any(WebSocketException.class));
+    assertEquals(0, queue.getInFlightFrames());
+    assertEquals(0, queue.getInFlightBytes());
+  }
+}
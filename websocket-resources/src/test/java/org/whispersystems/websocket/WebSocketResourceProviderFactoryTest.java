@@ -27,6 +27,7 @@ import org.glassfish.jersey.server.ResourceConfig;
 import org.junit.Test;
 import org.whispersystems.websocket.auth.AuthenticationException;
 import org.whispersystems.websocket.auth.WebSocketAuthenticator;
+import org.whispersystems.websocket.configuration.OutboundFlowControlConfiguration;
 import org.whispersystems.websocket.setup.WebSocketEnvironment;
 
 public class WebSocketResourceProviderFactoryTest {
@@ -64,6 +65,7 @@ public class WebSocketResourceProviderFactoryTest {
     when(environment.getAuthenticator()).thenReturn(authenticator);
     when(authenticator.authenticate(eq(request))).thenReturn(new WebSocketAuthenticator.AuthenticationResult<>(Optional.of(account), true));
     when(environment.jersey()).thenReturn(jerseyEnvironment);
+    when(environment.getOutboundFlowControl()).thenReturn(new OutboundFlowControlConfiguration());
     when(session.getUpgradeRequest()).thenReturn(mock(UpgradeRequest.class));
 
     WebSocketResourceProviderFactory factory    = new WebSocketResourceProviderFactory(environment, Account.class);